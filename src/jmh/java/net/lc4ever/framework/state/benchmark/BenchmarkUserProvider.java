@@ -0,0 +1,62 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.lc4ever.framework.state.spi.CurrentUserProvider;
+
+/**
+ * 按线程切换当前用户.
+ *
+ * @author q-wang
+ */
+public class BenchmarkUserProvider implements CurrentUserProvider {
+
+	private static final ThreadLocal<String> USER = new ThreadLocal<>();
+
+	private static final ThreadLocal<List<String>> ROLES = new ThreadLocal<>();
+
+	public static void login(String user, List<String> roles) {
+		USER.set(user);
+		ROLES.set(roles == null ? Collections.<String>emptyList() : new ArrayList<>(roles));
+	}
+
+	@Override
+	public String constraint() {
+		return null;
+	}
+
+	@Override
+	public String userId() {
+		return USER.get();
+	}
+
+	@Override
+	public List<String> roles() {
+		return ROLES.get();
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.lc4ever.framework.state.definition.ActorDefinition;
+import net.lc4ever.framework.state.definition.StartStateDefinition;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.facade.EventSourcedInstanceStore;
+import net.lc4ever.framework.state.facade.InMemoryActionLogStore;
+import net.lc4ever.framework.state.facade.InMemoryDefinitionSource;
+import net.lc4ever.framework.state.facade.InMemoryInstanceStore;
+import net.lc4ever.framework.state.facade.StateMachineEngine;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * 无数据库的内存引擎回放吞吐量, 对比快照存储与事件溯源存储.
+ *
+ * @author q-wang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EngineBenchmark {
+
+	private static final String TEMPLATE = "ENGINE";
+
+	@Param({ "2", "32" })
+	public int steps;
+
+	@Param({ "snapshot", "event" })
+	public String store;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private StateMachineEngine engine;
+
+	private List<List<String>> roles;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		InMemoryDefinitionSource definitions = new InMemoryDefinitionSource();
+		StateMachineTemplate template = new StateMachineTemplate();
+		template.setId(TEMPLATE);
+		template.setMachine(definition());
+		List<Object[]> mappings = new ArrayList<>();
+		roles = new ArrayList<>();
+		for (ActorDefinition actor : template.getMachine().getActors()) {
+			mappings.add(new Object[] { "ROLE_" + actor.getCode(), actor.getId() });
+		}
+		for (int i = 1; i <= steps; i++) {
+			roles.add(Arrays.asList("ROLE_APPROVER" + i));
+		}
+		definitions.register(template, mappings);
+
+		engine = new StateMachineEngine();
+		engine.setDefinitions(definitions);
+		if ("event".equals(store)) {
+			EventSourcedInstanceStore instances = new EventSourcedInstanceStore();
+			instances.setDefinitions(definitions);
+			engine.setInstances(instances);
+			engine.setLogs(instances);
+		} else {
+			engine.setInstances(new InMemoryInstanceStore());
+			engine.setLogs(new InMemoryActionLogStore());
+		}
+	}
+
+	/**
+	 * 不持久化的定义, ID按顺序手工分配.
+	 */
+	private StateMachineDefinition definition() {
+		long id = 0;
+		StateMachineDefinition definition = new StateMachineDefinition();
+		definition.setId(TEMPLATE);
+
+		StartStateDefinition start = definition.createStartState();
+		start.setId(++id);
+		start.setCode("EDIT");
+		StateDefinition previous = start;
+		for (int i = 0; i <= steps; i++) {
+			StateDefinition state = i == steps ? definition.createFinalState() : definition.createState();
+			state.setId(++id);
+			state.setCode(i == steps ? "DONE" : "W" + (i + 1));
+
+			TransitionDefinition transition = previous.createOutgoing(state);
+			transition.setId(++id);
+			transition.setCode(i == 0 ? "COMMIT" : "APPROVE" + i);
+
+			ActorDefinition actor = definition.createActor();
+			actor.setId(++id);
+			actor.setCode(i == 0 ? "CREATOR" : "APPROVER" + i);
+			actor.setAvailableTransitions(new HashSet<>(Arrays.asList(transition)));
+			actor.setVisibleStates(new HashSet<StateDefinition>(Arrays.asList(previous)));
+			transition.setActors(new ArrayList<>(Arrays.asList(actor)));
+			previous = state;
+		}
+		return definition;
+	}
+
+	/**
+	 * 创建并逐步审批至结束.
+	 */
+	@Benchmark
+	public Object walk() {
+		String businessId = String.valueOf(sequence.incrementAndGet());
+		engine.create(TEMPLATE, businessId, "creator");
+		Object instance = engine.next(TEMPLATE, businessId, "COMMIT", "creator", null, null);
+		for (int step = 1; step <= steps; step++) {
+			instance = engine.next(TEMPLATE, businessId, "APPROVE" + step, "user_" + step, roles.get(step - 1), null);
+		}
+		return instance;
+	}
+}
@@ -0,0 +1,134 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import net.lc4ever.framework.state.instance.ActionLogHistory;
+
+/**
+ * 归档及长流程历史日志查询.
+ *
+ * @author q-wang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class HistoryBenchmark {
+
+	/** 长流程的提交/撤回轮数, 每轮一次归档 */
+	@Param({ "10", "200" })
+	public int rounds;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private StateMachineFixture fixture;
+
+	private String templateId;
+
+	private String longRunning;
+
+	/**
+	 * 停在最后一步的实例, 每次调用前准备.
+	 */
+	@State(Scope.Thread)
+	public static class Finishing {
+
+		private String businessId;
+
+		@Setup(Level.Invocation)
+		public void prepare(HistoryBenchmark benchmark) {
+			businessId = "finish-" + benchmark.sequence.incrementAndGet();
+			benchmark.fixture.create(benchmark.templateId, businessId);
+			benchmark.fixture.commit(benchmark.templateId, businessId);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new StateMachineFixture();
+		templateId = fixture.define(1);
+		longRunning = "long";
+		fixture.create(templateId, longRunning);
+		for (int i = 0; i < rounds; i++) {
+			fixture.commit(templateId, longRunning);
+			fixture.cancel(templateId, longRunning);
+		}
+		fixture.commit(templateId, longRunning);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+
+	/**
+	 * 最后一步审批, 实例结束并归档.
+	 */
+	@Benchmark
+	public void archive(Finishing finishing) {
+		fixture.approve(templateId, finishing.businessId, 1);
+	}
+
+	@Benchmark
+	public List<ActionLogHistory> actionLogHistories() {
+		return fixture.inTransaction(new TransactionCallback<List<ActionLogHistory>>() {
+			@Override
+			public List<ActionLogHistory> doInTransaction(TransactionStatus status) {
+				return fixture.getFactory().retrieve(templateId, longRunning).actionLogHistories(0, 20);
+			}
+		});
+	}
+
+	@Benchmark
+	public List<ActionLogHistory> allActionLogHistories() {
+		return fixture.inTransaction(new TransactionCallback<List<ActionLogHistory>>() {
+			@Override
+			public List<ActionLogHistory> doInTransaction(TransactionStatus status) {
+				return fixture.getFactory().retrieve(templateId, longRunning).actionLogHistories();
+			}
+		});
+	}
+}
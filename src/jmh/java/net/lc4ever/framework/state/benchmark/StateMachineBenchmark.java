@@ -0,0 +1,127 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+
+/**
+ * 创建, 越迁(含结束时归档)及可用越迁计算的吞吐量.
+ *
+ * @author q-wang
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StateMachineBenchmark {
+
+	/** 审批步数: 少状态与多状态定义 */
+	@Param({ "2", "32" })
+	public int steps;
+
+	/** 调用transitions()的用户持有的角色数 */
+	@Param({ "1", "256" })
+	public int roles;
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private StateMachineFixture fixture;
+
+	private String templateId;
+
+	private String pending;
+
+	private List<String> userRoles;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new StateMachineFixture();
+		templateId = fixture.define(steps);
+		pending = "pending";
+		fixture.create(templateId, pending);
+		fixture.commit(templateId, pending);
+		userRoles = new ArrayList<>(roles);
+		for (int i = 1; i < roles; i++) {
+			userRoles.add("NOISE_" + i);
+		}
+		userRoles.add("ROLE_1");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		fixture.close();
+	}
+
+	@Benchmark
+	public Object create() {
+		return fixture.create(templateId, "create-" + sequence.incrementAndGet());
+	}
+
+	/**
+	 * 创建并逐步审批至结束, 包含结束时的归档.
+	 */
+	@Benchmark
+	public void walk() {
+		String businessId = "walk-" + sequence.incrementAndGet();
+		fixture.create(templateId, businessId);
+		fixture.commit(templateId, businessId);
+		for (int step = 1; step <= steps; step++) {
+			fixture.approve(templateId, businessId, step);
+		}
+	}
+
+	@Benchmark
+	public List<TransitionDefinition> transitions() {
+		BenchmarkUserProvider.login("user_1", userRoles);
+		return fixture.inTransaction(new TransactionCallback<List<TransitionDefinition>>() {
+			@Override
+			public List<TransitionDefinition> doInTransaction(TransactionStatus status) {
+				return fixture.getFactory().retrieve(templateId, pending).transitions();
+			}
+		});
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.springframework.context.support.ClassPathXmlApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.StateMachine;
+import net.lc4ever.framework.state.definition.ActorDefinition;
+import net.lc4ever.framework.state.definition.FinalStateDefinition;
+import net.lc4ever.framework.state.definition.StartStateDefinition;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.facade.StateMachineFactory;
+import net.lc4ever.framework.state.facade.StateMachineMappingService;
+
+/**
+ * 基于嵌入式H2的基准环境: 线性审批流 EDIT -COMMIT-> W1 -APPROVE1-> ... Wn -APPROVEn-> DONE, 另有 W1 -CANCEL-> EDIT.
+ * <p>
+ * 创建人为 {@link #CREATOR}, 第i步由持有角色 ROLE_i 的用户 user_i 审批.
+ *
+ * @author q-wang
+ */
+public class StateMachineFixture {
+
+	public static final String CREATOR = "creator";
+
+	private final ClassPathXmlApplicationContext context;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final GenericCrudService crudService;
+
+	private final StateMachineFactory factory;
+
+	private final StateMachineMappingService mappingService;
+
+	public StateMachineFixture() {
+		context = new ClassPathXmlApplicationContext("classpath:net/lc4ever/framework/state/benchmark/application-benchmark.xml");
+		transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+		crudService = context.getBean(GenericCrudService.class);
+		factory = context.getBean(StateMachineFactory.class);
+		mappingService = context.getBean(StateMachineMappingService.class);
+	}
+
+	public void close() {
+		context.close();
+	}
+
+	public StateMachineFactory getFactory() {
+		return factory;
+	}
+
+	public <T> T getBean(Class<T> type) {
+		return context.getBean(type);
+	}
+
+	public <T> T inTransaction(TransactionCallback<T> callback) {
+		return transactionTemplate.execute(callback);
+	}
+
+	/**
+	 * 创建steps步审批的定义及模板并分配角色.
+	 *
+	 * @return 模板ID
+	 */
+	public String define(final int steps) {
+		final String id = "BENCH-" + steps;
+		inTransaction(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				createDefinition(id, steps);
+				return null;
+			}
+		});
+		mappingService.createTemplate(id, id, "BENCH", String.valueOf(steps));
+		mappingService.addRoles(id, "CREATOR", "ROLE_CREATOR");
+		for (int i = 1; i <= steps; i++) {
+			mappingService.addRoles(id, "APPROVER" + i, "ROLE_" + i);
+		}
+		return id;
+	}
+
+	private void createDefinition(String id, int steps) {
+		StateMachineDefinition definition = new StateMachineDefinition();
+		definition.setId(id);
+		definition.setName(id);
+
+		StartStateDefinition startState = definition.createStartState();
+		startState.setCode("EDIT");
+		startState.setName("编辑中");
+		List<StateDefinition> waits = new ArrayList<>(steps);
+		for (int i = 1; i <= steps; i++) {
+			StateDefinition wait = definition.createState();
+			wait.setCode("W" + i);
+			wait.setName("待审批" + i);
+			waits.add(wait);
+		}
+		FinalStateDefinition finalState = definition.createFinalState();
+		finalState.setCode("DONE");
+		finalState.setName("完成");
+
+		crudService.save(definition);
+		crudService.save(startState);
+		for (StateDefinition wait : waits) {
+			crudService.save(wait);
+		}
+		crudService.save(finalState);
+		crudService.flush();
+
+		TransitionDefinition commit = startState.createOutgoing(waits.get(0));
+		commit.setCode("COMMIT");
+		commit.setName("提交");
+		TransitionDefinition cancel = waits.get(0).createOutgoing(startState);
+		cancel.setCode("CANCEL");
+		cancel.setName("撤回");
+		crudService.save(commit);
+		crudService.save(cancel);
+
+		ActorDefinition creator = definition.createActor();
+		creator.setCode("CREATOR");
+		creator.setName("创建人");
+		creator.setAvailableTransitions(new HashSet<>(Arrays.asList(commit, cancel)));
+		creator.setVisibleStates(new HashSet<>(Arrays.asList(startState, waits.get(0))));
+		crudService.save(creator);
+
+		for (int i = 1; i <= steps; i++) {
+			StateDefinition from = waits.get(i - 1);
+			TransitionDefinition approve = from.createOutgoing(i == steps ? finalState : waits.get(i));
+			approve.setCode("APPROVE" + i);
+			approve.setName("通过");
+			crudService.save(approve);
+
+			ActorDefinition approver = definition.createActor();
+			approver.setCode("APPROVER" + i);
+			approver.setName("审批人" + i);
+			approver.setAvailableTransitions(new HashSet<>(Arrays.asList(approve)));
+			approver.setVisibleStates(new HashSet<>(Arrays.asList(from)));
+			crudService.save(approver);
+		}
+		crudService.update(definition);
+		crudService.flush();
+	}
+
+	public StateMachine create(final String templateId, final String businessId) {
+		BenchmarkUserProvider.login(CREATOR, Arrays.asList("ROLE_CREATOR"));
+		return inTransaction(new TransactionCallback<StateMachine>() {
+			@Override
+			public StateMachine doInTransaction(TransactionStatus status) {
+				return factory.create(templateId, businessId);
+			}
+		});
+	}
+
+	/**
+	 * 以指定用户执行越迁.
+	 */
+	public void next(final String templateId, final String businessId, String user, List<String> roles, final String transitionCode) {
+		BenchmarkUserProvider.login(user, roles);
+		inTransaction(new TransactionCallback<Void>() {
+			@Override
+			public Void doInTransaction(TransactionStatus status) {
+				factory.retrieve(templateId, businessId).next(transitionCode, null);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * 第step步审批.
+	 */
+	public void approve(String templateId, String businessId, int step) {
+		next(templateId, businessId, "user_" + step, Arrays.asList("ROLE_" + step), "APPROVE" + step);
+	}
+
+	public void commit(String templateId, String businessId) {
+		next(templateId, businessId, CREATOR, Arrays.asList("ROLE_CREATOR"), "COMMIT");
+	}
+
+	public void cancel(String templateId, String businessId) {
+		next(templateId, businessId, CREATOR, Arrays.asList("ROLE_CREATOR"), "CANCEL");
+	}
+}
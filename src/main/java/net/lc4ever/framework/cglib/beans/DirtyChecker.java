@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.cglib.beans;
+
+import java.security.ProtectionDomain;
+
+import net.lc4ever.framework.cglib.core.AbstractClassGenerator;
+import net.lc4ever.framework.cglib.core.ClassKey;
+import net.lc4ever.framework.cglib.core.KeyFactory;
+import net.lc4ever.framework.cglib.util.ReflectUtils;
+
+import org.objectweb.asm.ClassVisitor;
+
+/**
+ * 按属性下标逐个比较实体的当前状态与快照状态, 返回发生变化的属性下标.
+ * <p>
+ * 每个属性的比较方式由生成时的 {@link #getPropertyTypes() 属性类型} 与 {@link #getModes() 比较方式} 决定:
+ * <ul>
+ * <li>{@link #SKIP}: 不比较(例如集合属性, 由Hibernate自行处理).</li>
+ * <li>{@link #IDENTITY}: 引用比较(关联实体, Blob/Clob).</li>
+ * <li>{@link #VALUE}: 原始类型拆箱后直接比较; 数组逐元素比较; {@link java.util.Date}/{@link java.math.BigDecimal}/{@link java.math.BigInteger} 使用compareTo; 其它使用equals.</li>
+ * </ul>
+ *
+ * @author q-wang
+ */
+abstract public class DirtyChecker<T> {
+
+	public static final int SKIP = 0;
+
+	public static final int VALUE = 1;
+
+	public static final int IDENTITY = 2;
+
+	private static final int[] NONE = new int[0];
+
+	private static final DirtyCheckerKey KEY_FACTORY = KeyFactory.create(DirtyCheckerKey.class);
+
+	interface DirtyCheckerKey {
+
+		public ClassKey newInstance(String target, String[] types, int[] modes);
+	}
+
+	protected Class<T> target;
+
+	protected Class<?>[] types;
+
+	protected int[] modes;
+
+	protected DirtyChecker() {
+	}
+
+	/**
+	 * @param current 当前状态
+	 * @param previous 快照状态
+	 * @return 发生变化的属性下标, 无变化时返回空数组
+	 */
+	abstract public int[] findDirty(Object[] current, Object[] previous);
+
+	public Class<T> getTarget() {
+		return target;
+	}
+
+	public Class<?>[] getPropertyTypes() {
+		return types.clone();
+	}
+
+	public int[] getModes() {
+		return modes.clone();
+	}
+
+	/**
+	 * 生成代码调用, 截取前count个下标.
+	 */
+	protected static int[] trim(int[] dirty, int count) {
+		if (count == 0) {
+			return NONE;
+		}
+		if (count == dirty.length) {
+			return dirty;
+		}
+		int[] result = new int[count];
+		System.arraycopy(dirty, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * 生成代码调用, 调用方已保证两者均不为null.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	protected static boolean isSameValue(Comparable current, Comparable previous) {
+		return current == previous || current.compareTo(previous) == 0;
+	}
+
+	public static <T> DirtyChecker<T> create(Class<T> target, Class<?>[] types, int[] modes) {
+		Generator<T> gen = new Generator<T>();
+		gen.setTarget(target);
+		gen.setTypes(types);
+		gen.setModes(modes);
+		return gen.create();
+	}
+
+	public static class Generator<T> extends AbstractClassGenerator<DirtyChecker<T>> {
+
+		private static final Source SOURCE = new Source(DirtyChecker.class.getName());
+
+		private Class<T> target;
+
+		private Class<?>[] types;
+
+		private int[] modes;
+
+		public Generator() {
+			super(SOURCE);
+		}
+
+		public void setTarget(Class<T> target) {
+			this.target = target;
+		}
+
+		public void setTypes(Class<?>[] types) {
+			this.types = types;
+		}
+
+		public void setModes(int[] modes) {
+			this.modes = modes;
+		}
+
+		@Override
+		protected ClassLoader getDefaultClassLoader() {
+			return target.getClassLoader();
+		}
+
+		@Override
+		protected ProtectionDomain getProtectionDomain() {
+			return ReflectUtils.getProtectionDomain(target);
+		}
+
+		public DirtyChecker<T> create() {
+			if (types.length != modes.length) {
+				throw new IllegalArgumentException("types.length != modes.length");
+			}
+			setNamePrefix(target.getName());
+			ClassKey key = KEY_FACTORY.newInstance(target.getName(), ReflectUtils.getNames(types), modes);
+			return super.create(key);
+		}
+
+		@Override
+		public void generateClass(ClassVisitor v) throws Exception {
+			new DirtyCheckerEmitter(v, getClassName(), types, modes);
+		}
+
+		@Override
+		protected DirtyChecker<T> firstInstance(Class<DirtyChecker<T>> type) {
+			DirtyChecker<T> instance = ReflectUtils.newInstance(type);
+			instance.target = target;
+			instance.types = types.clone();
+			instance.modes = modes.clone();
+			return instance;
+		}
+
+		@Override
+		protected DirtyChecker<T> nextInstance(DirtyChecker<T> instance) {
+			return instance;
+		}
+	}
+}
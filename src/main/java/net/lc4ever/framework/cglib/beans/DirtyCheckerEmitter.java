@@ -0,0 +1,157 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.cglib.beans;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Date;
+
+import net.lc4ever.framework.cglib.core.ClassEmitter;
+import net.lc4ever.framework.cglib.core.CodeEmitter;
+import net.lc4ever.framework.cglib.core.Constants;
+import net.lc4ever.framework.cglib.core.Local;
+import net.lc4ever.framework.cglib.core.Signature;
+import net.lc4ever.framework.cglib.util.EmitUtils;
+import net.lc4ever.framework.cglib.util.TypeUtils;
+
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Type;
+
+/**
+ * @author q-wang
+ */
+class DirtyCheckerEmitter extends ClassEmitter {
+
+	private static final Signature FIND_DIRTY = TypeUtils.parseSignature("int[] findDirty(Object[], Object[])");
+
+	private static final Signature TRIM = TypeUtils.parseSignature("int[] trim(int[], int)");
+
+	private static final Signature IS_SAME_VALUE = TypeUtils.parseSignature("boolean isSameValue(Comparable, Comparable)");
+
+	private static final Type DIRTY_CHECKER = TypeUtils.parseType("net.lc4ever.framework.cglib.beans.DirtyChecker");
+
+	private static final Type COMPARABLE = TypeUtils.parseType("Comparable");
+
+	private static final Type INT_ARRAY = TypeUtils.parseType("int[]");
+
+	public DirtyCheckerEmitter(ClassVisitor v, String className, Class<?>[] types, int[] modes) {
+		super(v);
+
+		begin_class(Constants.V1_2, Constants.ACC_PUBLIC, className, DIRTY_CHECKER, null, Constants.SOURCE_FILE);
+		EmitUtils.null_constructor(this);
+		generateFindDirty(types, modes);
+		end_class();
+	}
+
+	private void generateFindDirty(Class<?>[] types, int[] modes) {
+		CodeEmitter e = begin_method(Constants.ACC_PUBLIC, FIND_DIRTY, null);
+		Local dirty = e.make_local(INT_ARRAY);
+		Local count = e.make_local(Type.INT_TYPE);
+		e.push(types.length);
+		e.newarray(Type.INT_TYPE);
+		e.store_local(dirty);
+		e.push(0);
+		e.store_local(count);
+
+		for (int i = 0; i < types.length; i++) {
+			if (modes[i] == DirtyChecker.SKIP) {
+				continue;
+			}
+			Label same = e.make_label();
+			Label changed = e.make_label();
+			if (modes[i] == DirtyChecker.IDENTITY) {
+				load(e, i);
+				e.if_cmp(Constants.TYPE_OBJECT, CodeEmitter.EQ, same);
+			} else if (types[i].isPrimitive()) {
+				Type type = Type.getType(types[i]);
+				e.load_arg(0);
+				e.aaload(i);
+				e.unbox(type);
+				e.load_arg(1);
+				e.aaload(i);
+				e.unbox(type);
+				e.if_cmp(type, CodeEmitter.EQ, same);
+			} else if (types[i].isArray()) {
+				Type type = Type.getType(types[i]);
+				e.load_arg(0);
+				e.aaload(i);
+				e.checkcast(type);
+				e.load_arg(1);
+				e.aaload(i);
+				e.checkcast(type);
+				EmitUtils.not_equals(e, type, changed, null);
+				e.goTo(same);
+			} else if (isComparable(types[i])) {
+				load(e, i);
+				e.if_cmp(Constants.TYPE_OBJECT, CodeEmitter.EQ, same);
+				e.load_arg(0);
+				e.aaload(i);
+				e.ifnull(changed);
+				e.load_arg(1);
+				e.aaload(i);
+				e.ifnull(changed);
+				e.load_arg(0);
+				e.aaload(i);
+				e.checkcast(COMPARABLE);
+				e.load_arg(1);
+				e.aaload(i);
+				e.checkcast(COMPARABLE);
+				e.invoke_static(DIRTY_CHECKER, IS_SAME_VALUE);
+				e.if_jump(CodeEmitter.NE, same);
+			} else {
+				load(e, i);
+				EmitUtils.not_equals(e, Constants.TYPE_OBJECT, changed, null);
+				e.goTo(same);
+			}
+			e.mark(changed);
+			e.load_local(dirty);
+			e.load_local(count);
+			e.push(i);
+			e.array_store(Type.INT_TYPE);
+			e.iinc(count, 1);
+			e.mark(same);
+		}
+
+		e.load_local(dirty);
+		e.load_local(count);
+		e.invoke_static(DIRTY_CHECKER, TRIM);
+		e.return_value();
+		e.end_method();
+	}
+
+	private static void load(CodeEmitter e, int index) {
+		e.load_arg(0);
+		e.aaload(index);
+		e.load_arg(1);
+		e.aaload(index);
+	}
+
+	/**
+	 * equals与Hibernate比较语义不一致的类型(Timestamp纳秒, BigDecimal精度), 改用compareTo.
+	 */
+	private static boolean isComparable(Class<?> type) {
+		return Date.class.isAssignableFrom(type) || type == BigDecimal.class || type == BigInteger.class;
+	}
+}
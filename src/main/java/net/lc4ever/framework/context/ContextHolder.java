@@ -105,6 +105,10 @@ public final class ContextHolder {
 		holder.put(name, value);
 	}
 	
+	public static boolean hasThreadContext() {
+		return THREAD_LOCAL.get() != null;
+	}
+	
 	public static Object getThreadAttribute(String name) {
 		return THREAD_LOCAL.get()==null?null:THREAD_LOCAL.get().get(name);
 	}
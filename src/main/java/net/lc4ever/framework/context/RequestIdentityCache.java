@@ -0,0 +1,116 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.context;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.lc4ever.framework.domain.RequestCacheable;
+
+/**
+ * 请求级实体标识缓存.
+ * <p>
+ * 绑定在 {@link ContextHolder} 线程上下文上, 随 {@link ContextFilter} 清理线程上下文一起失效;
+ * 未经ContextFilter的线程不做缓存. 仅缓存标注 {@link RequestCacheable} 的实体类型.
+ * <p>
+ * 缓存的实例跨Session共享, 按只读的游离实例使用, 见 {@link RequestCacheable}.
+ *
+ * @author q-wang
+ */
+public final class RequestIdentityCache {
+
+	private static final String ATTRIBUTE = RequestIdentityCache.class.getName();
+
+	private static final ConcurrentMap<Class<?>, Boolean> CACHEABLES = new ConcurrentHashMap<>();
+
+	private RequestIdentityCache() {
+	}
+
+	public static boolean isCacheable(final Class<?> clazz) {
+		Boolean cacheable = CACHEABLES.get(clazz);
+		if (cacheable == null) {
+			cacheable = clazz.isAnnotationPresent(RequestCacheable.class);
+			CACHEABLES.putIfAbsent(clazz, cacheable);
+		}
+		return cacheable;
+	}
+
+	public static <E> E get(final Class<E> clazz, final Serializable id) {
+		Map<Class<?>, Map<Serializable, Object>> cache = cache(false);
+		if (cache == null) {
+			return null;
+		}
+		Map<Serializable, Object> entities = cache.get(clazz);
+		return entities == null ? null : clazz.cast(entities.get(id));
+	}
+
+	public static void put(final Class<?> clazz, final Serializable id, final Object entity) {
+		Map<Class<?>, Map<Serializable, Object>> cache = cache(true);
+		if (cache == null) {
+			return;
+		}
+		Map<Serializable, Object> entities = cache.get(clazz);
+		if (entities == null) {
+			entities = new HashMap<>();
+			cache.put(clazz, entities);
+		}
+		entities.put(id, entity);
+	}
+
+	/**
+	 * 移除clazz及其父类型下该ID的缓存.
+	 */
+	public static void evict(final Class<?> clazz, final Serializable id) {
+		Map<Class<?>, Map<Serializable, Object>> cache = cache(false);
+		if (cache == null) {
+			return;
+		}
+		for (Entry<Class<?>, Map<Serializable, Object>> entry : cache.entrySet()) {
+			if (entry.getKey().isAssignableFrom(clazz)) {
+				entry.getValue().remove(id);
+			}
+		}
+	}
+
+	public static void clear() {
+		Map<Class<?>, Map<Serializable, Object>> cache = cache(false);
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Map<Class<?>, Map<Serializable, Object>> cache(final boolean create) {
+		Map<Class<?>, Map<Serializable, Object>> cache = (Map<Class<?>, Map<Serializable, Object>>) ContextHolder.getThreadAttribute(ATTRIBUTE);
+		if (cache == null && create && ContextHolder.hasThreadContext()) {
+			cache = new HashMap<>();
+			ContextHolder.setThreadAttribute(ATTRIBUTE, cache);
+		}
+		return cache;
+	}
+}
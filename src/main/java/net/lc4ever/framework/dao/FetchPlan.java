@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * 查询抓取计划, 用于一次性加载对象图, 避免遍历延迟集合时的N+1查询.
+ * <ul>
+ * <li>{@link #profile(String)}: Hibernate {@link org.hibernate.annotations.FetchProfile} 名称.</li>
+ * <li>{@link #graph(String)}: {@link javax.persistence.NamedEntityGraph} 名称.</li>
+ * <li>{@link #paths(String...)}: 需要join fetch的关联路径, 如: "transitions.actors".</li>
+ * </ul>
+ *
+ * @author q-wang
+ */
+public final class FetchPlan implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String profile;
+
+	private final String graph;
+
+	private final String[] paths;
+
+	private FetchPlan(final String profile, final String graph, final String[] paths) {
+		this.profile = profile;
+		this.graph = graph;
+		this.paths = paths;
+	}
+
+	public static FetchPlan profile(final String profile) {
+		if (profile == null) {
+			throw new NullPointerException("profile must not be null.");
+		}
+		return new FetchPlan(profile, null, null);
+	}
+
+	public static FetchPlan graph(final String graph) {
+		if (graph == null) {
+			throw new NullPointerException("graph must not be null.");
+		}
+		return new FetchPlan(null, graph, null);
+	}
+
+	public static FetchPlan paths(final String... paths) {
+		if (paths == null || paths.length == 0) {
+			throw new IllegalArgumentException("paths must not be empty.");
+		}
+		return new FetchPlan(null, null, paths.clone());
+	}
+
+	public String getProfile() {
+		return profile;
+	}
+
+	public String getGraph() {
+		return graph;
+	}
+
+	public String[] getPaths() {
+		return paths == null ? null : paths.clone();
+	}
+
+	@Override
+	public String toString() {
+		if (profile != null) {
+			return "FetchPlan[profile=" + profile + "]";
+		}
+		if (graph != null) {
+			return "FetchPlan[graph=" + graph + "]";
+		}
+		return "FetchPlan[paths=" + Arrays.toString(paths) + "]";
+	}
+}
@@ -37,6 +37,7 @@ import org.hibernate.transform.ResultTransformer;
 import org.springframework.orm.hibernate5.HibernateCallback;
 
 import net.lc4ever.framework.domain.BaseEntity;
+import net.lc4ever.framework.domain.PathTree;
 
 /**
  * 通用Data Access Object.
@@ -179,4 +180,22 @@ public interface GenericDao {
 	public <T> List<T> hql(Class<T> clazz, long firstResult, long maxResults, String hql, Map<String, Object> params);
 
 	public <T> T uniqueResultHql(Class<T> clazz, String hql, Map<String, Object> params);
+
+	public <E extends BaseEntity<ID>, ID extends Serializable> E get(Class<E> clazz, ID id, FetchPlan plan);
+
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> list(Class<E> clazz, FetchPlan plan);
+
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> queryByProperties(Class<E> clazz, FetchPlan plan, String[] properties, Object[] args, Order... orders);
+
+	public <T> List<T> hql(Class<T> expectType, FetchPlan plan, String hql, Object... args);
+
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(Class<D> dto, Class<E> clazz, String[] properties, Object[] args, Order... orders);
+
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(Class<D> dto, Class<E> clazz, long firstResult, long maxResults, String[] properties, Object[] args, Order... orders);
+
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> subtree(T node);
+
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> ancestors(T node);
+
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> descendants(T node, int depth);
 }
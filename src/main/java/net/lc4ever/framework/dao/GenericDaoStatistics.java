@@ -24,8 +24,10 @@
 package net.lc4ever.framework.dao;
 
 import java.io.Serializable;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -38,6 +40,8 @@ public class GenericDaoStatistics {
 
 	private long start = System.currentTimeMillis();
 
+	private Map<String, Object> extensions = new ConcurrentHashMap<String, Object>();
+
 	public static class Cost implements Serializable {
 		private long count;
 		private long cost;
@@ -435,6 +439,20 @@ public class GenericDaoStatistics {
 		return start;
 	}
 
+	/**
+	 * 登记其它模块的运行期统计(如流程统计), 与DAO统计通过同一入口读取.
+	 */
+	public void register(final String name, final Object statistics) {
+		extensions.put(name, statistics);
+	}
+
+	/**
+	 * @return 名称 -> 其它模块的运行期统计
+	 */
+	public Map<String, Object> getExtensions() {
+		return Collections.unmodifiableMap(extensions);
+	}
+
 	/**
 	 * @return the listCost
 	 */
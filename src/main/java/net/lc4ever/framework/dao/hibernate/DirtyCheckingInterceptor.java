@@ -0,0 +1,148 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import java.beans.PropertyDescriptor;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.type.BasicType;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.lc4ever.framework.cglib.beans.DirtyChecker;
+import net.lc4ever.framework.cglib.util.ReflectUtils;
+
+/**
+ * 使用cglib为每个实体类生成 {@link DirtyChecker}, 替代Hibernate默认的逐属性 {@link Type#isDirty} 比较.
+ * <p>
+ * 无法安全比较的实体(组件, 自定义可变类型等)返回null, 由Hibernate按默认方式处理.
+ * 关联实体按引用比较, 引用不同(代理与实体, merge后的实例等)时同样返回null, 由Hibernate按标识比较, 避免多余的UPDATE.
+ *
+ * @author q-wang
+ */
+public class DirtyCheckingInterceptor extends EmptyInterceptor {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/** 不支持的实体类占位, findDirty返回null. */
+	private static final DirtyChecker<Object> UNSUPPORTED = new DirtyChecker<Object>() {
+
+		@Override
+		public int[] findDirty(Object[] current, Object[] previous) {
+			return null;
+		}
+	};
+
+	private final ConcurrentMap<Class<?>, DirtyChecker<?>> checkers = new ConcurrentHashMap<>();
+
+	/**
+	 * @see org.hibernate.Interceptor#findDirty(java.lang.Object, java.io.Serializable, java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public int[] findDirty(final Object entity, final Serializable id, final Object[] currentState, final Object[] previousState, final String[] propertyNames, final Type[] types) {
+		if (previousState == null) {
+			return null;
+		}
+		Class<?> entityClass = Hibernate.getClass(entity);
+		DirtyChecker<?> checker = checkers.get(entityClass);
+		if (checker == null) {
+			checker = create(entityClass, propertyNames, types);
+			DirtyChecker<?> exists = checkers.putIfAbsent(entityClass, checker);
+			if (exists != null) {
+				checker = exists;
+			}
+		}
+		int[] dirty = checker.findDirty(currentState, previousState);
+		if (dirty != null) {
+			for (int index : dirty) {
+				if (types[index].isEntityType()) {
+					return null;
+				}
+			}
+		}
+		return dirty;
+	}
+
+	protected DirtyChecker<?> create(final Class<?> entityClass, final String[] propertyNames, final Type[] types) {
+		Map<String, Class<?>> getters = new HashMap<>();
+		for (PropertyDescriptor descriptor : ReflectUtils.getBeanGetters(entityClass)) {
+			getters.put(descriptor.getName(), descriptor.getPropertyType());
+		}
+		Class<?>[] classes = new Class<?>[types.length];
+		int[] modes = new int[types.length];
+		for (int i = 0; i < types.length; i++) {
+			Type type = types[i];
+			classes[i] = Object.class;
+			if (type.isCollectionType()) {
+				modes[i] = DirtyChecker.SKIP;
+			} else if (type.isEntityType()) {
+				modes[i] = DirtyChecker.IDENTITY;
+			} else if (type instanceof BasicType) {
+				Class<?> javaType = getters.get(propertyNames[i]);
+				if (javaType == null) {
+					javaType = type.getReturnedClass();
+				}
+				if (Blob.class.isAssignableFrom(javaType) || Clob.class.isAssignableFrom(javaType)) {
+					modes[i] = DirtyChecker.IDENTITY;
+				} else if (isSupported(javaType)) {
+					classes[i] = javaType;
+					modes[i] = DirtyChecker.VALUE;
+				} else {
+					logger.debug("Property {}.{} of type {} not supported, use default dirty checking.", entityClass.getName(), propertyNames[i], javaType.getName());
+					return UNSUPPORTED;
+				}
+			} else {
+				logger.debug("Property {}.{} of type {} not supported, use default dirty checking.", entityClass.getName(), propertyNames[i], type.getName());
+				return UNSUPPORTED;
+			}
+		}
+		return DirtyChecker.create(entityClass, classes, modes);
+	}
+
+	/**
+	 * 原始类型, 不可变值类型及原始类型数组.
+	 */
+	protected boolean isSupported(final Class<?> javaType) {
+		if (javaType.isPrimitive() || javaType.isEnum()) {
+			return true;
+		}
+		if (javaType.isArray()) {
+			return javaType.getComponentType().isPrimitive();
+		}
+		return javaType == String.class || javaType == Boolean.class || javaType == Character.class || javaType == Byte.class || javaType == Short.class || javaType == Integer.class || javaType == Long.class
+				|| javaType == Float.class || javaType == Double.class || javaType == BigDecimal.class || javaType == BigInteger.class || Date.class.isAssignableFrom(javaType);
+	}
+}
@@ -0,0 +1,151 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.hibernate.SessionFactory;
+
+import net.lc4ever.framework.cglib.beans.BulkBean;
+import net.lc4ever.framework.cglib.util.ReflectUtils;
+
+/**
+ * 实体到DTO的投影.
+ * <p>
+ * 按DTO可写属性与实体基本属性同名且类型兼容匹配, 生成HQL select列表, 查询结果使用生成的 {@link BulkBean} 填充DTO, 不加载实体.
+ * DTO属性为基本类型而列值为NULL时取该类型的零值(false), 避免拆箱异常.
+ *
+ * @author q-wang
+ */
+final class DtoProjection<D> {
+
+	static final String ALIAS = "e";
+
+	private final Class<D> dto;
+
+	private final String[] properties;
+
+	private final String select;
+
+	private final BulkBean<D> bean;
+
+	/** 各列为NULL时的替代值, 仅基本类型属性非null */
+	private final Object[] defaults;
+
+	private DtoProjection(final Class<D> dto, final String[] properties, final String select, final BulkBean<D> bean, final Object[] defaults) {
+		this.dto = dto;
+		this.properties = properties;
+		this.select = select;
+		this.bean = bean;
+		this.defaults = defaults;
+	}
+
+	static <D> DtoProjection<D> create(final SessionFactory sessionFactory, final Class<?> entity, final Class<D> dto) {
+		EntityType<?> entityType = sessionFactory.getMetamodel().entity(entity);
+		Map<String, Attribute<?, ?>> attributes = new HashMap<>();
+		for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+			if (!attribute.isCollection() && attribute.getPersistentAttributeType() == PersistentAttributeType.BASIC) {
+				attributes.put(attribute.getName(), attribute);
+			}
+		}
+		List<String> properties = new ArrayList<>();
+		List<String> setters = new ArrayList<>();
+		List<Class<?>> types = new ArrayList<>();
+		for (PropertyDescriptor descriptor : ReflectUtils.getBeanSetters(dto)) {
+			Attribute<?, ?> attribute = attributes.get(descriptor.getName());
+			Class<?> type = descriptor.getPropertyType();
+			if (attribute != null && ClassUtils.primitiveToWrapper(type).isAssignableFrom(ClassUtils.primitiveToWrapper(attribute.getJavaType()))) {
+				properties.add(attribute.getName());
+				setters.add(descriptor.getWriteMethod().getName());
+				types.add(type);
+			}
+		}
+		if (properties.isEmpty()) {
+			throw new IllegalArgumentException("DTO " + dto.getName() + " 与实体 " + entity.getName() + " 无同名属性.");
+		}
+		StringBuilder select = new StringBuilder("select ");
+		for (int i = 0; i < properties.size(); i++) {
+			if (i > 0) {
+				select.append(", ");
+			}
+			select.append(ALIAS).append('.').append(properties.get(i));
+		}
+		select.append(" from ").append(entityType.getName()).append(' ').append(ALIAS);
+		BulkBean<D> bean = BulkBean.create(dto, new String[properties.size()], setters.toArray(new String[setters.size()]), types.toArray(new Class<?>[types.size()]));
+		Object[] defaults = new Object[types.size()];
+		for (int i = 0; i < defaults.length; i++) {
+			if (types.get(i).isPrimitive()) {
+				defaults[i] = Array.get(Array.newInstance(types.get(i), 1), 0);
+			}
+		}
+		return new DtoProjection<D>(dto, properties.toArray(new String[properties.size()]), select.toString(), bean, defaults);
+	}
+
+	/**
+	 * @return "select e.p1, e.p2 from Entity e"
+	 */
+	String getSelect() {
+		return select;
+	}
+
+	String[] getProperties() {
+		return properties.clone();
+	}
+
+	/**
+	 * 单列查询结果为标量, 多列为Object[].
+	 */
+	List<D> transform(final List<?> rows) {
+		List<D> result = new ArrayList<>(rows.size());
+		Object[] values = properties.length == 1 ? new Object[1] : null;
+		for (Object row : rows) {
+			D target = ReflectUtils.newInstance(dto);
+			Object[] columns;
+			if (values == null) {
+				columns = (Object[]) row;
+			} else {
+				values[0] = row;
+				columns = values;
+			}
+			for (int i = 0; i < columns.length; i++) {
+				if (columns[i] == null && defaults[i] != null) {
+					columns[i] = defaults[i];
+				}
+			}
+			bean.setPropertyValues(target, columns);
+			result.add(target);
+		}
+		return result;
+	}
+}
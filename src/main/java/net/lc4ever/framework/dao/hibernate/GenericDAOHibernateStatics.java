@@ -27,13 +27,16 @@ import java.io.Serializable;
 import java.util.Iterator;
 import java.util.List;
 
+import org.hibernate.Hibernate;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Order;
 import org.hibernate.transform.ResultTransformer;
 import org.springframework.orm.hibernate5.HibernateCallback;
 
+import net.lc4ever.framework.dao.FetchPlan;
 import net.lc4ever.framework.dao.GenericDaoStatistics;
 import net.lc4ever.framework.domain.BaseEntity;
+import net.lc4ever.framework.domain.PathTree;
 
 /**
  * 
@@ -595,4 +598,103 @@ public class GenericDAOHibernateStatics extends GenericDaoHibernate {
 		statistics.topResultSqlClassCost(sql, System.currentTimeMillis()-start);
 		return result;
 	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#get(java.lang.Class, java.io.Serializable, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> E get(final Class<E> clazz, final ID id, final FetchPlan plan) {
+		long start = System.currentTimeMillis();
+		E result = super.get(clazz, id, plan);
+		statistics.getCost(clazz, System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#list(java.lang.Class, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> list(final Class<E> clazz, final FetchPlan plan) {
+		long start = System.currentTimeMillis();
+		List<E> result = super.list(clazz, plan);
+		statistics.listCost(clazz, System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#queryByProperties(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> queryByProperties(final Class<E> clazz, final FetchPlan plan, final String[] properties, final Object[] args, final Order... orders) {
+		long start = System.currentTimeMillis();
+		List<E> result = super.queryByProperties(clazz, plan, properties, args, orders);
+		statistics.criteriaCost(clazz, System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#hql(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String, java.lang.Object[])
+	 */
+	@Override
+	public <T> List<T> hql(final Class<T> expectType, final FetchPlan plan, final String hql, final Object... args) {
+		long start = System.currentTimeMillis();
+		List<T> result = super.hql(expectType, plan, hql, args);
+		statistics.hqlClassCost(hql, System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#projection(java.lang.Class, java.lang.Class, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final String[] properties, final Object[] args, final Order... orders) {
+		long start = System.currentTimeMillis();
+		List<D> result = super.projection(dto, clazz, properties, args, orders);
+		statistics.hqlClassCost(dto.getName(), System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#projection(java.lang.Class, java.lang.Class, long, long, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final long firstResult, final long maxResults, final String[] properties, final Object[] args, final Order... orders) {
+		long start = System.currentTimeMillis();
+		List<D> result = super.projection(dto, clazz, firstResult, maxResults, properties, args, orders);
+		statistics.hqlClassCost(dto.getName(), System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#subtree(net.lc4ever.framework.domain.PathTree)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> subtree(final T node) {
+		long start = System.currentTimeMillis();
+		List<T> result = super.subtree(node);
+		statistics.hqlClassCost(Hibernate.getClass(node).getName(), System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#ancestors(net.lc4ever.framework.domain.PathTree)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> ancestors(final T node) {
+		long start = System.currentTimeMillis();
+		List<T> result = super.ancestors(node);
+		statistics.hqlClassCost(Hibernate.getClass(node).getName(), System.currentTimeMillis() - start);
+		return result;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.hibernate.GenericDaoHibernate#descendants(net.lc4ever.framework.domain.PathTree, int)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> descendants(final T node, final int depth) {
+		long start = System.currentTimeMillis();
+		List<T> result = super.descendants(node, depth);
+		statistics.hqlClassCost(Hibernate.getClass(node).getName(), System.currentTimeMillis() - start);
+		return result;
+	}
 }
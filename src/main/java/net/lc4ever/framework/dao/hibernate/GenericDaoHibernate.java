@@ -24,15 +24,28 @@
 package net.lc4ever.framework.dao.hibernate;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.AttributeNode;
+import javax.persistence.EntityGraph;
+import javax.persistence.Subgraph;
 
 import org.apache.commons.lang3.NotImplementedException;
 import org.hibernate.Cache;
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.Hibernate;
 import org.hibernate.LobHelper;
 import org.hibernate.Query;
@@ -48,8 +61,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.orm.hibernate5.HibernateCallback;
 
+import net.lc4ever.framework.dao.FetchPlan;
 import net.lc4ever.framework.dao.GenericDao;
 import net.lc4ever.framework.domain.BaseEntity;
+import net.lc4ever.framework.domain.PathTree;
 
 /**
  *
@@ -60,8 +75,12 @@ public class GenericDaoHibernate implements GenericDao {
 
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
+	private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
 	protected SessionFactory sessionFactory;
 
+	private final ConcurrentMap<List<Class<?>>, DtoProjection<?>> projections = new ConcurrentHashMap<>();
+
 	/**
 	 * @param sessionFactory the sessionFactory to set
 	 */
@@ -763,4 +782,293 @@ public class GenericDaoHibernate implements GenericDao {
 		return (T) query.uniqueResult();
 	}
 
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#get(java.lang.Class, java.io.Serializable, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> E get(final Class<E> clazz, final ID id, final FetchPlan plan) {
+		logger.trace("Getting Entry for Class:{}, using Id:{}, {}.", clazz.getName(), id, plan);
+		Session session = getSession();
+		if (plan.getProfile() == null) {
+			return session.find(clazz, id, Collections.<String, Object> singletonMap(FETCH_GRAPH, entityGraph(session, clazz, plan)));
+		}
+		boolean enabled = enableFetchProfile(session, plan);
+		try {
+			return session.get(clazz, id);
+		} finally {
+			if (enabled) {
+				session.disableFetchProfile(plan.getProfile());
+			}
+		}
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#list(java.lang.Class, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> list(final Class<E> clazz, final FetchPlan plan) {
+		logger.trace("Listing All Entries for Class:{}, {}.", clazz.getName(), plan);
+		return fetch(clazz, plan, getSession().createCriteria(clazz));
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#queryByProperties(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> queryByProperties(final Class<E> clazz, final FetchPlan plan, final String[] properties, final Object[] args, final Order... orders) {
+		if (properties == null || args == null) {
+			throw new NullPointerException("argument properties and args must not be null.");
+		}
+		if (properties.length != args.length) {
+			throw new IllegalArgumentException("argument properties.length must equals args.length.");
+		}
+		Criteria criteria = getSession().createCriteria(clazz);
+		for (int i = 0; i < properties.length; i++) {
+			String property = properties[i];
+			if (property == null) {
+				throw new NullPointerException("property name must not be null, properties position:" + i);
+			}
+			Object arg = args[i];
+			criteria.add(arg == null ? Restrictions.isNull(property) : Restrictions.eq(property, arg));
+		}
+		if (orders != null) {
+			for (Order order : orders) {
+				criteria.addOrder(order);
+			}
+		}
+		return fetch(clazz, plan, criteria);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#hql(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String, java.lang.Object[])
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <T> List<T> hql(final Class<T> expectType, final FetchPlan plan, final String hql, final Object... args) {
+		logger.trace("HQL query, hql:[{}], args count:{}, {}.", hql, args == null ? 0 : args.length, plan);
+		if (plan.getProfile() != null) {
+			throw new UnsupportedOperationException("HQL查询不支持fetch profile, 请使用graph或paths.");
+		}
+		Session session = getSession();
+		Query query = session.createQuery(hql);
+		for (int i = 0; args != null && i < args.length; i++) {
+			query.setParameter(i, args[i]);
+		}
+		query.setHint(FETCH_GRAPH, entityGraph(session, expectType, plan));
+		return query.list();
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#projection(java.lang.Class, java.lang.Class, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final String[] properties, final Object[] args, final Order... orders) {
+		DtoProjection<D> projection = projection(clazz, dto);
+		return projection.transform(projectionQuery(projection, properties, args, orders).list());
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#projection(java.lang.Class, java.lang.Class, long, long, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final long firstResult, final long maxResults, final String[] properties, final Object[] args, final Order... orders) {
+		DtoProjection<D> projection = projection(clazz, dto);
+		Query query = projectionQuery(projection, properties, args, orders);
+		query.setFirstResult((int) firstResult);
+		query.setMaxResults((int) maxResults);
+		return projection.transform(query.list());
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#subtree(net.lc4ever.framework.domain.PathTree)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> subtree(final T node) {
+		Query query = getSession().createQuery("from " + Hibernate.getClass(node).getName() + " e where e.treePath like ? escape '!' order by e.treePath");
+		query.setParameter(0, TreePathInterceptor.like(treePath(node)));
+		return query.list();
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#ancestors(net.lc4ever.framework.domain.PathTree)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> ancestors(final T node) {
+		String path = treePath(node);
+		List<String> paths = new ArrayList<>();
+		for (int i = path.indexOf(PathTree.SEPARATOR, 1); i > 0 && i < path.length() - 1; i = path.indexOf(PathTree.SEPARATOR, i + 1)) {
+			paths.add(path.substring(0, i + 1));
+		}
+		if (paths.isEmpty()) {
+			return new ArrayList<>();
+		}
+		Query query = getSession().createQuery("from " + Hibernate.getClass(node).getName() + " e where e.treePath in (:paths) order by e.treeLevel");
+		query.setParameterList("paths", paths);
+		return query.list();
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#descendants(net.lc4ever.framework.domain.PathTree, int)
+	 */
+	@SuppressWarnings("unchecked")
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> descendants(final T node, final int depth) {
+		Query query = getSession().createQuery("from " + Hibernate.getClass(node).getName() + " e where e.treePath like ? escape '!' and e.treeLevel > ? and e.treeLevel <= ? order by e.treePath");
+		query.setParameter(0, TreePathInterceptor.like(treePath(node)));
+		query.setParameter(1, node.getTreeLevel());
+		query.setParameter(2, node.getTreeLevel() + depth);
+		return query.list();
+	}
+
+	private static String treePath(final PathTree<?, ?> node) {
+		if (node.getTreePath() == null) {
+			throw new IllegalStateException("节点路径未初始化, id: " + node.getId());
+		}
+		return node.getTreePath();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <D> DtoProjection<D> projection(final Class<?> clazz, final Class<D> dto) {
+		List<Class<?>> key = Arrays.<Class<?>> asList(clazz, dto);
+		DtoProjection<?> projection = projections.get(key);
+		if (projection == null) {
+			projection = DtoProjection.create(sessionFactory, clazz, dto);
+			DtoProjection<?> exists = projections.putIfAbsent(key, projection);
+			if (exists != null) {
+				projection = exists;
+			}
+		}
+		return (DtoProjection<D>) projection;
+	}
+
+	private Query projectionQuery(final DtoProjection<?> projection, final String[] properties, final Object[] args, final Order... orders) {
+		if (properties == null || args == null) {
+			throw new NullPointerException("argument properties and args must not be null.");
+		}
+		if (properties.length != args.length) {
+			throw new IllegalArgumentException("argument properties.length must equals args.length.");
+		}
+		StringBuilder hql = new StringBuilder(projection.getSelect());
+		List<Object> params = new ArrayList<>(args.length);
+		for (int i = 0; i < properties.length; i++) {
+			String property = properties[i];
+			if (property == null) {
+				throw new NullPointerException("property name must not be null, properties position:" + i);
+			}
+			hql.append(i == 0 ? " where " : " and ").append(DtoProjection.ALIAS).append('.').append(property);
+			if (args[i] == null) {
+				hql.append(" is null");
+			} else {
+				hql.append(" = ?");
+				params.add(args[i]);
+			}
+		}
+		for (int i = 0; orders != null && i < orders.length; i++) {
+			Order order = orders[i];
+			hql.append(i == 0 ? " order by " : ", ");
+			if (order.isIgnoreCase()) {
+				hql.append("lower(").append(DtoProjection.ALIAS).append('.').append(order.getPropertyName()).append(')');
+			} else {
+				hql.append(DtoProjection.ALIAS).append('.').append(order.getPropertyName());
+			}
+			hql.append(order.isAscending() ? " asc" : " desc");
+		}
+		logger.trace("Projection query, hql:[{}], args count:{}.", hql, params.size());
+		Query query = getSession().createQuery(hql.toString());
+		for (int i = 0; i < params.size(); i++) {
+			query.setParameter(i, params.get(i));
+		}
+		return query;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <E> List<E> fetch(final Class<E> clazz, final FetchPlan plan, final Criteria criteria) {
+		Session session = getSession();
+		String[] paths = plan.getGraph() == null ? plan.getPaths() : graphPaths(session.getEntityGraph(plan.getGraph()));
+		if (paths != null && paths.length > 0) {
+			for (String path : paths) {
+				criteria.setFetchMode(path, FetchMode.JOIN);
+			}
+			criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
+		}
+		boolean enabled = enableFetchProfile(session, plan);
+		try {
+			return criteria.list();
+		} finally {
+			if (enabled) {
+				session.disableFetchProfile(plan.getProfile());
+			}
+		}
+	}
+
+	/**
+	 * @return 是否由本次调用启用, 调用方据此决定是否关闭.
+	 */
+	private boolean enableFetchProfile(final Session session, final FetchPlan plan) {
+		if (plan.getProfile() == null || session.isFetchProfileEnabled(plan.getProfile())) {
+			return false;
+		}
+		session.enableFetchProfile(plan.getProfile());
+		return true;
+	}
+
+	/**
+	 * 命名EntityGraph直接使用; paths转换为以root为根的EntityGraph, 如: "transitions.actors".
+	 */
+	private <T> EntityGraph<?> entityGraph(final Session session, final Class<T> root, final FetchPlan plan) {
+		if (plan.getGraph() != null) {
+			return session.getEntityGraph(plan.getGraph());
+		}
+		String[] paths = plan.getPaths();
+		Set<String> parents = new HashSet<>();
+		for (String path : paths) {
+			for (int dot = path.indexOf('.'); dot > 0; dot = path.indexOf('.', dot + 1)) {
+				parents.add(path.substring(0, dot));
+			}
+		}
+		EntityGraph<T> graph = session.createEntityGraph(root);
+		Map<String, Subgraph<?>> subgraphs = new HashMap<>();
+		for (String path : paths) {
+			if (parents.contains(path)) {
+				subgraph(graph, subgraphs, path);
+				continue;
+			}
+			int dot = path.lastIndexOf('.');
+			if (dot < 0) {
+				graph.addAttributeNodes(path);
+			} else {
+				subgraph(graph, subgraphs, path.substring(0, dot)).addAttributeNodes(path.substring(dot + 1));
+			}
+		}
+		return graph;
+	}
+
+	private Subgraph<?> subgraph(final EntityGraph<?> graph, final Map<String, Subgraph<?>> subgraphs, final String path) {
+		Subgraph<?> subgraph = subgraphs.get(path);
+		if (subgraph == null) {
+			int dot = path.lastIndexOf('.');
+			subgraph = dot < 0 ? graph.addSubgraph(path) : subgraph(graph, subgraphs, path.substring(0, dot)).addSubgraph(path.substring(dot + 1));
+			subgraphs.put(path, subgraph);
+		}
+		return subgraph;
+	}
+
+	private String[] graphPaths(final EntityGraph<?> graph) {
+		List<String> paths = new ArrayList<>();
+		graphPaths(graph.getAttributeNodes(), "", paths);
+		return paths.toArray(new String[paths.size()]);
+	}
+
+	private void graphPaths(final List<AttributeNode<?>> nodes, final String prefix, final List<String> paths) {
+		for (AttributeNode<?> node : nodes) {
+			String path = prefix + node.getAttributeName();
+			paths.add(path);
+			for (Subgraph<?> subgraph : node.getSubgraphs().values()) {
+				graphPaths(subgraph.getAttributeNodes(), path + ".", paths);
+			}
+		}
+	}
+
 }
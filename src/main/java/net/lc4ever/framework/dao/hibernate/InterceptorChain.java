@@ -174,8 +174,13 @@ public class InterceptorChain extends EmptyInterceptor implements InitializingBe
 	 */
 	@Override
 	public int[] findDirty(final Object entity, final Serializable id, final Object[] currentState, final Object[] previousState, final String[] propertyNames, final Type[] types) {
-		// TODO not implement yet
-		return super.findDirty(entity, id, currentState, previousState, propertyNames, types);
+		int[] result = null;
+		for (Interceptor interceptor : interceptors) {
+			if ((result = interceptor.findDirty(entity, id, currentState, previousState, propertyNames, types)) != null) {
+				break;
+			}
+		}
+		return result;
 	}
 
 	/**
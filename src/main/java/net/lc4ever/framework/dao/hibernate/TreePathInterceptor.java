@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.type.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+
+import net.lc4ever.framework.domain.PathTree;
+
+/**
+ * 维护 {@link PathTree} 的物化路径.
+ * <p>
+ * 保存时根据父节点生成路径及深度; 更换父节点时更新本节点, 并在flush后以一条bulk update改写所有子孙节点的路径前缀及深度,
+ * 同时修正当前session中已加载的子孙节点.
+ *
+ * @author q-wang
+ */
+public class TreePathInterceptor extends EmptyInterceptor implements BeanFactoryAware {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private BeanFactory beanFactory;
+
+	private SessionFactory sessionFactory;
+
+	/** 当前线程flush中产生的节点移动, postFlush时处理. */
+	private final ThreadLocal<List<Move>> moves = new ThreadLocal<List<Move>>();
+
+	/**
+	 * 本拦截器通常作为sessionFactory的entityInterceptor, 为避免循环依赖, sessionFactory在首次使用时从BeanFactory获取.
+	 */
+	@Override
+	public void setBeanFactory(final BeanFactory beanFactory) throws BeansException {
+		this.beanFactory = beanFactory;
+	}
+
+	protected SessionFactory getSessionFactory() {
+		if (sessionFactory == null) {
+			sessionFactory = beanFactory.getBean(SessionFactory.class);
+		}
+		return sessionFactory;
+	}
+
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onSave(java.lang.Object, java.io.Serializable, java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onSave(final Object entity, final Serializable id, final Object[] state, final String[] propertyNames, final Type[] types) {
+		if (!(entity instanceof PathTree<?, ?>)) {
+			return false;
+		}
+		PathTree<?, ?> node = (PathTree<?, ?>) entity;
+		PathTree<?, ?> parent = node.parent();
+		String path = path(parent, id);
+		int level = parent == null ? 0 : parent.getTreeLevel() + 1;
+		logger.trace("onSave set treePath for entity: {}, id: {}, path: {}", entity.getClass(), id, path);
+		node.setTreePath(path);
+		node.setTreeLevel(level);
+		setState(state, propertyNames, path, level);
+		return true;
+	}
+
+	/**
+	 * @see org.hibernate.EmptyInterceptor#onFlushDirty(java.lang.Object, java.io.Serializable, java.lang.Object[], java.lang.Object[], java.lang.String[], org.hibernate.type.Type[])
+	 */
+	@Override
+	public boolean onFlushDirty(final Object entity, final Serializable id, final Object[] currentState, final Object[] previousState, final String[] propertyNames, final Type[] types) {
+		if (!(entity instanceof PathTree<?, ?>)) {
+			return false;
+		}
+		PathTree<?, ?> node = (PathTree<?, ?>) entity;
+		PathTree<?, ?> parent = node.parent();
+		String path = path(parent, id);
+		String previous = null;
+		int previousLevel = 0;
+		for (int i = 0; previousState != null && i < propertyNames.length; i++) {
+			if (propertyNames[i].equals("treePath")) {
+				previous = (String) previousState[i];
+			} else if (propertyNames[i].equals("treeLevel")) {
+				previousLevel = (Integer) previousState[i];
+			}
+		}
+		if (path.equals(previous)) {
+			return false;
+		}
+		if (previous != null && path.startsWith(previous)) {
+			throw new IllegalStateException("不能将节点移动到自身子树下: " + previous + " -> " + path);
+		}
+		int level = parent == null ? 0 : parent.getTreeLevel() + 1;
+		logger.debug("Moving tree node: {}, id: {}, {} -> {}", entity.getClass(), id, previous, path);
+		node.setTreePath(path);
+		node.setTreeLevel(level);
+		setState(currentState, propertyNames, path, level);
+		if (previous != null) {
+			List<Move> pending = moves.get();
+			if (pending == null) {
+				pending = new ArrayList<Move>();
+				moves.set(pending);
+			}
+			pending.add(new Move(Hibernate.getClass(entity), previous, path, level - previousLevel));
+		}
+		return true;
+	}
+
+	/**
+	 * @see org.hibernate.EmptyInterceptor#postFlush(java.util.Iterator)
+	 */
+	@SuppressWarnings("rawtypes")
+	@Override
+	public void postFlush(final Iterator entities) {
+		List<Move> pending = moves.get();
+		if (pending == null || pending.isEmpty()) {
+			return;
+		}
+		moves.remove();
+		Session session = getSessionFactory().getCurrentSession();
+		for (Move move : pending) {
+			int count = session.createQuery("update " + move.entity.getName() + " set treePath = concat(?, substring(treePath, ?)), treeLevel = treeLevel + ? where treePath like ? escape '!'")
+					.setParameter(0, move.to).setParameter(1, move.from.length() + 1).setParameter(2, move.delta).setParameter(3, like(move.from)).executeUpdate();
+			logger.debug("Moved {} descendants of {}: {} -> {}", count, move.entity.getName(), move.from, move.to);
+		}
+		while (entities.hasNext()) {
+			Object entity = entities.next();
+			if (entity instanceof PathTree<?, ?>) {
+				PathTree<?, ?> node = (PathTree<?, ?>) entity;
+				for (Move move : pending) {
+					if (move.entity.isInstance(node) && node.getTreePath() != null && node.getTreePath().startsWith(move.from)) {
+						node.setTreePath(move.to + node.getTreePath().substring(move.from.length()));
+						node.setTreeLevel(node.getTreeLevel() + move.delta);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @see org.hibernate.EmptyInterceptor#afterTransactionCompletion(org.hibernate.Transaction)
+	 */
+	@Override
+	public void afterTransactionCompletion(final Transaction tx) {
+		moves.remove();
+	}
+
+	protected String path(final PathTree<?, ?> parent, final Serializable id) {
+		if (id == null) {
+			throw new IllegalStateException("树节点ID未生成, 不支持IDENTITY主键.");
+		}
+		if (parent == null) {
+			return PathTree.SEPARATOR + id + PathTree.SEPARATOR;
+		}
+		if (parent.getTreePath() == null) {
+			throw new IllegalStateException("父节点路径未初始化, parent id: " + parent.getId());
+		}
+		return parent.getTreePath() + id + PathTree.SEPARATOR;
+	}
+
+	/**
+	 * like前缀匹配, 转义符为'!'.
+	 */
+	public static String like(final String path) {
+		return path.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+	}
+
+	private static void setState(final Object[] state, final String[] propertyNames, final String path, final int level) {
+		for (int i = 0; i < propertyNames.length; i++) {
+			if (propertyNames[i].equals("treePath")) {
+				state[i] = path;
+			} else if (propertyNames[i].equals("treeLevel")) {
+				state[i] = level;
+			}
+		}
+	}
+
+	private static class Move {
+
+		private final Class<?> entity;
+
+		private final String from;
+
+		private final String to;
+
+		private final int delta;
+
+		private Move(final Class<?> entity, final String from, final String to, final int delta) {
+			this.entity = entity;
+			this.from = from;
+			this.to = to;
+			this.delta = delta;
+		}
+	}
+}
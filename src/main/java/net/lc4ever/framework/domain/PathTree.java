@@ -0,0 +1,49 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.domain;
+
+import java.io.Serializable;
+
+/**
+ * 物化路径树节点.
+ * <p>
+ * 路径由根至本节点的ID组成, 如: "/1/5/9/", 由 {@link net.lc4ever.framework.dao.hibernate.TreePathInterceptor} 在保存及更换父节点时维护.
+ * 实体表应为TREE_PATH列建立索引, 子树查询使用前缀like, 祖先查询使用路径前缀in.
+ * <p>
+ * 路径在onSave时生成, 要求ID在insert前可得(sequence/assigned), 不支持IDENTITY主键.
+ *
+ * @author q-wang
+ */
+public interface PathTree<K extends Serializable, T extends PathTree<K, T>> extends BaseEntity<K>, Tree<T> {
+
+	public static final String SEPARATOR = "/";
+
+	public String getTreePath();
+
+	public void setTreePath(String treePath);
+
+	public int getTreeLevel();
+
+	public void setTreeLevel(int treeLevel);
+}
@@ -0,0 +1,95 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.domain;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.MappedSuperclass;
+import javax.persistence.Transient;
+
+/**
+ * 物化路径树Domain抽象父类, 子类映射parent/children关联.
+ * 
+ * @author q-wang
+ */
+@MappedSuperclass
+public abstract class PathTreeObject<K extends Serializable, T extends PathTreeObject<K, T>> extends TimestampObject<K> implements PathTree<K, T> {
+
+	public static final String COLUMN_TREE_PATH = "TREE_PATH";
+	public static final String COLUMN_TREE_LEVEL = "TREE_LEVEL";
+
+	protected String treePath;
+
+	protected int treeLevel;
+
+	/**
+	 * 根至本节点的ID路径.
+	 * 
+	 * TREE_PATH
+	 */
+	@Override
+	@Column(name = COLUMN_TREE_PATH, length = 1024)
+	public String getTreePath() {
+		return treePath;
+	}
+
+	@Override
+	public void setTreePath(final String treePath) {
+		this.treePath = treePath;
+	}
+
+	/**
+	 * 节点深度, 根节点为0.
+	 * 
+	 * TREE_LEVEL
+	 */
+	@Override
+	@Column(name = COLUMN_TREE_LEVEL)
+	public int getTreeLevel() {
+		return treeLevel;
+	}
+
+	@Override
+	public void setTreeLevel(final int treeLevel) {
+		this.treeLevel = treeLevel;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.domain.Tree#isRoot()
+	 */
+	@Override
+	@Transient
+	public boolean isRoot() {
+		return parent() == null;
+	}
+
+	/**
+	 * @see net.lc4ever.framework.domain.Tree#level()
+	 */
+	@Override
+	public int level() {
+		return treeLevel;
+	}
+}
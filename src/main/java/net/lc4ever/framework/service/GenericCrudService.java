@@ -40,7 +40,9 @@ import org.springframework.orm.hibernate5.HibernateCallback;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import net.lc4ever.framework.dao.FetchPlan;
 import net.lc4ever.framework.domain.BaseEntity;
+import net.lc4ever.framework.domain.PathTree;
 
 /**
  * @author <a href="mailto:apeidou@gmail.com">Q-Wang</a>
@@ -634,4 +636,119 @@ public interface GenericCrudService {
 
 	public <T> T uniqueResultHql(Class<T> clazz, String hql, Map<String, Object> params);
 
+	/**
+	 * 按ID取数据库条目, 并按抓取计划加载关联对象.
+	 *
+	 * @param clazz EntityBean 类型
+	 * @param id 数据库条目主键值
+	 * @param plan 抓取计划
+	 * @return 数据库条目
+	 * @see FetchPlan
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <E extends BaseEntity<ID>, ID extends Serializable> E get(final Class<E> clazz, final ID id, final FetchPlan plan);
+
+	/**
+	 * 列表操作, 并按抓取计划加载关联对象.
+	 *
+	 * @param clazz EntityBean 类型
+	 * @param plan 抓取计划
+	 * @return select结果集
+	 * @see FetchPlan
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> list(final Class<E> clazz, final FetchPlan plan);
+
+	/**
+	 * 根据Properties对应Value取得结果列表, 并按抓取计划加载关联对象.
+	 *
+	 * 注意: Hibernate不支持同时join fetch多个无序List(bag)集合, 第二层集合请依赖 {@link org.hibernate.annotations.BatchSize}.
+	 *
+	 * @param clazz 实体类型(Domain Class)
+	 * @param plan 抓取计划
+	 * @param properties 属性列表
+	 * @param args 参数列表
+	 * @param orders 排序
+	 * @return List&lt;Entity&gt;, NOTE: empty list if no result.
+	 * @see #queryByProperties(Class, String[], Object[], Order...)
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> queryByProperties(final Class<E> clazz, final FetchPlan plan,
+			final String[] properties, final Object[] args, final Order... orders);
+
+	/**
+	 * 数据库HQL查询, 并按抓取计划加载关联对象.
+	 *
+	 * 仅支持graph及paths方式的抓取计划, paths以expectType为根实体.
+	 *
+	 * @param expectType 期望返回结果集类型(根实体类型)
+	 * @param plan 抓取计划
+	 * @param hql HQL查询语句
+	 * @param args HQL查询参数
+	 * @return 查询结果集
+	 * @see #hql(Class, String, Object...)
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <T> List<T> hql(final Class<T> expectType, final FetchPlan plan, final String hql, final Object... args);
+
+	/**
+	 * DTO投影查询.
+	 * 
+	 * 按DTO可写属性与实体基本属性同名匹配生成select列表, 仅查询匹配的列并直接填充DTO, 不加载实体.
+	 * 条件语义同 {@link #queryByProperties(Class, String[], Object[], Order...)}.
+	 * 
+	 * eg: select e.code, e.name from ENTITY e where e.property1 = ? and e.property2 is null
+	 * 
+	 * @param <D> DTO类型泛参
+	 * @param dto DTO类型
+	 * @param clazz 实体类型(Domain Class)
+	 * @param properties 属性列表
+	 * @param args 参数列表
+	 * @param orders 排序
+	 * @return List&lt;DTO&gt;, NOTE: empty list if no result.
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz,
+			final String[] properties, final Object[] args, final Order... orders);
+
+	/**
+	 * @param firstResult 起始条目数
+	 * @param maxResults 最大结果数
+	 * @see #projection(Class, Class, String[], Object[], Order...)
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz,
+			final long firstResult, final long maxResults, final String[] properties, final Object[] args, final Order... orders);
+	/**
+	 * 子树查询, 包含节点自身, 按路径排序(先序).
+	 * 
+	 * eg: from ENTITY e where e.treePath like '/1/5/%'
+	 * 
+	 * @param node 树节点
+	 * @return 子树节点列表
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> subtree(final T node);
+
+	/**
+	 * 祖先查询, 不包含节点自身, 按深度由根至父节点排序.
+	 * 
+	 * eg: from ENTITY e where e.treePath in ('/1/', '/1/5/')
+	 * 
+	 * @param node 树节点
+	 * @return 祖先节点列表, 根节点返回空列表
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> ancestors(final T node);
+
+	/**
+	 * 限定深度的子孙查询, 不包含节点自身.
+	 * 
+	 * @param node 树节点
+	 * @param depth 相对深度, 1为直接子节点
+	 * @return 子孙节点列表, 按路径排序
+	 */
+	@Transactional(propagation = Propagation.REQUIRED, readOnly = true)
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> descendants(final T node, final int depth);
+
 }
@@ -29,6 +29,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.hibernate.Cache;
+import org.hibernate.Hibernate;
 import org.hibernate.LobHelper;
 import org.hibernate.Session;
 import org.hibernate.criterion.DetachedCriteria;
@@ -36,8 +37,11 @@ import org.hibernate.criterion.Order;
 import org.hibernate.transform.ResultTransformer;
 import org.springframework.orm.hibernate5.HibernateCallback;
 
+import net.lc4ever.framework.context.RequestIdentityCache;
+import net.lc4ever.framework.dao.FetchPlan;
 import net.lc4ever.framework.dao.GenericDao;
 import net.lc4ever.framework.domain.BaseEntity;
+import net.lc4ever.framework.domain.PathTree;
 import net.lc4ever.framework.service.GenericCrudService;
 
 /**
@@ -68,7 +72,17 @@ public class GenericCrudServiceImpl implements GenericCrudService {
 	 */
 	@Override
 	public <E extends BaseEntity<ID>, ID extends Serializable> E get(final Class<E> clazz, final ID id) {
-		return genericDao.get(clazz, id);
+		if (!RequestIdentityCache.isCacheable(clazz)) {
+			return genericDao.get(clazz, id);
+		}
+		E entity = RequestIdentityCache.get(clazz, id); // 可能由其它Session加载, 已游离, 只读
+		if (entity == null) {
+			entity = genericDao.get(clazz, id);
+			if (entity != null) {
+				RequestIdentityCache.put(clazz, id, entity);
+			}
+		}
+		return entity;
 	}
 
 	/**
@@ -77,6 +91,7 @@ public class GenericCrudServiceImpl implements GenericCrudService {
 	 */
 	@Override
 	public <E extends BaseEntity<ID>, ID extends Serializable> void delete(final E entity) {
+		evict(entity);
 		genericDao.delete(entity);
 	}
 
@@ -93,6 +108,7 @@ public class GenericCrudServiceImpl implements GenericCrudService {
 	 */
 	@Override
 	public <E extends BaseEntity<ID>, ID extends Serializable> void update(final E entity) {
+		evict(entity);
 		genericDao.update(entity);
 	}
 
@@ -101,9 +117,17 @@ public class GenericCrudServiceImpl implements GenericCrudService {
 	 */
 	@Override
 	public <E extends BaseEntity<ID>, ID extends Serializable> void saveOrUpdate(final E entity) {
+		evict(entity);
 		genericDao.saveOrUpdate(entity);
 	}
 
+	private void evict(final BaseEntity<?> entity) {
+		Class<?> clazz = Hibernate.getClass(entity);
+		if (entity.getId() != null && RequestIdentityCache.isCacheable(clazz)) {
+			RequestIdentityCache.evict(clazz, entity.getId());
+		}
+	}
+
 	/**
 	 * @see net.lc4ever.framework.dao.GenericDao#count(java.lang.Class)
 	 */
@@ -520,4 +544,75 @@ public class GenericCrudServiceImpl implements GenericCrudService {
 		return genericDao.uniqueResultHql(clazz, hql, params);
 	}
 
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#get(java.lang.Class, java.io.Serializable, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> E get(final Class<E> clazz, final ID id, final FetchPlan plan) {
+		return genericDao.get(clazz, id, plan);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#list(java.lang.Class, net.lc4ever.framework.dao.FetchPlan)
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> list(final Class<E> clazz, final FetchPlan plan) {
+		return genericDao.list(clazz, plan);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#queryByProperties(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <E extends BaseEntity<ID>, ID extends Serializable> List<E> queryByProperties(final Class<E> clazz, final FetchPlan plan, final String[] properties, final Object[] args, final Order... orders) {
+		return genericDao.queryByProperties(clazz, plan, properties, args, orders);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#hql(java.lang.Class, net.lc4ever.framework.dao.FetchPlan, java.lang.String, java.lang.Object[])
+	 */
+	@Override
+	public <T> List<T> hql(final Class<T> expectType, final FetchPlan plan, final String hql, final Object... args) {
+		return genericDao.hql(expectType, plan, hql, args);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#projection(java.lang.Class, java.lang.Class, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final String[] properties, final Object[] args, final Order... orders) {
+		return genericDao.projection(dto, clazz, properties, args, orders);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#projection(java.lang.Class, java.lang.Class, long, long, java.lang.String[], java.lang.Object[], org.hibernate.criterion.Order[])
+	 */
+	@Override
+	public <D, E extends BaseEntity<ID>, ID extends Serializable> List<D> projection(final Class<D> dto, final Class<E> clazz, final long firstResult, final long maxResults, final String[] properties, final Object[] args, final Order... orders) {
+		return genericDao.projection(dto, clazz, firstResult, maxResults, properties, args, orders);
+	}
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#subtree(net.lc4ever.framework.domain.PathTree)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> subtree(final T node) {
+		return genericDao.subtree(node);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#ancestors(net.lc4ever.framework.domain.PathTree)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> ancestors(final T node) {
+		return genericDao.ancestors(node);
+	}
+
+	/**
+	 * @see net.lc4ever.framework.dao.GenericDao#descendants(net.lc4ever.framework.domain.PathTree, int)
+	 */
+	@Override
+	public <K extends Serializable, T extends PathTree<K, T>> List<T> descendants(final T node, final int depth) {
+		return genericDao.descendants(node, depth);
+	}
+
 }
@@ -66,6 +66,14 @@ public interface StateMachine {
 	 * 返回审批历史(倒序).
 	 */
 	List<ActionLogHistory> actionLogHistories();
+
+	/**
+	 * 分页的审批历史(倒序).
+	 * 
+	 * @param firstResult 起始位置
+	 * @param maxResults 最大条数
+	 */
+	List<ActionLogHistory> actionLogHistories(int firstResult, int maxResults);
 	
 	/**
 	 * 当前参与人(不含被退回前).
@@ -111,7 +119,7 @@ public interface StateMachine {
 	boolean isEnded();
 	
 	/**
-	 * NOTE: 必须存在Hibernate Session, 否则无法获取.
+	 * NOTE: 必须存在Hibernate Session, 否则无法获取. 可变类型每次返回新解码的对象.
 	 * @see #getContext(TypeToken)
 	 * @see StateMachineFactory#create(String, String, Object)
 	 * @return 流程上下文数据
@@ -119,7 +127,7 @@ public interface StateMachine {
 	public <T> T getContext(Class<T> clazz);
 	
 	/**
-	 * NOTE: 必须存在Hibernate Session, 否则无法获取.
+	 * NOTE: 必须存在Hibernate Session, 否则无法获取. 可变类型每次返回新解码的对象.
 	 * @see #getContext(Class)
 	 * @see StateMachineFactory#create(String, String, Object)
 	 * @return 流程上下文数据
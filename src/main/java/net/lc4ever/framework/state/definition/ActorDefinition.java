@@ -40,6 +40,7 @@ import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Immutable;
@@ -55,6 +56,7 @@ import net.lc4ever.framework.domain.TimestampObject;;
 		@UniqueConstraint(columnNames = { "CODE", "MACHINE" }, name = "UK_STATE_MACHINE_ACTOR_MC") })
 @SequenceGenerator(name = "state.machine.actor", sequenceName = "SEQ_STATE_MACHINE_ACTOR")
 @Cacheable
+@BatchSize(size = 20)
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class ActorDefinition extends TimestampObject<Long> {
 
@@ -111,6 +113,7 @@ public class ActorDefinition extends TimestampObject<Long> {
 	}
 
 	@ManyToMany
+	@BatchSize(size = 20)
 	@JoinTable(name = "STATE_MACHINE_ACTOR_STATE", foreignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_S_A"), joinColumns = @JoinColumn(name = "ACTOR"), inverseJoinColumns = @JoinColumn(name = "STATE_"), inverseForeignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_S_S"))
 	public Set<StateDefinition> getVisibleStates() {
 		return visibleStates;
@@ -121,6 +124,7 @@ public class ActorDefinition extends TimestampObject<Long> {
 	}
 
 	@ManyToMany
+	@BatchSize(size = 20)
 	@JoinTable(name = "STATE_MACHINE_ACTOR_TRANSITION", foreignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_T_A"), joinColumns = @JoinColumn(name = "ACTOR"), inverseJoinColumns = @JoinColumn(name = "TRANSITION"), inverseForeignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_T_T"))
 	public Set<TransitionDefinition> getAvailableTransitions() {
 		return availableTransitions;
@@ -0,0 +1,366 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.definition;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Hibernate;
+
+import net.lc4ever.framework.domain.BaseEntity;
+
+/**
+ * 编译后的状态机定义, 以数组下标组织状态, 越迁与参与者, 编译完成后的查找不再访问数据库.
+ * <p>
+ * 编译结果只保存ID, 代码, 标志及下标等不可变值, 不引用定义实体, 可在线程及Session间共享;
+ * 需要定义实体(监听器回调, 实例关联)时由调用方按ID在当前Session中加载.
+ *
+ * @author q-wang
+ */
+public final class CompiledStateMachine {
+
+	/**
+	 * 状态的不可变投影.
+	 */
+	public static final class State {
+
+		private final int index;
+
+		private final Long id;
+
+		private final String code;
+
+		private final boolean starter;
+
+		private final boolean finalizer;
+
+		private final boolean terminator;
+
+		private State(int index, StateDefinition state) {
+			this.index = index;
+			this.id = state.getId();
+			this.code = state.getCode();
+			this.starter = state.isStarter();
+			this.finalizer = state.isFinalizer();
+			this.terminator = state.isTerminator();
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public boolean isStarter() {
+			return starter;
+		}
+
+		public boolean isFinalizer() {
+			return finalizer;
+		}
+
+		public boolean isTerminator() {
+			return terminator;
+		}
+
+		@Override
+		public String toString() {
+			return "State[" + id + ", " + code + "]";
+		}
+	}
+
+	/**
+	 * 越迁的不可变投影.
+	 */
+	public static final class Transition {
+
+		private final int index;
+
+		private final Long id;
+
+		private final String code;
+
+		private final State fromState;
+
+		private final State toState;
+
+		private final Long timeout;
+
+		private Transition(int index, TransitionDefinition transition, State fromState, State toState) {
+			this.index = index;
+			this.id = transition.getId();
+			this.code = transition.getCode();
+			this.fromState = fromState;
+			this.toState = toState;
+			this.timeout = transition.getTimeout();
+		}
+
+		public int getIndex() {
+			return index;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public String getCode() {
+			return code;
+		}
+
+		public State getFromState() {
+			return fromState;
+		}
+
+		public State getToState() {
+			return toState;
+		}
+
+		/**
+		 * @see TransitionDefinition#getTimeout()
+		 */
+		public Long getTimeout() {
+			return timeout;
+		}
+
+		/**
+		 * 离开或进入起始状态的越迁, 仅流程创建人可操作.
+		 */
+		public boolean isStarterRelated() {
+			return fromState.isStarter() || toState.isStarter();
+		}
+
+		@Override
+		public String toString() {
+			return "Transition[" + id + ", " + code + "]";
+		}
+	}
+
+	private final String id;
+
+	private final int version;
+
+	private final List<State> states;
+
+	private final Transition[] transitions;
+
+	private final Long[] actorIds;
+
+	private final Map<Long, State> stateIndex;
+
+	private final Map<Long, Transition> transitionIndex;
+
+	private final Map<Long, Integer> actorIndex;
+
+	/** 状态下标 -> 出口越迁 */
+	private final List<List<Transition>> outgoing;
+
+	/** 越迁下标 -> 参与者下标集合 */
+	private final BitSet[] transitionActors;
+
+	private CompiledStateMachine(StateMachineDefinition definition) {
+		this.id = definition.getId();
+		this.version = definition.getVersion();
+
+		Map<Long, StateDefinition> stateEntities = new LinkedHashMap<>();
+		Map<Long, TransitionDefinition> transitionEntities = new LinkedHashMap<>();
+		Map<Long, ActorDefinition> actorEntities = new LinkedHashMap<>();
+		collect(stateEntities, definition.getStates());
+		collect(transitionEntities, definition.getTransitions());
+		collect(actorEntities, definition.getActors());
+		for (StateDefinition state : stateEntities.values()) {
+			collect(transitionEntities, state.getTransitions());
+		}
+		for (TransitionDefinition transition : transitionEntities.values()) {
+			collect(actorEntities, transition.getActors());
+			collect(stateEntities, Collections.singletonList(transition.getFromState()));
+			collect(stateEntities, Collections.singletonList(transition.getToState()));
+		}
+
+		Map<Long, State> stateIndex = new HashMap<>(stateEntities.size() * 2);
+		List<State> states = new ArrayList<>(stateEntities.size());
+		for (StateDefinition entity : stateEntities.values()) {
+			State state = new State(states.size(), entity);
+			states.add(state);
+			stateIndex.put(state.getId(), state);
+		}
+		this.states = Collections.unmodifiableList(states);
+		this.stateIndex = Collections.unmodifiableMap(stateIndex);
+
+		this.actorIds = actorEntities.keySet().toArray(new Long[actorEntities.size()]);
+		Map<Long, Integer> actorIndex = new HashMap<>(actorIds.length * 2);
+		for (int i = 0; i < actorIds.length; i++) {
+			actorIndex.put(actorIds[i], i);
+		}
+		this.actorIndex = Collections.unmodifiableMap(actorIndex);
+
+		this.transitions = new Transition[transitionEntities.size()];
+		this.transitionActors = new BitSet[transitions.length];
+		Map<Long, Transition> transitionIndex = new HashMap<>(transitions.length * 2);
+		int i = 0;
+		for (TransitionDefinition entity : transitionEntities.values()) {
+			Transition transition = new Transition(i, entity, stateIndex.get(entity.getFromState().getId()), stateIndex.get(entity.getToState().getId()));
+			BitSet mask = new BitSet(actorIds.length);
+			if (entity.getActors() != null) {
+				for (ActorDefinition actor : entity.getActors()) {
+					mask.set(actorIndex.get(actor.getId()));
+				}
+			}
+			transitions[i] = transition;
+			transitionActors[i] = mask;
+			transitionIndex.put(transition.getId(), transition);
+			i++;
+		}
+		this.transitionIndex = Collections.unmodifiableMap(transitionIndex);
+
+		List<List<Transition>> outgoing = new ArrayList<>(states.size());
+		for (StateDefinition entity : stateEntities.values()) {
+			if (entity.getTransitions() == null || entity.getTransitions().isEmpty()) {
+				outgoing.add(Collections.<Transition>emptyList());
+			} else {
+				List<Transition> list = new ArrayList<>(entity.getTransitions().size());
+				for (TransitionDefinition transition : entity.getTransitions()) {
+					list.add(transitionIndex.get(transition.getId()));
+				}
+				outgoing.add(Collections.unmodifiableList(list));
+			}
+		}
+		this.outgoing = outgoing;
+	}
+
+	/**
+	 * 编译状态机定义, 需在Session内调用.
+	 */
+	public static CompiledStateMachine compile(StateMachineDefinition definition) {
+		return new CompiledStateMachine(definition);
+	}
+
+	private static <T extends BaseEntity<Long>> void collect(Map<Long, T> target, Collection<T> entities) {
+		Hibernate.initialize(entities);
+		if (entities != null) {
+			for (T entity : entities) {
+				if (!target.containsKey(entity.getId())) {
+					target.put(entity.getId(), entity);
+				}
+			}
+		}
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public int getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return 全部状态(只读)
+	 */
+	public List<State> states() {
+		return states;
+	}
+
+	/**
+	 * @return 状态, 不属于本定义时返回null
+	 */
+	public State state(Long stateId) {
+		return stateIndex.get(stateId);
+	}
+
+	/**
+	 * @return 越迁, 不属于本定义时返回null
+	 */
+	public Transition transition(Long transitionId) {
+		return transitionIndex.get(transitionId);
+	}
+
+	/**
+	 * @return 状态的出口越迁(只读), 不属于本定义时返回空列表
+	 */
+	public List<Transition> outgoing(Long stateId) {
+		State state = stateIndex.get(stateId);
+		return state == null ? Collections.<Transition>emptyList() : outgoing.get(state.getIndex());
+	}
+
+	/**
+	 * @return 状态下指定代码的出口越迁, 不存在时返回null
+	 */
+	public Transition transition(Long stateId, String code) {
+		for (Transition transition : outgoing(stateId)) {
+			if (transition.getCode().equals(code)) {
+				return transition;
+			}
+		}
+		return null;
+	}
+
+	public int actorCount() {
+		return actorIds.length;
+	}
+
+	/**
+	 * @return 参与者下标, 不属于本定义时返回-1
+	 */
+	public int actorIndex(Long actorId) {
+		Integer index = actorIndex.get(actorId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return 下标对应的参与者ID
+	 */
+	public Long actorId(int index) {
+		return actorIds[index];
+	}
+
+	/**
+	 * @return 越迁的参与者下标集合(副本)
+	 */
+	public BitSet actors(Transition transition) {
+		return owns(transition) ? (BitSet) transitionActors[transition.getIndex()].clone() : new BitSet();
+	}
+
+	/**
+	 * 判断参与者集合与越迁的参与者是否有交集.
+	 */
+	public boolean permits(Transition transition, BitSet actorMask) {
+		return owns(transition) && transitionActors[transition.getIndex()].intersects(actorMask);
+	}
+
+	private boolean owns(Transition transition) {
+		return transition.getIndex() < transitions.length && transitions[transition.getIndex()] == transition;
+	}
+}
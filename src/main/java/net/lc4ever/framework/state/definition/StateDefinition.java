@@ -46,6 +46,7 @@ import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
@@ -61,6 +62,7 @@ import net.lc4ever.framework.domain.TimestampObject;
 @DiscriminatorColumn(name = "TYPE", length = 32)
 @DiscriminatorValue("STATE")
 @Cacheable
+@BatchSize(size = 20)
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class StateDefinition extends TimestampObject<Long> {
 
@@ -124,6 +126,7 @@ public class StateDefinition extends TimestampObject<Long> {
 
 	/** outgoing */
 	@OneToMany(mappedBy = "fromState")
+	@BatchSize(size = 20)
 	public List<TransitionDefinition> getTransitions() {
 		return transitions;
 	}
@@ -166,6 +169,7 @@ public class StateDefinition extends TimestampObject<Long> {
 	}
 
 	@ManyToMany
+	@BatchSize(size = 20)
 	@JoinTable(name = "STATE_MACHINE_ACTOR_STATE", foreignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_S_S"), joinColumns = @JoinColumn(name = "STATE_"), inverseJoinColumns = @JoinColumn(name = "ACTOR"), inverseForeignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_S_A"))
 	public List<ActorDefinition> getActors() {
 		return actors;
@@ -36,6 +36,7 @@ import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
 import javax.persistence.Table;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Immutable;
@@ -49,6 +50,7 @@ import net.lc4ever.framework.domain.TimestampObject;
 @Entity
 @Table(name = "STATE_MACHINE_DEF")
 @Cacheable
+@BatchSize(size = 20)
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class StateMachineDefinition extends TimestampObject<String> {
 
@@ -112,6 +114,7 @@ public class StateMachineDefinition extends TimestampObject<String> {
 	}
 
 	@OneToMany(mappedBy = "machine", cascade = { CascadeType.ALL })
+	@BatchSize(size = 20)
 	public List<StateDefinition> getStates() {
 		return states;
 	}
@@ -121,6 +124,7 @@ public class StateMachineDefinition extends TimestampObject<String> {
 	}
 
 	@OneToMany(mappedBy = "machine", cascade = { CascadeType.ALL })
+	@BatchSize(size = 20)
 	public List<TransitionDefinition> getTransitions() {
 		return transitions;
 	}
@@ -130,6 +134,7 @@ public class StateMachineDefinition extends TimestampObject<String> {
 	}
 
 	@OneToMany(mappedBy = "machine", cascade = { CascadeType.ALL })
+	@BatchSize(size = 20)
 	public List<ActorDefinition> getActors() {
 		return actors;
 	}
@@ -41,6 +41,7 @@ import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.Immutable;
@@ -55,6 +56,7 @@ import net.lc4ever.framework.domain.TimestampObject;
 @Table(name = "STATE_MACHINE_DEF_TRANSITION", uniqueConstraints = {
 		@UniqueConstraint(columnNames = { "FROM_STATE", "CODE" }, name = "UK_STATE_MACHINE_TRANSITION_FC") })
 @Cacheable
+@BatchSize(size = 20)
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class TransitionDefinition extends TimestampObject<Long> {
 
@@ -136,9 +138,25 @@ public class TransitionDefinition extends TimestampObject<Long> {
 		this.toState = toState;
 	}
 
+	/** 超时秒数 */
+	private Long timeout;
+
+	/**
+	 * 非空时, 实例进入起始状态该秒数后仍未离开, 由 {@link net.lc4ever.framework.state.facade.TimerScheduler} 自动执行此越迁.
+	 */
+	@Column(name = "TIMEOUT_SECONDS", precision = 19, nullable = true)
+	public Long getTimeout() {
+		return timeout;
+	}
+
+	public void setTimeout(Long timeout) {
+		this.timeout = timeout;
+	}
+
 	private List<ActorDefinition> actors;
 
 	@ManyToMany(cascade = CascadeType.ALL)
+	@BatchSize(size = 20)
 	@JoinTable(name = "STATE_MACHINE_ACTOR_TRANSITION", joinColumns = @JoinColumn(name = "TRANSITION"), foreignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_T_T"), inverseJoinColumns = @JoinColumn(name = "ACTOR"), inverseForeignKey = @ForeignKey(name = "FK_STATE_MACHINE_A_T_A"))
 	public List<ActorDefinition> getActors() {
 		return actors;
@@ -0,0 +1,88 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+
+/**
+ * 按模板缓存 {@link ActorRoleIndex}, 每个模板仅一次查询加载全部角色映射.
+ * <p>
+ * 角色映射变更时由 {@link StateMachineMappingService} 调用 {@link #evict(String)}; 模板绑定的定义重新编译后自动重建.
+ *
+ * @author q-wang
+ */
+public class ActorRoleCache {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentMap<String, ActorRoleIndex> indexes = new ConcurrentHashMap<>();
+
+	private GenericCrudService crudService;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	public ActorRoleIndex index(String templateId, CompiledStateMachine graph) {
+		ActorRoleIndex index = indexes.get(templateId);
+		if (index == null || index.getGraph() != graph) {
+			logger.debug("Loading actor role mapping of template: {}", templateId);
+			List<Object[]> rows = crudService.hql(Object[].class, "select id.role, id.actor from ActorRoleMapper where id.template = ?", templateId);
+			index = new ActorRoleIndex(templateId, graph, rows);
+			indexes.put(templateId, index);
+		}
+		return index;
+	}
+
+	/**
+	 * 清除模板缓存, 处于事务中时在事务结束后再次清除, 避免并发读取加载未提交前的数据.
+	 */
+	public void evict(final String templateId) {
+		indexes.remove(templateId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					indexes.remove(templateId);
+				}
+			});
+		}
+	}
+
+	public void evict() {
+		indexes.clear();
+	}
+}
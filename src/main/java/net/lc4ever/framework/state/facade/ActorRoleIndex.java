@@ -0,0 +1,130 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+
+/**
+ * 单个模板的角色-参与者索引, 参与者以 {@link CompiledStateMachine} 中的下标表示.
+ *
+ * @author q-wang
+ */
+public final class ActorRoleIndex {
+
+	private final String template;
+
+	private final CompiledStateMachine graph;
+
+	/** 角色 -> 参与者下标集合 */
+	private final Map<String, BitSet> roleActors;
+
+	/** 参与者下标 -> 角色 */
+	private final Map<Integer, Set<String>> actorRoles;
+
+	/**
+	 * @param rows select id.role, id.actor 查询结果
+	 */
+	ActorRoleIndex(String template, CompiledStateMachine graph, List<Object[]> rows) {
+		this.template = template;
+		this.graph = graph;
+		Map<String, BitSet> roleActors = new HashMap<>();
+		Map<Integer, Set<String>> actorRoles = new HashMap<>();
+		for (Object[] row : rows) {
+			String role = (String) row[0];
+			int index = graph.actorIndex((Long) row[1]);
+			if (index < 0) {
+				continue;
+			}
+			BitSet actors = roleActors.get(role);
+			if (actors == null) {
+				actors = new BitSet(graph.actorCount());
+				roleActors.put(role, actors);
+			}
+			actors.set(index);
+			Set<String> roles = actorRoles.get(index);
+			if (roles == null) {
+				roles = new HashSet<>();
+				actorRoles.put(index, roles);
+			}
+			roles.add(role);
+		}
+		this.roleActors = roleActors;
+		this.actorRoles = actorRoles;
+	}
+
+	public String getTemplate() {
+		return template;
+	}
+
+	public CompiledStateMachine getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return 角色集合对应的参与者下标集合
+	 */
+	public BitSet actors(Collection<String> roles) {
+		BitSet result = new BitSet(graph.actorCount());
+		if (roles != null) {
+			for (String role : roles) {
+				BitSet actors = roleActors.get(role);
+				if (actors != null) {
+					result.or(actors);
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return 参与者下标集合对应的角色
+	 */
+	public Set<String> roles(BitSet actors) {
+		Set<String> result = new HashSet<>();
+		for (int i = actors.nextSetBit(0); i >= 0; i = actors.nextSetBit(i + 1)) {
+			Set<String> roles = actorRoles.get(i);
+			if (roles != null) {
+				result.addAll(roles);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @return 参与者的角色(只读)
+	 */
+	public Set<String> roles(int actorIndex) {
+		Set<String> roles = actorRoles.get(actorIndex);
+		return roles == null ? Collections.<String>emptySet() : Collections.unmodifiableSet(roles);
+	}
+}
@@ -0,0 +1,247 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Required;
+
+import net.lc4ever.framework.cglib.beans.BeanCopier;
+import net.lc4ever.framework.cglib.beans.BeanCopierFactory;
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.spi.ActionLogStore;
+import net.lc4ever.framework.state.spi.DefinitionSource;
+import net.lc4ever.framework.state.spi.InstanceStore;
+
+/**
+ * 事件溯源的内存实例存储: 每次越迁仅追加一条事件({@link ActionLog}), 当前状态由最近快照加其后的事件回放得到, 每 {@link #setSnapshotInterval(int) N} 条事件生成一次快照.
+ * <p>
+ * 仅用于 {@link StateMachineEngine} 的仿真与容量评估, 不能作为审计记录: 事件流只保存在内存中, 进程退出即丢失.
+ * 持久化的流程仍由 {@link StateMachineFactory} 改写实例行并在归档时复制到 {@link net.lc4ever.framework.state.instance.ActionLogHistory}, 本类不改变该写入路径.
+ * <p>
+ * 事件流即该实例的历史, 通过 {@link #logs(Long)} 读取; 追加时保存事件副本, 读取时返回副本, 调用方修改不影响已记录的事件.
+ * 同一实例的追加按版本号比较并交换, 无锁. 作为 {@link StateMachineEngine} 的实例存储时应同时配置为其日志存储.
+ *
+ * @author q-wang
+ */
+public class EventSourcedInstanceStore implements InstanceStore, ActionLogStore {
+
+	/** 不可变的事件链表节点, 新事件在表头 */
+	private static final class Event {
+
+		final ActionLog log;
+
+		final Event previous;
+
+		Event(ActionLog log, Event previous) {
+			this.log = log;
+			this.previous = previous;
+		}
+	}
+
+	/** 不可变的实例事件流 */
+	private static final class Stream {
+
+		final StateMachineInstance snapshot;
+
+		/** 快照之后的事件 */
+		final Event tail;
+
+		final int tailSize;
+
+		/** 全部事件 */
+		final Event all;
+
+		final long version;
+
+		Stream(StateMachineInstance snapshot, Event tail, int tailSize, Event all, long version) {
+			this.snapshot = snapshot;
+			this.tail = tail;
+			this.tailSize = tailSize;
+			this.all = all;
+			this.version = version;
+		}
+	}
+
+	private static final BeanCopier<ActionLog, ActionLog> COPIER = BeanCopierFactory.create(ActionLog.class);
+
+	private final ConcurrentMap<Long, Stream> streams = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, Long> keys = new ConcurrentHashMap<>();
+
+	private final AtomicLong instanceSequence = new AtomicLong();
+
+	private final AtomicLong eventSequence = new AtomicLong();
+
+	private DefinitionSource definitions;
+
+	private int snapshotInterval = 32;
+
+	@Required
+	public void setDefinitions(DefinitionSource definitions) {
+		this.definitions = definitions;
+	}
+
+	public void setSnapshotInterval(int snapshotInterval) {
+		this.snapshotInterval = snapshotInterval;
+	}
+
+	@Override
+	public StateMachineInstance get(Long id) {
+		Stream stream = streams.get(id);
+		return stream == null ? null : replay(stream);
+	}
+
+	@Override
+	public StateMachineInstance find(String templateId, String businessId) {
+		Long id = keys.get(key(templateId, businessId));
+		return id == null ? null : get(id);
+	}
+
+	@Override
+	public void insert(StateMachineInstance instance) {
+		Long id = instanceSequence.incrementAndGet();
+		if (keys.putIfAbsent(key(instance.getTemplate().getId(), instance.getBusinessId()), id) != null) {
+			throw new IllegalStateException("流程实例已存在: " + instance.getBusinessId());
+		}
+		instance.setId(id);
+		instance.setVersion(0L);
+		streams.put(id, new Stream(InMemoryInstanceStore.copy(instance), null, 0, null, 0));
+	}
+
+	/**
+	 * 追加越迁事件, 不改写实例; 事件数达到快照间隔时以当前实例生成快照.
+	 */
+	@Override
+	public boolean update(StateMachineInstance instance, ActionLog event) {
+		Stream current = streams.get(instance.getId());
+		if (current == null || current.version != instance.getVersion()) {
+			return false;
+		}
+		event.setId(eventSequence.incrementAndGet());
+		ActionLog recorded = copy(event);
+		long version = current.version + 1;
+		Event all = new Event(recorded, current.all);
+		Stream next;
+		if (current.tailSize + 1 >= snapshotInterval) {
+			StateMachineInstance snapshot = InMemoryInstanceStore.copy(instance);
+			snapshot.setVersion(version);
+			next = new Stream(snapshot, null, 0, all, version);
+		} else {
+			next = new Stream(current.snapshot, new Event(recorded, current.tail), current.tailSize + 1, all, version);
+		}
+		if (!streams.replace(instance.getId(), current, next)) {
+			event.setId(null);
+			return false;
+		}
+		instance.setVersion(version);
+		return true;
+	}
+
+	@Override
+	public boolean recordsEvents() {
+		return true;
+	}
+
+	@Override
+	public void remove(Long id) {
+		Stream stream = streams.remove(id);
+		if (stream != null) {
+			keys.remove(key(stream.snapshot.getTemplate().getId(), stream.snapshot.getBusinessId()));
+		}
+	}
+
+	/**
+	 * 单独追加的事件等同于一次越迁: 回放后的实例移至事件的目标状态.
+	 *
+	 * @throws IllegalArgumentException 实例不存在
+	 */
+	@Override
+	public void append(ActionLog log) {
+		while (true) {
+			Stream current = streams.get(log.getInstance());
+			if (current == null) {
+				throw new IllegalArgumentException("流程实例不存在: " + log.getInstance());
+			}
+			StateMachineInstance instance = replay(current);
+			StateMachineEngine.apply(instance, definitions.state(log.getToState()), log.getActor());
+			if (update(instance, log)) {
+				return;
+			}
+		}
+	}
+
+	@Override
+	public List<ActionLog> logs(Long instanceId) {
+		Stream stream = streams.get(instanceId);
+		if (stream == null) {
+			return Collections.emptyList();
+		}
+		List<ActionLog> logs = reverse(stream.all);
+		for (int i = 0; i < logs.size(); i++) {
+			logs.set(i, copy(logs.get(i)));
+		}
+		return logs;
+	}
+
+	private StateMachineInstance replay(Stream stream) {
+		StateMachineInstance instance = InMemoryInstanceStore.copy(stream.snapshot);
+		if (stream.tail != null) {
+			for (ActionLog event : reverse(stream.tail)) {
+				StateMachineEngine.apply(instance, definitions.state(event.getToState()), event.getActor());
+			}
+		}
+		instance.setVersion(stream.version);
+		return instance;
+	}
+
+	private static List<ActionLog> reverse(Event head) {
+		List<ActionLog> logs = new ArrayList<>();
+		for (Event event = head; event != null; event = event.previous) {
+			logs.add(event.log);
+		}
+		Collections.reverse(logs);
+		return logs;
+	}
+
+	private static ActionLog copy(ActionLog source) {
+		ActionLog target = new ActionLog();
+		COPIER.copy(source, target);
+		if (source.getActionTimestamp() != null) {
+			target.setActionTimestamp(new Date(source.getActionTimestamp().getTime()));
+		}
+		return target;
+	}
+
+	private static String key(String templateId, String businessId) {
+		return templateId + '\u0000' + businessId;
+	}
+}
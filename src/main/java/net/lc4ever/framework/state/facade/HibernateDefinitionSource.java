@@ -0,0 +1,98 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+import net.lc4ever.framework.state.spi.DefinitionSource;
+
+/**
+ * 从数据库加载定义, 复用 {@link StateMachineCompiler} 与 {@link ActorRoleCache} 的缓存.
+ *
+ * @author q-wang
+ */
+public class HibernateDefinitionSource implements DefinitionSource {
+
+	protected GenericCrudService crudService;
+
+	protected StateMachineCompiler compiler;
+
+	protected ActorRoleCache actorRoleCache;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	@Required
+	public void setCompiler(StateMachineCompiler compiler) {
+		this.compiler = compiler;
+	}
+
+	@Required
+	public void setActorRoleCache(ActorRoleCache actorRoleCache) {
+		this.actorRoleCache = actorRoleCache;
+	}
+
+	@Override
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public StateMachineTemplate template(String templateId) {
+		return crudService.get(StateMachineTemplate.class, templateId);
+	}
+
+	@Override
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public CompiledStateMachine graph(StateMachineTemplate template) {
+		return compiler.compile(template.getMachine());
+	}
+
+	@Override
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public StateDefinition state(Long stateId) {
+		return crudService.get(StateDefinition.class, stateId);
+	}
+
+	@Override
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public TransitionDefinition transition(Long transitionId) {
+		return crudService.get(TransitionDefinition.class, transitionId);
+	}
+
+	@Override
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public BitSet actors(String templateId, CompiledStateMachine graph, Collection<String> roles) {
+		return actorRoleCache.index(templateId, graph).actors(roles);
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRED;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Date;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.lc4ever.framework.format.DateFormatter;
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.spi.HistoryExporter;
+import net.lc4ever.framework.state.spi.HistoryPartitionStrategy;
+
+/**
+ * 历史表按月分区的维护与保留期清理, 由Quartz定时调用 {@link #maintain()} 与 {@link #purge()}.
+ * <p>
+ * 实例历史按ENDED_TIMESTAMP, 日志历史按ACTION_TIMESTAMP分区. 超出保留期的月份经 {@link HistoryExporter 导出}(可选)后按分区整体删除,
+ * 不逐行DELETE. 日志月份只在不含保留期内实例的日志时删除, 保证保留的实例审批历史完整.
+ * {@link StateMachineFactory} 查询实例历史时以 {@link #cutoff()} 限定分区列; 日志历史按实例查询, 不限定分区列, 长期运行的实例归档后早期日志仍可查到.
+ *
+ * @author q-wang
+ */
+public class HistoryRetention {
+
+	public static final String INSTANCE_HISTORY = "STATE_MACHINE_INSTANCE_HIS";
+
+	public static final String INSTANCE_HISTORY_COLUMN = "ENDED_TIMESTAMP";
+
+	public static final String LOG_HISTORY = "STATE_MACHINE_LOG_ACTION_HIS";
+
+	public static final String LOG_HISTORY_COLUMN = "ACTION_TIMESTAMP";
+
+	private static final String[][] TABLES = { { INSTANCE_HISTORY, INSTANCE_HISTORY_COLUMN }, { LOG_HISTORY, LOG_HISTORY_COLUMN } };
+
+	/** 保留期内实例早于保留期的最早日志 */
+	private static final String SQL_EARLIEST_RETAINED_LOG = "SELECT MIN(l." + LOG_HISTORY_COLUMN + ") FROM " + LOG_HISTORY + " l WHERE l." + LOG_HISTORY_COLUMN
+			+ " < ? AND EXISTS (SELECT 1 FROM " + INSTANCE_HISTORY + " i WHERE i.ID = l.INSTANCE AND i." + INSTANCE_HISTORY_COLUMN + " >= ?)";
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	protected GenericCrudService crudService;
+
+	protected HistoryPartitionStrategy strategy;
+
+	protected HistoryExporter exporter;
+
+	private int retentionMonths;
+
+	private int createAheadMonths = 2;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	@Required
+	public void setStrategy(HistoryPartitionStrategy strategy) {
+		this.strategy = strategy;
+	}
+
+	public void setExporter(HistoryExporter exporter) {
+		this.exporter = exporter;
+	}
+
+	/**
+	 * 保留月数(含当月), 早于该范围的月份将被删除.
+	 */
+	@Required
+	public void setRetentionMonths(int retentionMonths) {
+		this.retentionMonths = retentionMonths;
+	}
+
+	/**
+	 * 预建未来分区的月数.
+	 */
+	public void setCreateAheadMonths(int createAheadMonths) {
+		this.createAheadMonths = createAheadMonths;
+	}
+
+	/**
+	 * 保留期起始(月初), 早于该时间的历史不再查询.
+	 */
+	public Date cutoff() {
+		return month(DateFormatter.now(), 1 - retentionMonths);
+	}
+
+	/**
+	 * 预建当月至未来 {@link #setCreateAheadMonths(int) createAheadMonths} 个月的分区.
+	 */
+	@Transactional(propagation = REQUIRED)
+	public void maintain() {
+		final Date current = month(DateFormatter.now(), 0);
+		execute(new Work() {
+			@Override
+			public void execute(Connection connection) throws SQLException {
+				for (String[] table : TABLES) {
+					for (int i = 0; i <= createAheadMonths; i++) {
+						strategy.create(connection, table[0], table[1], month(current, i), month(current, i + 1));
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * 按月删除保留期以外的历史, 从表中最早的月份开始; 日志历史删除至保留期内实例最早日志所在的月份.
+	 *
+	 * @return 删除的月份数(各表合计)
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int purge() {
+		final Date cutoff = cutoff();
+		final int[] purged = { 0 };
+		execute(new Work() {
+			@Override
+			public void execute(Connection connection) throws SQLException {
+				Date logCutoff = logCutoff(connection, cutoff);
+				for (String[] table : TABLES) {
+					Date oldest = oldest(connection, table[0], table[1]);
+					if (oldest == null) {
+						continue;
+					}
+					Date bound = LOG_HISTORY.equals(table[0]) ? logCutoff : cutoff;
+					for (Date from = month(oldest, 0); from.before(bound); from = month(from, 1)) {
+						Date to = month(from, 1);
+						if (exporter != null) {
+							exporter.export(connection, table[0], table[1], from, to);
+						}
+						strategy.drop(connection, table[0], table[1], from, to);
+						purged[0]++;
+						logger.info("Purged {} partition {}.", table[0], DateFormatter.format("yyyyMM", from));
+					}
+				}
+			}
+		});
+		return purged[0];
+	}
+
+	private void execute(final Work work) {
+		crudService.callback(new HibernateCallback<Void>() {
+			@Override
+			public Void doInHibernate(Session session) throws HibernateException {
+				session.doWork(work);
+				return null;
+			}
+		});
+	}
+
+	private static Date logCutoff(Connection connection, Date cutoff) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(SQL_EARLIEST_RETAINED_LOG)) {
+			statement.setTimestamp(1, new Timestamp(cutoff.getTime()));
+			statement.setTimestamp(2, new Timestamp(cutoff.getTime()));
+			try (ResultSet rs = statement.executeQuery()) {
+				Timestamp earliest = rs.next() ? rs.getTimestamp(1) : null;
+				return earliest == null ? cutoff : month(earliest, 0);
+			}
+		}
+	}
+
+	private static Date oldest(Connection connection, String table, String column) throws SQLException {
+		try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery("SELECT MIN(" + column + ") FROM " + table)) {
+			return rs.next() ? rs.getTimestamp(1) : null;
+		}
+	}
+
+	/**
+	 * date所在月份加offset个月后的月初.
+	 */
+	static Date month(Date date, int offset) {
+		Calendar calendar = Calendar.getInstance();
+		calendar.setTime(date);
+		calendar.set(Calendar.DAY_OF_MONTH, 1);
+		calendar.set(Calendar.HOUR_OF_DAY, 0);
+		calendar.set(Calendar.MINUTE, 0);
+		calendar.set(Calendar.SECOND, 0);
+		calendar.set(Calendar.MILLISECOND, 0);
+		calendar.add(Calendar.MONTH, offset);
+		return calendar.getTime();
+	}
+}
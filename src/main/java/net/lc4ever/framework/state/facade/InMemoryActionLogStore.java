@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.spi.ActionLogStore;
+
+/**
+ * 无锁内存日志存储, 每个实例一个只追加队列.
+ *
+ * @author q-wang
+ */
+public class InMemoryActionLogStore implements ActionLogStore {
+
+	private final ConcurrentMap<Long, Queue<ActionLog>> logs = new ConcurrentHashMap<>();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	@Override
+	public void append(ActionLog log) {
+		log.setId(sequence.incrementAndGet());
+		Queue<ActionLog> queue = logs.get(log.getInstance());
+		if (queue == null) {
+			Queue<ActionLog> created = new ConcurrentLinkedQueue<>();
+			queue = logs.putIfAbsent(log.getInstance(), created);
+			if (queue == null) {
+				queue = created;
+			}
+		}
+		queue.add(log);
+	}
+
+	@Override
+	public List<ActionLog> logs(Long instanceId) {
+		Queue<ActionLog> queue = logs.get(instanceId);
+		return queue == null ? Collections.<ActionLog>emptyList() : new ArrayList<>(queue);
+	}
+
+	/**
+	 * @return 已追加的日志总数
+	 */
+	public long count() {
+		return sequence.get();
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+import net.lc4ever.framework.state.spi.DefinitionSource;
+
+/**
+ * 内存定义来源, 模板及其角色映射通过 {@link #register(StateMachineTemplate, List)} 注册, 定义对象无需持久化.
+ *
+ * @author q-wang
+ */
+public class InMemoryDefinitionSource implements DefinitionSource {
+
+	private final ConcurrentMap<String, StateMachineTemplate> templates = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, ActorRoleIndex> indexes = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Long, StateDefinition> states = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<Long, TransitionDefinition> transitions = new ConcurrentHashMap<>();
+
+	/**
+	 * 注册模板, 立即编译模板绑定的定义.
+	 *
+	 * @param roleActors 角色映射, 每行为 [角色, 参与者ID]
+	 */
+	public void register(StateMachineTemplate template, List<Object[]> roleActors) {
+		CompiledStateMachine graph = CompiledStateMachine.compile(template.getMachine());
+		for (StateDefinition state : template.getMachine().getStates()) {
+			states.put(state.getId(), state);
+			if (state.getTransitions() != null) {
+				for (TransitionDefinition transition : state.getTransitions()) {
+					transitions.put(transition.getId(), transition);
+				}
+			}
+		}
+		indexes.put(template.getId(), new ActorRoleIndex(template.getId(), graph, roleActors));
+		templates.put(template.getId(), template);
+	}
+
+	@Override
+	public StateMachineTemplate template(String templateId) {
+		return templates.get(templateId);
+	}
+
+	@Override
+	public CompiledStateMachine graph(StateMachineTemplate template) {
+		return indexes.get(template.getId()).getGraph();
+	}
+
+	@Override
+	public StateDefinition state(Long stateId) {
+		return states.get(stateId);
+	}
+
+	@Override
+	public TransitionDefinition transition(Long transitionId) {
+		return transitions.get(transitionId);
+	}
+
+	@Override
+	public BitSet actors(String templateId, CompiledStateMachine graph, Collection<String> roles) {
+		return indexes.get(templateId).actors(roles);
+	}
+}
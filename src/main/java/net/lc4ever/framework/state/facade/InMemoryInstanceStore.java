@@ -0,0 +1,122 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.lc4ever.framework.cglib.beans.BeanCopier;
+import net.lc4ever.framework.cglib.beans.BeanCopierFactory;
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.spi.InstanceStore;
+
+/**
+ * 无锁内存实例存储: 保存不可变快照, 读取返回副本, 修改按版本号比较并交换快照.
+ * <p>
+ * 用于仿真, 压测及无需持久化的短流程.
+ *
+ * @author q-wang
+ */
+public class InMemoryInstanceStore implements InstanceStore {
+
+	private static final BeanCopier<StateMachineInstance, StateMachineInstance> COPIER = BeanCopierFactory.create(StateMachineInstance.class);
+
+	private final ConcurrentMap<Long, StateMachineInstance> snapshots = new ConcurrentHashMap<>();
+
+	/** 模板ID + 业务主键 -> 实例ID */
+	private final ConcurrentMap<String, Long> keys = new ConcurrentHashMap<>();
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	@Override
+	public StateMachineInstance get(Long id) {
+		StateMachineInstance snapshot = snapshots.get(id);
+		return snapshot == null ? null : copy(snapshot);
+	}
+
+	@Override
+	public StateMachineInstance find(String templateId, String businessId) {
+		Long id = keys.get(key(templateId, businessId));
+		return id == null ? null : get(id);
+	}
+
+	@Override
+	public void insert(StateMachineInstance instance) {
+		Long id = sequence.incrementAndGet();
+		if (keys.putIfAbsent(key(instance.getTemplate().getId(), instance.getBusinessId()), id) != null) {
+			throw new IllegalStateException("流程实例已存在: " + instance.getBusinessId());
+		}
+		instance.setId(id);
+		instance.setVersion(0L);
+		snapshots.put(id, copy(instance));
+	}
+
+	@Override
+	public boolean update(StateMachineInstance instance, ActionLog event) {
+		StateMachineInstance current = snapshots.get(instance.getId());
+		if (current == null || !current.getVersion().equals(instance.getVersion())) {
+			return false;
+		}
+		StateMachineInstance next = copy(instance);
+		next.setVersion(instance.getVersion() + 1);
+		if (!snapshots.replace(instance.getId(), current, next)) {
+			return false;
+		}
+		instance.setVersion(next.getVersion());
+		return true;
+	}
+
+	@Override
+	public boolean recordsEvents() {
+		return false;
+	}
+
+	@Override
+	public void remove(Long id) {
+		StateMachineInstance snapshot = snapshots.remove(id);
+		if (snapshot != null) {
+			keys.remove(key(snapshot.getTemplate().getId(), snapshot.getBusinessId()));
+		}
+	}
+
+	public int size() {
+		return snapshots.size();
+	}
+
+	private static String key(String templateId, String businessId) {
+		return templateId + '\u0000' + businessId;
+	}
+
+	static StateMachineInstance copy(StateMachineInstance source) {
+		StateMachineInstance target = new StateMachineInstance();
+		COPIER.copy(source, target);
+		target.setParticipants(source.getParticipants() == null ? null : new HashSet<>(source.getParticipants()));
+		target.setActionLogs(null);
+		target.setHistories(null);
+		return target;
+	}
+}
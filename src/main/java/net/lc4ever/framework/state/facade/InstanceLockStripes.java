@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 按实例ID分段的JVM内锁, 同一节点上同一实例的越迁排队执行, 不同实例互不阻塞.
+ * <p>
+ * 锁持有至当前事务结束, 保证后到者读取到已提交的状态, 因此只能在事务中加锁; 跨节点的并发仍由实例的乐观锁版本检测.
+ *
+ * @author q-wang
+ */
+public class InstanceLockStripes {
+
+	private ReentrantLock[] stripes;
+
+	public InstanceLockStripes() {
+		this(64);
+	}
+
+	public InstanceLockStripes(int size) {
+		setSize(size);
+	}
+
+	/**
+	 * 分段数, 向上取整为2的幂.
+	 */
+	public void setSize(int size) {
+		int n = Integer.highestOneBit(Math.max(1, size - 1) << 1);
+		ReentrantLock[] stripes = new ReentrantLock[n];
+		for (int i = 0; i < n; i++) {
+			stripes[i] = new ReentrantLock();
+		}
+		this.stripes = stripes;
+	}
+
+	protected ReentrantLock stripe(Long id) {
+		return stripes[index(id)];
+	}
+
+	private int index(Long id) {
+		int h = id.hashCode();
+		h ^= (h >>> 16);
+		return h & (stripes.length - 1);
+	}
+
+	/**
+	 * 获取实例锁, 在当前事务结束后释放.
+	 *
+	 * @return 是否经过等待, 等待过则实例状态可能已被其它线程修改
+	 * @throws IllegalStateException 当前线程没有活动的事务同步
+	 */
+	public boolean lock(Long id) {
+		checkTransaction();
+		return lock(stripe(id));
+	}
+
+	/**
+	 * 获取多个实例的锁, 按分段顺序加锁以避免批量操作之间互相死锁, 在当前事务结束后释放.
+	 *
+	 * @return 是否经过等待, 等待过则实例状态可能已被其它线程修改
+	 * @throws IllegalStateException 当前线程没有活动的事务同步
+	 */
+	public boolean lockAll(Collection<Long> ids) {
+		checkTransaction();
+		BitSet indexes = new BitSet(stripes.length);
+		for (Long id : ids) {
+			indexes.set(index(id));
+		}
+		boolean waited = false;
+		for (int i = indexes.nextSetBit(0); i >= 0; i = indexes.nextSetBit(i + 1)) {
+			waited |= lock(stripes[i]);
+		}
+		return waited;
+	}
+
+	private static void checkTransaction() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			throw new IllegalStateException("实例锁须在事务中获取");
+		}
+	}
+
+	private static boolean lock(final ReentrantLock lock) {
+		boolean waited = false;
+		if (!lock.tryLock()) {
+			lock.lock();
+			waited = true;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				lock.unlock();
+			}
+		});
+		return waited;
+	}
+
+}
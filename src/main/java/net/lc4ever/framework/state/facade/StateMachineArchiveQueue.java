@@ -0,0 +1,190 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 异步归档队列: 流程结束时仅标记实例结束并登记ID, 由后台线程批量调用 {@link StateMachineArchiver} 归档.
+ * <p>
+ * 队列有界, 队列已满或进程重启遗留的已结束实例, 由后台线程按 {@link #setSweepMillis(long) 固定间隔} 通过
+ * {@link StateMachineArchiver#archiveEnded(int)} 补偿归档, 持续负载下也不会被推迟.
+ * 归档失败的批次按 {@link #setMaxAttempts(int) 最大尝试次数} 重试, 超过后留待补偿归档.
+ *
+ * @author q-wang
+ */
+public class StateMachineArchiveQueue implements InitializingBean, DisposableBean {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	protected StateMachineArchiver archiver;
+
+	private int capacity = 10000;
+
+	private int batchSize = 200;
+
+	private int maxAttempts = 3;
+
+	private long sweepMillis = 60000;
+
+	private BlockingQueue<Long> queue;
+
+	private Thread worker;
+
+	private volatile boolean running;
+
+	@Required
+	public void setArchiver(StateMachineArchiver archiver) {
+		this.archiver = archiver;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * @param sweepMillis 补偿归档的执行间隔
+	 */
+	public void setSweepMillis(long sweepMillis) {
+		this.sweepMillis = sweepMillis;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		queue = new LinkedBlockingQueue<>(capacity);
+		running = true;
+		worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, "state-machine-archiver");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		running = false;
+		worker.interrupt();
+		worker.join(sweepMillis);
+	}
+
+	/**
+	 * 登记待归档实例, 处于事务中时在事务提交后登记.
+	 */
+	public void enqueue(final Long instanceId) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					offer(instanceId);
+				}
+			});
+		} else {
+			offer(instanceId);
+		}
+	}
+
+	private void offer(Long instanceId) {
+		if (!queue.offer(instanceId)) {
+			logger.warn("Archive queue is full, instance: {} will be archived by the sweep.", instanceId);
+		}
+	}
+
+	/**
+	 * @return 队列中待归档的实例数
+	 */
+	public int pending() {
+		return queue.size();
+	}
+
+	protected void work() {
+		long nextSweep = System.currentTimeMillis() + sweepMillis;
+		while (running) {
+			try {
+				long now = System.currentTimeMillis();
+				if (now >= nextSweep) {
+					sweep();
+					nextSweep = System.currentTimeMillis() + sweepMillis;
+					continue;
+				}
+				Long first = queue.poll(nextSweep - now, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				List<Long> batch = new ArrayList<>(batchSize);
+				batch.add(first);
+				queue.drainTo(batch, batchSize - 1);
+				archive(batch);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	protected void archive(List<Long> batch) throws InterruptedException {
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+			try {
+				archiver.archive(batch);
+				return;
+			} catch (RuntimeException e) {
+				logger.warn("Archive attempt {} failed for instances: {}", attempt, batch, e);
+				Thread.sleep(1000L * attempt);
+			}
+		}
+		logger.error("Giving up archiving instances: {}, left for the sweep.", batch);
+	}
+
+	protected void sweep() {
+		try {
+			while (running && archiver.archiveEnded(batchSize) == batchSize) {
+				logger.debug("Swept a batch of ended instances.");
+			}
+		} catch (RuntimeException e) {
+			logger.warn("Sweep of ended instances failed.", e);
+		}
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRED;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+
+/**
+ * 基于集合操作的流程实例归档: INSERT ... SELECT 关联定义表写入历史表, 再批量DELETE, 语句数与日志行数无关.
+ * <p>
+ * 批量语句绕过Session, 调用方需先flush, 归档后不应再使用Session中的实例及日志对象.
+ *
+ * @author q-wang
+ */
+public class StateMachineArchiver {
+
+	private static final String ARCHIVE_INSTANCE = "insert into StateMachineInstanceHistory (id, businessId, stateCode, initial, ended, creator, previousActor, actorHistory, stateHistory, creatorsId, createTimestamp, modifyTimestamp, action, dataType, endedTimestamp, endedState, machine, machineCode, template, context) "
+			+ "select i.id, i.businessId, i.stateCode, i.initial, i.ended, i.creator, i.previousActor, i.actorHistory, i.stateHistory, i.creatorsId, current_timestamp(), current_timestamp(), t.action, t.dataType, current_timestamp(), i.stateCode, t.id, t.id, t.id, i.context "
+			+ "from StateMachineInstance i, StateMachineTemplate t where t = i.template and i.id in (:ids)";
+
+	private static final String ARCHIVE_LOG = "insert into ActionLogHistory (id, instance, actor, transition, fromState, toState, actionTimestamp, addition, machine, version, dataType, action, businessId, transitionCode, transitionName, fromStateCode, fromStateName, toStateCode, toStateName) "
+			+ "select l.id, l.instance, l.actor, l.transition, l.fromState, l.toState, l.actionTimestamp, l.addition, m.id, m.version, t.dataType, t.action, i.businessId, tr.code, tr.name, fs.code, fs.name, ts.code, ts.name "
+			+ "from ActionLog l, StateMachineInstance i, StateMachineTemplate t, StateMachineDefinition m, TransitionDefinition tr, StateDefinition fs, StateDefinition ts "
+			+ "where i.id = l.instance and t = i.template and m = t.machine and tr.id = l.transition and fs = tr.fromState and ts = tr.toState and l.instance in (:ids)";
+
+	private static final String DELETE_LOG = "delete ActionLog where instance in (:ids)";
+
+	private static final String DELETE_WORK_ITEM = "delete WorkItem where id.instance in (:ids)";
+
+	private static final String DELETE_PARTICIPATION = "delete Participation where id.instance in (:ids)";
+
+	private static final String DELETE_TIMER = "delete StateTimer where instance in (:ids)";
+
+	private static final String DELETE_INSTANCE = "delete StateMachineInstance where id in (:ids)";
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	protected GenericCrudService crudService;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	/**
+	 * 归档单个实例, 归档前flush当前Session并在归档后将实例移出Session.
+	 */
+	@Transactional(propagation = REQUIRED)
+	public void archive(StateMachineInstance instance) {
+		crudService.flush();
+		archive(Arrays.asList(instance.getId()));
+		crudService.evict(instance);
+	}
+
+	/**
+	 * 归档指定实例(无论是否已结束).
+	 *
+	 * @param instanceIds 实例ID
+	 * @return 归档的实例数
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int archive(final Collection<Long> instanceIds) {
+		if (instanceIds.isEmpty()) {
+			return 0;
+		}
+		return crudService.callback(new HibernateCallback<Integer>() {
+			@Override
+			public Integer doInHibernate(Session session) throws HibernateException {
+				int instances = session.createQuery(ARCHIVE_INSTANCE).setParameterList("ids", instanceIds).executeUpdate();
+				int logs = session.createQuery(ARCHIVE_LOG).setParameterList("ids", instanceIds).executeUpdate();
+				int deletedLogs = session.createQuery(DELETE_LOG).setParameterList("ids", instanceIds).executeUpdate();
+				if (logs != deletedLogs) {
+					throw new IllegalStateException("日志归档数量不一致, 归档: " + logs + ", 删除: " + deletedLogs);
+				}
+				session.createQuery(DELETE_WORK_ITEM).setParameterList("ids", instanceIds).executeUpdate();
+				session.createQuery(DELETE_PARTICIPATION).setParameterList("ids", instanceIds).executeUpdate();
+				session.createQuery(DELETE_TIMER).setParameterList("ids", instanceIds).executeUpdate();
+				session.createQuery(DELETE_INSTANCE).setParameterList("ids", instanceIds).executeUpdate();
+				logger.debug("Archived {} instances, {} action logs.", instances, logs);
+				return instances;
+			}
+		});
+	}
+
+	/**
+	 * 批量归档已结束的实例, 供定时任务调用.
+	 *
+	 * @param batchSize 单批最大实例数
+	 * @return 本批归档的实例数, 0表示已无待归档实例
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int archiveEnded(int batchSize) {
+		List<Long> ids = crudService.hql(Long.class, 0, batchSize, "select id from StateMachineInstance where ended = ? order by id", true);
+		return archive(ids);
+	}
+}
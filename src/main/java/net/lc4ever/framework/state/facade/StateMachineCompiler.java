@@ -0,0 +1,66 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
+
+/**
+ * 状态机定义编译缓存, 按定义ID缓存 {@link CompiledStateMachine}, 定义版本变化时重新编译.
+ *
+ * @author q-wang
+ */
+public class StateMachineCompiler {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentMap<String, CompiledStateMachine> compiled = new ConcurrentHashMap<>();
+
+	/**
+	 * 获取编译后的状态机定义, 首次使用或版本变化时编译(需在Session内调用).
+	 */
+	public CompiledStateMachine compile(StateMachineDefinition definition) {
+		CompiledStateMachine graph = compiled.get(definition.getId());
+		if (graph == null || graph.getVersion() != definition.getVersion()) {
+			logger.debug("Compiling state machine definition: {}, version: {}", definition.getId(), definition.getVersion());
+			graph = CompiledStateMachine.compile(definition);
+			compiled.put(definition.getId(), graph);
+		}
+		return graph;
+	}
+
+	public void evict(String definitionId) {
+		compiled.remove(definitionId);
+	}
+
+	public void evict() {
+		compiled.clear();
+	}
+}
@@ -0,0 +1,206 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Required;
+
+import net.lc4ever.framework.format.DateFormatter;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+import net.lc4ever.framework.state.spi.ActionLogStore;
+import net.lc4ever.framework.state.spi.DefinitionSource;
+import net.lc4ever.framework.state.spi.InstanceStore;
+
+/**
+ * 状态机仿真器: 在内存中执行越迁, 仅用于容量评估, 压力测试及流程定义的演练, 不是 {@link StateMachineFactory} 的替代实现, 持久化的流程须使用后者.
+ * <p>
+ * 越迁权限复用 {@link StateMachineFactory} 的规则; 退回起始状态时与其一致, 移除原实例并以操作人为创建人新建实例,
+ * 但不执行其中按状态代码自动提交的特殊处理. 不维护参与表, 待办, 定时及归档, 也不调用监听器.
+ * <p>
+ * 仅适用于 {@link InMemoryInstanceStore}, {@link InMemoryActionLogStore} 及 {@link EventSourcedInstanceStore},
+ * 定义可来自 {@link InMemoryDefinitionSource} 或只读的 {@link HibernateDefinitionSource}.
+ * 并发越迁同一实例时, 版本冲突的一方重新读取并校验后重试.
+ *
+ * @author q-wang
+ */
+public class StateMachineEngine {
+
+	protected InstanceStore instances;
+
+	protected ActionLogStore logs;
+
+	protected DefinitionSource definitions;
+
+	@Required
+	public void setInstances(InstanceStore instances) {
+		this.instances = instances;
+	}
+
+	@Required
+	public void setLogs(ActionLogStore logs) {
+		this.logs = logs;
+	}
+
+	@Required
+	public void setDefinitions(DefinitionSource definitions) {
+		this.definitions = definitions;
+	}
+
+	public StateMachineInstance create(String templateId, String businessId, String user) {
+		StateMachineTemplate template = definitions.template(templateId);
+		if (template == null) {
+			throw new IllegalArgumentException("流程模板不存在: " + templateId);
+		}
+		StateMachineInstance instance = new StateMachineInstance();
+		instance.setTemplate(template);
+		instance.setBusinessId(businessId);
+		instance.setCreator(user);
+		instance.setPreviousActor(user);
+		instance.setEnded(false);
+		instance.setInitial(true);
+		instance.setState(definitions.state(template.getMachine().getStartState().getId()));
+		instance.setStateCode(instance.getState().getCode());
+		instance.setActorHistory(user);
+		instance.setStateHistory(instance.getStateCode());
+		Set<String> participants = new HashSet<>();
+		participants.add(user);
+		instance.setParticipants(participants);
+		instance.setCreateTimestamp(DateFormatter.now());
+		instances.insert(instance);
+		return instance;
+	}
+
+	/**
+	 * 执行越迁.
+	 *
+	 * @return 越迁后的实例, 退回起始状态时为新建的实例
+	 * @throws UnsupportedOperationException 实例不存在, 已结束, 当前状态无此越迁或无权限
+	 */
+	public StateMachineInstance next(String templateId, String businessId, String transitionCode, String user, Collection<String> roles, String addition) {
+		while (true) {
+			StateMachineInstance instance = instances.find(templateId, businessId);
+			if (instance == null) {
+				throw new UnsupportedOperationException("流程实例不存在: " + businessId);
+			}
+			if (instance.isEnded()) {
+				throw new UnsupportedOperationException("流程已结束: " + businessId);
+			}
+			CompiledStateMachine graph = definitions.graph(instance.getTemplate());
+			CompiledStateMachine.Transition transition = graph.transition(instance.getState().getId(), transitionCode);
+			if (transition == null) {
+				throw new UnsupportedOperationException("当前状态[" + instance.getStateCode() + "]不支持越迁: " + transitionCode);
+			}
+			String denial = deny(instance, graph, transition, user, roles);
+			if (denial != null) {
+				throw new UnsupportedOperationException(denial);
+			}
+			apply(instance, definitions.state(transition.getToState().getId()), user);
+			ActionLog log = new ActionLog();
+			log.setActionTimestamp(DateFormatter.now());
+			log.setActor(user);
+			log.setInstance(instance.getId());
+			log.setFromState(transition.getFromState().getId());
+			log.setToState(transition.getToState().getId());
+			log.setTransition(transition.getId());
+			log.setAddition(addition);
+			if (instances.update(instance, log)) {
+				if (!instances.recordsEvents()) {
+					logs.append(log);
+				}
+				if (transition.getToState().isStarter()) {
+					instances.remove(instance.getId());
+					return create(templateId, businessId, user);
+				}
+				return instance;
+			}
+		}
+	}
+
+	/**
+	 * 用户在实例当前状态下可执行的越迁.
+	 */
+	public List<TransitionDefinition> transitions(StateMachineInstance instance, String user, Collection<String> roles) {
+		CompiledStateMachine graph = definitions.graph(instance.getTemplate());
+		List<TransitionDefinition> results = new ArrayList<>();
+		if (instance.isEnded()) {
+			return results;
+		}
+		for (CompiledStateMachine.Transition transition : graph.outgoing(instance.getState().getId())) {
+			if (deny(instance, graph, transition, user, roles) == null) {
+				results.add(definitions.transition(transition.getId()));
+			}
+		}
+		return results;
+	}
+
+	public List<ActionLog> logs(StateMachineInstance instance) {
+		return logs.logs(instance.getId());
+	}
+
+	/**
+	 * @return 不允许时的原因, 允许时返回null
+	 * @see StateMachineFactory#deny(CompiledStateMachine, CompiledStateMachine.Transition, String, String, Set, BitSet)
+	 */
+	protected String deny(StateMachineInstance instance, CompiledStateMachine graph, CompiledStateMachine.Transition transition, String user, Collection<String> roles) {
+		BitSet mask = definitions.actors(instance.getTemplate().getId(), graph, roles);
+		return StateMachineFactory.deny(graph, transition, user, instance.getCreator(), participants(instance), mask);
+	}
+
+	/**
+	 * 将实例移至目标状态, 越迁与事件回放共用.
+	 */
+	static void apply(StateMachineInstance instance, StateDefinition toState, String actor) {
+		if (!toState.isStarter()) {
+			instance.setInitial(false);
+		}
+		instance.setState(toState);
+		instance.setStateCode(toState.getCode());
+		instance.setPreviousActor(actor);
+		if (participants(instance).add(actor)) {
+			instance.setActorHistory(StateMachineInstance.appendHistory(instance.getActorHistory(), actor));
+		}
+		instance.setStateHistory(StateMachineInstance.appendHistory(instance.getStateHistory(), instance.getStateCode()));
+		if (toState.isFinalizer() || toState.isTerminator()) {
+			instance.setEnded(true);
+		}
+	}
+
+	private static Set<String> participants(StateMachineInstance instance) {
+		if (instance.getParticipants() == null) { // 参与人摘要会截断, 不能代替完整的参与人集合
+			throw new IllegalStateException("实例存储未保存参与人: " + instance.getId());
+		}
+		return instance.getParticipants();
+	}
+}
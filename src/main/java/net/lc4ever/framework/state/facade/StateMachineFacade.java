@@ -23,16 +23,10 @@
  */
 package net.lc4ever.framework.state.facade;
 
-import java.io.InputStreamReader;
-import java.lang.reflect.Type;
-import java.sql.SQLException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
 import net.lc4ever.framework.state.StateMachine;
@@ -85,8 +79,7 @@ public class StateMachineFacade implements StateMachine {
 	 */
 	@Override
 	public List<StateDefinition> states() {
-//		return Collections.emptyList();
-		throw new UnsupportedOperationException("Not Implement Yet.");
+		return factory.states(instance);
 	}
 
 	
@@ -97,6 +90,14 @@ public class StateMachineFacade implements StateMachine {
 	public List<ActionLogHistory> actionLogHistories() {
 		return factory.allLogs(instance);
 	}
+
+	/**
+	 * @see net.lc4ever.framework.state.StateMachine#actionLogHistories(int, int)
+	 */
+	@Override
+	public List<ActionLogHistory> actionLogHistories(int firstResult, int maxResults) {
+		return factory.allLogs(instance, firstResult, maxResults);
+	}
 	
 	/**
 	 * @see net.lc4ever.framework.state.StateMachine#currentLogs()
@@ -111,7 +112,7 @@ public class StateMachineFacade implements StateMachine {
 	 */
 	@Override
 	public List<StateMachineInstanceHistory> histories() {
-		return instance.getHistories();
+		return factory.histories(instance);
 	}
 
 	/**
@@ -135,8 +136,7 @@ public class StateMachineFacade implements StateMachine {
 	 */
 	@Override
 	public StateMachine next(String transitionCode, String addition) {
-		List<TransitionDefinition> supportedTransitions = transitions();
-		for (TransitionDefinition transition : supportedTransitions) {
+		for (TransitionDefinition transition : transitions()) {
 			if (transition.getCode().equals(transitionCode)) {
 				factory.next(instance, transition, addition);
 				return this;
@@ -174,31 +174,11 @@ public class StateMachineFacade implements StateMachine {
 	
 	@Override
 	public <T> T getContext(Class<T> clazz) {
-		return fromJson(clazz);
+		return instance.getContext(clazz);
 	}
 	
 	@Override
 	public <T> T getContext(TypeToken<T> typeAddapter) {
-		if (instance.getContext()==null) {
-			return null;
-		}
-		return fromJson(typeAddapter.getType());
-	}
-	
-	private <T> T fromJson(Type type) {
-		if (instance.getContext()==null) {
-			return null;
-		}
-		Gson gson = new Gson();
-		try {
-			return gson.fromJson(new InputStreamReader(instance.getContext().getBinaryStream()), type);
-		} catch (JsonSyntaxException e) {
-			e.printStackTrace();
-		} catch (JsonIOException e) {
-			e.printStackTrace();
-		} catch (SQLException e) {
-			e.printStackTrace();
-		}
-		throw new IllegalStateException(); // TODO 友好提示?
+		return instance.getContext(typeAddapter);
 	}
 }
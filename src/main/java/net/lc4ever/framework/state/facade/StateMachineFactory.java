@@ -28,31 +28,46 @@ import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
 
 import java.sql.Blob;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
 
 import net.lc4ever.framework.cglib.beans.BeanCopier;
 import net.lc4ever.framework.cglib.beans.BeanCopierFactory;
-import net.lc4ever.framework.context.ContextHolder;
 import net.lc4ever.framework.domain.BaseEntity;
 import net.lc4ever.framework.format.DateFormatter;
 import net.lc4ever.framework.service.GenericCrudService;
 import net.lc4ever.framework.state.StateMachine;
-import net.lc4ever.framework.state.definition.ActorDefinition;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
 import net.lc4ever.framework.state.definition.TransitionDefinition;
 import net.lc4ever.framework.state.instance.ActionLog;
 import net.lc4ever.framework.state.instance.ActionLogHistory;
+import net.lc4ever.framework.state.instance.Participation;
 import net.lc4ever.framework.state.instance.StateMachineInstance;
 import net.lc4ever.framework.state.instance.StateMachineInstanceHistory;
+import net.lc4ever.framework.state.instance.StateTimer;
+import net.lc4ever.framework.state.interceptor.AsyncListenerDispatcher;
+import net.lc4ever.framework.state.interceptor.AsyncStateMachineListener;
+import net.lc4ever.framework.state.interceptor.BatchStateMachineListener;
 import net.lc4ever.framework.state.interceptor.StateMachineListener;
+import net.lc4ever.framework.state.interceptor.SynchronousListener;
 import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+import net.lc4ever.framework.state.spi.ContextCodec;
+import net.lc4ever.framework.state.spi.ContextCodecs;
 import net.lc4ever.framework.state.spi.CurrentUserProvider;
 
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Hibernate;
 import org.hibernate.HibernateException;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
@@ -62,8 +77,6 @@ import org.springframework.beans.factory.annotation.Required;
 import org.springframework.orm.hibernate5.HibernateCallback;
 import org.springframework.transaction.annotation.Transactional;
 
-import com.google.gson.Gson;
-
 /**
  * Stateless Bean
  * @author q-wang
@@ -77,6 +90,18 @@ public class StateMachineFactory {
 	public static final BeanCopier<StateMachineInstance, StateMachineInstanceHistory> COPIER_INSTANCE = BeanCopierFactory
 			.create(StateMachineInstance.class, StateMachineInstanceHistory.class);
 
+	private static final String HQL_ARCHIVED_LOGS = "from ActionLogHistory where dataType = ? and businessId = ? order by id desc";
+
+	private static final String HQL_HISTORIES = "from StateMachineInstanceHistory where template = ? and businessId = ? order by id desc";
+
+	private static final String HQL_HISTORIES_SINCE = "from StateMachineInstanceHistory where template = ? and businessId = ? and endedTimestamp >= ? order by id desc";
+
+	private static final String HQL_LIVE_LOGS = "select l.id, l.addition, l.actor, l.instance, l.fromState, l.toState, l.transition, l.actionTimestamp, "
+			+ "t.action, t.dataType, i.businessId, m.id, m.version, tr.code, tr.name, fs.code, fs.name, ts.code, ts.name "
+			+ "from ActionLog l, StateMachineInstance i, StateMachineTemplate t, StateMachineDefinition m, TransitionDefinition tr, StateDefinition fs, StateDefinition ts "
+			+ "where l.instance = ? and i.id = l.instance and t = i.template and m = t.machine and tr.id = l.transition and fs = tr.fromState and ts = tr.toState "
+			+ "order by l.id desc";
+
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
 	protected GenericCrudService crudService;
@@ -87,6 +112,30 @@ public class StateMachineFactory {
 
 	protected CurrentUserProvider currentUserProvider;
 
+	protected StateMachineCompiler compiler = new StateMachineCompiler();
+
+	protected ActorRoleCache actorRoleCache;
+
+	protected StateMachineArchiver archiver;
+
+	protected StateMachineArchiveQueue archiveQueue;
+
+	protected TemplateDescriptorCache descriptorCache;
+
+	protected InstanceLockStripes instanceLocks;
+
+	protected AsyncListenerDispatcher listenerDispatcher;
+
+	protected Worklist worklist;
+
+	protected TimerIndex timerIndex;
+
+	protected StateMachineMetrics metrics;
+
+	protected HistoryRetention historyRetention;
+
+	protected StateMachineFactory self = this;
+
 	@Required
 	public void setCrudService(GenericCrudService crudService) {
 		this.crudService = crudService;
@@ -107,8 +156,93 @@ public class StateMachineFactory {
 		this.currentUserProvider = currentUserProvider;
 	}
 
+	public void setCompiler(StateMachineCompiler compiler) {
+		this.compiler = compiler;
+	}
+
+	@Required
+	public void setActorRoleCache(ActorRoleCache actorRoleCache) {
+		this.actorRoleCache = actorRoleCache;
+	}
+
+	@Required
+	public void setArchiver(StateMachineArchiver archiver) {
+		this.archiver = archiver;
+	}
+
+	/**
+	 * 替换全局上下文编解码, 默认 {@link net.lc4ever.framework.state.spi.GsonContextCodec}.
+	 */
+	public void setContextCodec(ContextCodec contextCodec) {
+		ContextCodecs.setCodec(contextCodec);
+	}
+
+	@Required
+	public void setDescriptorCache(TemplateDescriptorCache descriptorCache) {
+		this.descriptorCache = descriptorCache;
+	}
+
+	/**
+	 * 配置后流程结束时仅标记实例结束, 由队列异步归档.
+	 */
+	public void setArchiveQueue(StateMachineArchiveQueue archiveQueue) {
+		this.archiveQueue = archiveQueue;
+	}
+
+	/**
+	 * 配置后同一节点上同一实例的越迁在内存中排队, 不配置时仅依赖实例版本号检测并发修改.
+	 */
+	public void setInstanceLocks(InstanceLockStripes instanceLocks) {
+		this.instanceLocks = instanceLocks;
+	}
+
+	/**
+	 * 配置后监听器的后置回调在事务提交后异步执行, 实现 {@link SynchronousListener} 的监听器除外.
+	 */
+	public void setListenerDispatcher(AsyncListenerDispatcher listenerDispatcher) {
+		this.listenerDispatcher = listenerDispatcher;
+	}
+
+	/**
+	 * 配置后每次越迁维护待办索引, 可通过 {@link #pending(int, int)} 查询当前用户的待办.
+	 */
+	public void setWorklist(Worklist worklist) {
+		this.worklist = worklist;
+	}
+
+	/**
+	 * 配置后实例进入状态时登记超时越迁, 由 {@link TimerScheduler} 到期执行.
+	 */
+	public void setTimerIndex(TimerIndex timerIndex) {
+		this.timerIndex = timerIndex;
+	}
+
+	/**
+	 * 配置后按(模板, 状态)统计停留时长及越迁次数.
+	 */
+	public void setMetrics(StateMachineMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * 配置后历史查询限定在保留期内的分区.
+	 */
+	public void setHistoryRetention(HistoryRetention historyRetention) {
+		this.historyRetention = historyRetention;
+	}
+
+	/**
+	 * 事务代理后的自身引用, 门面经由代理调用 {@link #next(StateMachineInstance, TransitionDefinition, String)} 使事务生效.
+	 */
+	public void setSelf(StateMachineFactory self) {
+		this.self = self;
+	}
+
 	public void evictCache() {
 		sessionFactory.getCache().evictAllRegions();
+		compiler.evict();
+		actorRoleCache.evict();
+		descriptorCache.evict();
 	}
 
 	public void evictCache(Class<? extends BaseEntity<?>> clazz) {
@@ -128,7 +262,7 @@ public class StateMachineFactory {
 		StateMachineInstance instance = crudService.uniqueResultHql(StateMachineInstance.class,
 				"from StateMachineInstance where template.id = ? and businessId = ?", templateId, businessId);
 		if (instance == null) return null;
-		return new StateMachineFacade(this, instance);
+		return new StateMachineFacade(self, instance);
 	}
 
 	public StateMachine retrieve(String machine, String dataType, String action, String businessId) {
@@ -137,9 +271,7 @@ public class StateMachineFactory {
 
 	@Transactional
 	public String template(String machineCode, String dataType, String action) {
-		return crudService.uniqueResultHql(String.class,
-				"select id from StateMachineTemplate where machine.code = ? and dataType = ? and action = ?",
-				machineCode, dataType, action);
+		return descriptorCache.templateId(machineCode, dataType, action);
 	}
 
 	/**
@@ -158,84 +290,409 @@ public class StateMachineFactory {
 	public StateMachine create(String templateId, String businessId, Object context) {
 		StateMachineTemplate template = crudService.get(StateMachineTemplate.class, templateId);
 		StateMachineInstance instance = newInstance(template, businessId, currentUserProvider.userId(), context);
-		return new StateMachineFacade(this, instance);
+		return new StateMachineFacade(self, instance);
 	}
 
 	protected StateMachineListener getListener(StateMachineTemplate template) {
-		if (template.getListener() == null) {
-			return defaultListener;
-		} else {
-			return ContextHolder.getBean(template.getListener(), StateMachineListener.class);
+		StateMachineListener listener = descriptorCache.descriptor(template.getId()).getListener();
+		if (listener == null) {
+			listener = defaultListener;
 		}
+		if (listenerDispatcher != null && !(listener instanceof SynchronousListener)) {
+			return new AsyncStateMachineListener(listener, listenerDispatcher);
+		}
+		return listener;
 	}
 
 	@Transactional(propagation = REQUIRED)
-	protected void next(StateMachineInstance instance, TransitionDefinition transition, String addition) {
-		if (transition.getFromState().isStarter() || transition.getToState().isStarter()) {
-			if (!currentUserProvider.userId().equals(instance.getCreator())) {
-				throw new UnsupportedOperationException("仅允许流程创建人操作此步骤");
-			}
-		} else {
-			String[] users = instance.getActorHistory().split(",");
-			if (ArrayUtils.contains(users, currentUserProvider.userId())) {
-				throw new UnsupportedOperationException("不允许同一人在审批中参与二次操作");
-			}
+	public void next(StateMachineInstance instance, TransitionDefinition transition, String addition) {
+		if (instanceLocks != null && instanceLocks.lock(instance.getId())) {
+			// 等待期间其它线程可能已提交越迁, 重新加载后再校验
+			crudService.refresh(instance);
+			instance.setParticipants(null);
+		}
+		CompiledStateMachine graph = graph(instance);
+		CompiledStateMachine.Transition compiled = graph.transition(transition.getId());
+		if (compiled == null || !compiled.getFromState().getId().equals(instance.getState().getId())) {
+			throw new UnsupportedOperationException("当前状态[" + instance.getStateCode() + "]不支持越迁: " + transition.getCode());
+		}
+		String user = currentUserProvider.userId();
+		BitSet mask = actorRoleCache.index(instance.getTemplate().getId(), graph).actors(currentUserProvider.roles());
+		String denial = deny(graph, compiled, user, instance.getCreator(), participants(instance), mask);
+		if (denial != null) {
+			throw new UnsupportedOperationException(denial);
+		}
+		transit(instance, transition, addition, user);
+	}
+
+	/**
+	 * 越迁权限规则, 由 {@link #transitions(StateMachineInstance)}, {@link #next(StateMachineInstance, TransitionDefinition, String)},
+	 * {@link #nextAll(String, Collection, String, String)} 及 {@link StateMachineEngine} 共用:
+	 * 起始状态相关越迁仅流程创建人可操作; 其它越迁要求未参与过该实例, 且用户角色对应的参与者与越迁的参与者有交集.
+	 *
+	 * @param participants 实例参与人
+	 * @param mask 用户角色对应的参与者下标
+	 * @return 不允许时的原因, 允许时返回null
+	 */
+	static String deny(CompiledStateMachine graph, CompiledStateMachine.Transition transition, String user, String creator, Set<String> participants,
+			BitSet mask) {
+		if (transition.isStarterRelated()) {
+			return user.equals(creator) ? null : "仅允许流程创建人操作此步骤";
+		}
+		if (user.equals(creator) || participants.contains(user)) {
+			return "不允许同一人在审批中参与二次操作";
 		}
-		// TODO verify roles?
+		if (!graph.permits(transition, mask)) {
+			return "无权限执行越迁: " + transition.getCode();
+		}
+		return null;
+	}
+
+	/**
+	 * 执行已校验的越迁: 前置监听, 应用及 {@link #complete(StateMachineListener, Map, String, boolean) 后置处理}.
+	 */
+	protected void transit(StateMachineInstance instance, TransitionDefinition transition, String addition, String actor) {
 		StateMachineListener listener = getListener(instance.getTemplate());
 
 		listener.beforeTransition(transition, instance);
+		apply(instance, transition, addition, actor);
+		complete(listener, Collections.singletonMap(transition, Collections.singletonList(instance)), actor, false);
+	}
+
+	/**
+	 * 越迁在内存中应用后的后置处理, 单个, 批量及超时越迁共用: 更新待办索引后一次flush, 执行后置监听,
+	 * 归档已结束的实例, 退回起始状态的实例归档后{@link #restart(StateMachineInstance, String) 重新创建}.
+	 *
+	 * @param groups 越迁 -> 已应用该越迁的同一模板下的实例
+	 * @param actor 操作人, 重新创建实例时作为创建人
+	 * @param batch 是否由批量越迁调用, 为true时按组回调 {@link BatchStateMachineListener}
+	 */
+	protected void complete(StateMachineListener listener, Map<TransitionDefinition, List<StateMachineInstance>> groups, String actor, boolean batch) {
+		List<StateMachineInstance> applied = new ArrayList<>();
+		for (List<StateMachineInstance> group : groups.values()) {
+			applied.addAll(group);
+		}
+		if (applied.isEmpty()) {
+			return;
+		}
+		if (worklist != null) {
+			worklist.update(applied, graph(applied.get(0)));
+		}
+		// 实例UPDATE与日志INSERT在同一次flush中批量提交, 不再逐条flush/refresh
+		crudService.flush();
+
+		List<StateMachineInstance> ended = new ArrayList<>();
+		List<StateMachineInstance> restarted = new ArrayList<>();
+		for (Entry<TransitionDefinition, List<StateMachineInstance>> entry : groups.entrySet()) {
+			TransitionDefinition transition = entry.getKey();
+			List<StateMachineInstance> group = entry.getValue();
+			if (group.isEmpty()) {
+				continue;
+			}
+			if (batch && listener instanceof BatchStateMachineListener) {
+				((BatchStateMachineListener) listener).afterTransitions(transition, group);
+			} else {
+				for (StateMachineInstance instance : group) {
+					listener.afterTransition(transition, instance);
+				}
+			}
+			for (StateMachineInstance instance : group) {
+				if (transition.getToState().isFinalizer()) {
+					listener.onFinal(transition, instance);
+					ended.add(instance);
+				} else if (transition.getToState().isTerminator()) {
+					listener.onTerminate(transition, instance);
+					ended.add(instance);
+				} else if (transition.getToState().isStarter()) {
+					instance.setInitial(true);
+					listener.onReset(transition, instance);
+					restarted.add(instance);
+				}
+			}
+		}
+		archive(ended);
+		for (StateMachineInstance instance : restarted) {
+			restart(instance, actor);
+		}
+	}
+
+	/**
+	 * 退回起始状态: 归档原实例, 以相同的业务主键及上下文新建实例.
+	 * <p>
+	 * 新实例在当前事务提交前对其它事务不可见, 其后续越迁直接在当前事务中执行, 不经由 {@link #next(StateMachineInstance, TransitionDefinition, String)} 获取实例锁:
+	 * 此时仍持有原实例的分段锁, 再获取新实例的分段锁与 {@link #nextAll(String, Collection, String, String)} 按分段顺序加锁相悖, 可能互相死锁.
+	 */
+	protected void restart(StateMachineInstance instance, String actor) {
+		Object context = instance.getContext(Object.class);
+		history(instance);
+		StateMachineTemplate template = crudService.get(StateMachineTemplate.class, instance.getTemplate().getId());
+		StateMachineInstance created = newInstance(template, instance.getBusinessId(), actor, context);
+		// 添加时，如果选择产品状态位为1:WAIT1:待审核，则执行工作流提交操作
+		if ("WAIT1".equals(instance.getStateCode())) {
+			CompiledStateMachine.Transition commit = graph(created).transition(created.getState().getId(), "COMMIT");
+			if (commit == null) {
+				throw new IllegalArgumentException("Instance: " + created.getId() + ", transitionCode: COMMIT, not available.");
+			}
+			transit(created, resolve(commit), "提交审核", actor);
+		}
+	}
+
+	/**
+	 * 在内存中应用越迁并登记实例UPDATE与日志INSERT, 由 {@link #complete(StateMachineListener, Map, String, boolean)} 统一flush并更新待办索引.
+	 */
+	protected void apply(StateMachineInstance instance, TransitionDefinition transition, String addition, String actor) {
 		if (!transition.getToState().isStarter()) {
 			instance.setInitial(false);
 		}
+		Date enteredAt = instance.getStateTimestamp();
+		Date now = DateFormatter.now();
+		instance.setStateTimestamp(now);
 		instance.setState(transition.getToState());
 		instance.setStateCode(transition.getToState().getCode());
-		instance.setPreviousActor(currentUserProvider.userId());
-		Set<String> actors = instance.actors();
-		actors.add(currentUserProvider.userId());
-		instance.setActorHistory(StringUtils.join(actors, ','));
-		instance.setStateHistory(instance.getStateHistory() + "," + instance.getStateCode());
-		addActionLog(instance, transition, addition);
-		crudService.update(instance);
-		crudService.flush();
-		crudService.refresh(instance);
-		listener.afterTransition(transition, instance);
-		if (transition.getToState().isFinalizer()) {
-			instance.setEnded(true);
-			crudService.update(instance);
-			listener.onFinal(transition, instance);
-			history(instance);
-		} else if (transition.getToState().isTerminator()) {
+		instance.setPreviousActor(actor);
+		if (participate(instance, actor)) {
+			instance.setActorHistory(StateMachineInstance.appendHistory(instance.getActorHistory(), actor));
+		}
+		instance.setStateHistory(StateMachineInstance.appendHistory(instance.getStateHistory(), instance.getStateCode()));
+		if (transition.getToState().isFinalizer() || transition.getToState().isTerminator()) {
 			instance.setEnded(true);
-			crudService.update(instance);
-			listener.onTerminate(transition, instance);
-			history(instance);
-		} else if (transition.getToState().isStarter()) {
-			instance.setInitial(true);
-			//crudService.save(instance);
-			listener.onReset(transition, instance);
-			history(instance);
-			StateMachine machine = create(instance.getTemplate().getId(), instance.getBusinessId(), instance.getContext(Object.class));
-			// 添加时，如果选择产品状态位为1:WAIT1:待审核，则执行工作流提交操作
-			if ("WAIT1".equals(instance.getStateCode())) {
-				machine.next("COMMIT", "提交审核");
+		}
+		crudService.update(instance);
+		addActionLog(instance, transition, addition, actor);
+		if (timerIndex != null) {
+			timerIndex.schedule(instance, graph(instance), transition.getFromState().getId());
+		}
+		if (metrics != null) {
+			metrics.transition(instance.getTemplate().getId(), transition, enteredAt, now);
+		}
+	}
+
+	/**
+	 * 执行到期的超时越迁, 不校验操作人; 实例已离开定时登记时的状态或已结束时仅删除定时.
+	 *
+	 * @param timerId {@link StateTimer} ID
+	 * @param actor 记录的操作人
+	 * @return 是否执行了越迁
+	 */
+	@Transactional(propagation = REQUIRED)
+	public boolean timeout(Long timerId, String actor) {
+		StateTimer timer = crudService.get(StateTimer.class, timerId);
+		if (timer == null) {
+			return false;
+		}
+		StateMachineInstance instance = crudService.get(StateMachineInstance.class, timer.getInstance());
+		if (instance != null && instanceLocks != null && instanceLocks.lock(instance.getId())) {
+			crudService.refresh(instance);
+			instance.setParticipants(null);
+		}
+		CompiledStateMachine.Transition candidate = null;
+		if (instance != null && !instance.isEnded()) {
+			candidate = graph(instance).transition(timer.getTransition());
+		}
+		if (candidate == null || !candidate.getFromState().getId().equals(instance.getState().getId())) {
+			crudService.delete(timer);
+			return false;
+		}
+		transit(instance, resolve(candidate), "超时自动越迁", actor);
+		return true;
+	}
+
+	/**
+	 * 当前用户可操作的实例, 按实例ID倒序.
+	 */
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public List<StateMachineInstance> pending(int firstResult, int maxResults) {
+		if (worklist == null) {
+			throw new UnsupportedOperationException("未配置待办索引");
+		}
+		return worklist.pending(currentUserProvider.userId(), currentUserProvider.roles(), firstResult, maxResults);
+	}
+
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public long countPending() {
+		if (worklist == null) {
+			throw new UnsupportedOperationException("未配置待办索引");
+		}
+		return worklist.countPending(currentUserProvider.userId(), currentUserProvider.roles());
+	}
+
+	/**
+	 * 对同一模板下的多个实例执行同一越迁, 单个事务内一次flush, 实例UPDATE与日志INSERT以JDBC批量提交.
+	 * <p>
+	 * 实例不存在, 已结束, 当前状态无此越迁, 无权限及beforeTransition异常按实例记为失败, 不影响其它实例;
+	 * 不支持退回起始状态的越迁. flush及后置监听的异常将回滚整个批次. 重复的业务主键只执行一次.
+	 * 
+	 * @param templateId 模板ID
+	 * @param businessIds 业务主键
+	 * @param transitionCode 越迁代码
+	 * @param addition 附言
+	 * @return 逐项结果
+	 */
+	@Transactional(propagation = REQUIRED)
+	public BatchTransitionResult nextAll(final String templateId, Collection<String> businessIds, String transitionCode, String addition) {
+		BatchTransitionResult result = new BatchTransitionResult();
+		if (businessIds.isEmpty()) {
+			return result;
+		}
+		final Set<String> distinct = new LinkedHashSet<>(businessIds);
+		List<StateMachineInstance> instances = crudService.callback(new HibernateCallback<List<StateMachineInstance>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<StateMachineInstance> doInHibernate(Session session) throws HibernateException {
+				return session.createQuery("from StateMachineInstance where template.id = :template and businessId in (:businessIds)")
+						.setParameter("template", templateId).setParameterList("businessIds", distinct).list();
+			}
+		});
+		Map<String, StateMachineInstance> found = new HashMap<>();
+		List<Long> ids = new ArrayList<>(instances.size());
+		for (StateMachineInstance instance : instances) {
+			found.put(instance.getBusinessId(), instance);
+			ids.add(instance.getId());
+		}
+		if (instanceLocks != null && instanceLocks.lockAll(ids)) {
+			// 等待期间其它线程可能已提交越迁, 重新加载后再校验
+			for (StateMachineInstance instance : instances) {
+				crudService.refresh(instance);
+			}
+		}
+		loadParticipants(instances);
+
+		String user = currentUserProvider.userId();
+		BitSet mask = null;
+		Map<TransitionDefinition, List<StateMachineInstance>> groups = new LinkedHashMap<>();
+		for (String businessId : distinct) {
+			StateMachineInstance instance = found.get(businessId);
+			if (instance == null) {
+				result.fail(businessId, "流程实例不存在");
+				continue;
+			}
+			if (instance.isEnded()) {
+				result.fail(businessId, "流程已结束");
+				continue;
+			}
+			CompiledStateMachine graph = graph(instance);
+			CompiledStateMachine.Transition compiled = graph.transition(instance.getState().getId(), transitionCode);
+			if (compiled == null) {
+				result.fail(businessId, "当前状态[" + instance.getStateCode() + "]不支持越迁: " + transitionCode);
+				continue;
+			}
+			if (compiled.getToState().isStarter()) {
+				result.fail(businessId, "批量操作不支持退回起始状态");
+				continue;
+			}
+			if (mask == null) {
+				mask = actorRoleCache.index(templateId, graph).actors(currentUserProvider.roles());
+			}
+			String denial = deny(graph, compiled, user, instance.getCreator(), participants(instance), mask);
+			if (denial != null) {
+				result.fail(businessId, denial);
+				continue;
+			}
+			TransitionDefinition transition = resolve(compiled);
+			List<StateMachineInstance> group = groups.get(transition);
+			if (group == null) {
+				group = new ArrayList<>();
+				groups.put(transition, group);
+			}
+			group.add(instance);
+		}
+		if (groups.isEmpty()) {
+			return result;
+		}
+
+		StateMachineListener listener = getListener(groups.values().iterator().next().get(0).getTemplate());
+		for (Entry<TransitionDefinition, List<StateMachineInstance>> entry : groups.entrySet()) {
+			TransitionDefinition transition = entry.getKey();
+			List<StateMachineInstance> group = entry.getValue();
+			if (listener instanceof BatchStateMachineListener) {
+				try {
+					((BatchStateMachineListener) listener).beforeTransitions(transition, group);
+				} catch (RuntimeException e) {
+					logger.warn("beforeTransitions failed, transition: {}", transition.getCode(), e);
+					for (StateMachineInstance instance : group) {
+						result.fail(instance.getBusinessId(), String.valueOf(e.getMessage()));
+					}
+					group.clear();
+				}
+			} else {
+				for (Iterator<StateMachineInstance> iterator = group.iterator(); iterator.hasNext();) {
+					StateMachineInstance instance = iterator.next();
+					try {
+						listener.beforeTransition(transition, instance);
+					} catch (RuntimeException e) {
+						logger.warn("beforeTransition failed, businessId: {}", instance.getBusinessId(), e);
+						result.fail(instance.getBusinessId(), String.valueOf(e.getMessage()));
+						iterator.remove();
+					}
+				}
+			}
+			for (StateMachineInstance instance : group) {
+				apply(instance, transition, addition, user);
+			}
+		}
+		complete(listener, groups, user, true);
+		for (List<StateMachineInstance> group : groups.values()) {
+			for (StateMachineInstance instance : group) {
+				result.success(instance.getBusinessId());
 			}
 		}
+		return result;
 	}
 
-	protected void history(StateMachineInstance instance) {
-		crudService.refresh(instance);
-		StateMachineInstanceHistory instanceHistory = createHistory(instance);
-		crudService.save(instanceHistory);
-		crudService.flush();
-		for (ActionLog actionLog : instance.getActionLogs()) {
-			ActionLogHistory logHistory = createHistory(actionLog);
-			crudService.delete(actionLog);
-			crudService.save(logHistory);
+	/**
+	 * 一次查询加载多个实例的参与人.
+	 */
+	protected void loadParticipants(final List<StateMachineInstance> instances) {
+		if (instances.isEmpty()) {
+			return;
+		}
+		final Map<Long, StateMachineInstance> byId = new HashMap<>();
+		for (StateMachineInstance instance : instances) {
+			byId.put(instance.getId(), instance);
+			instance.setParticipants(new HashSet<String>());
+		}
+		List<Object[]> rows = crudService.callback(new HibernateCallback<List<Object[]>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<Object[]> doInHibernate(Session session) throws HibernateException {
+				return session.createQuery("select id.instance, id.user from Participation where id.instance in (:ids)")
+						.setParameterList("ids", byId.keySet()).list();
+			}
+		});
+		for (Object[] row : rows) {
+			byId.get(row[0]).getParticipants().add((String) row[1]);
+		}
+		for (StateMachineInstance instance : instances) {
+			legacyParticipants(instance);
+		}
+	}
+
+	/**
+	 * 批量归档已结束实例.
+	 */
+	protected void archive(List<StateMachineInstance> instances) {
+		if (instances.isEmpty()) {
+			return;
+		}
+		if (archiveQueue != null) {
+			for (StateMachineInstance instance : instances) {
+				archiveQueue.enqueue(instance.getId());
+			}
+			return;
 		}
 		crudService.flush();
-		crudService.delete(instance);
-		crudService.flush();
+		List<Long> ids = new ArrayList<>(instances.size());
+		for (StateMachineInstance instance : instances) {
+			ids.add(instance.getId());
+		}
+		archiver.archive(ids);
+		for (StateMachineInstance instance : instances) {
+			crudService.evict(instance);
+		}
+	}
+
+	protected void history(StateMachineInstance instance) {
+		archiver.archive(instance);
 	}
 
 	protected StateMachineInstanceHistory createHistory(StateMachineInstance instance) {
@@ -295,23 +752,44 @@ public class StateMachineFactory {
 	}
 
 	protected void addActionLog(final StateMachineInstance instance, TransitionDefinition transition, String addition) {
+		addActionLog(instance, transition, addition, currentUserProvider.userId());
+	}
+
+	protected void addActionLog(final StateMachineInstance instance, TransitionDefinition transition, String addition, String actor) {
 		ActionLog actionLog = new ActionLog();
 		actionLog.setActionTimestamp(DateFormatter.now());
-		actionLog.setActor(currentUserProvider.userId());
+		actionLog.setActor(actor);
 		actionLog.setInstance(instance.getId());
 		actionLog.setFromState(transition.getFromState().getId());
 		actionLog.setToState(transition.getToState().getId());
 		actionLog.setTransition(transition.getId());
 		actionLog.setAddition(addition);
 		crudService.save(actionLog);
-		crudService.flush();
-		crudService.refresh(instance);
+		if (instance.getActionLogs() != null && Hibernate.isInitialized(instance.getActionLogs())) {
+			instance.getActionLogs().add(actionLog);
+		}
 	}
 
 	protected List<StateMachineInstanceHistory> histories(StateMachineInstance instance) {
-		return crudService.hql(StateMachineInstanceHistory.class,
-				"from StateMachineInstanceHistory where template = ? and businessId = ? order by id desc",
-				instance.getTemplate().getId(), instance.getBusinessId());
+		List<StateMachineInstanceHistory> histories;
+		if (historyRetention == null) {
+			histories = crudService.hql(StateMachineInstanceHistory.class, HQL_HISTORIES, instance.getTemplate().getId(), instance.getBusinessId());
+		} else {
+			histories = crudService.hql(StateMachineInstanceHistory.class, HQL_HISTORIES_SINCE, instance.getTemplate().getId(), instance.getBusinessId(),
+					historyRetention.cutoff());
+		}
+		if (instance.isEnded()) { // 已结束待归档
+			for (StateMachineInstanceHistory history : histories) {
+				if (history.getId().equals(instance.getId())) {
+					return histories;
+				}
+			}
+			List<StateMachineInstanceHistory> results = new ArrayList<>(histories.size() + 1);
+			results.add(createHistory(instance));
+			results.addAll(histories);
+			return results;
+		}
+		return histories;
 	}
 
 	protected void terminate(StateMachineInstance instance) {
@@ -319,70 +797,179 @@ public class StateMachineFactory {
 	}
 
 	protected List<ActionLogHistory> allLogs(StateMachineInstance instance) {
-		List<ActionLog> actionLogs = instance.getActionLogs();
-		List<ActionLogHistory> histories = crudService.hql(ActionLogHistory.class,
-				"from ActionLogHistory where dataType = ? and businessId = ? order by id desc",
-				instance.getTemplate().getDataType(), instance.getBusinessId());
+		return allLogs(instance, 0, -1);
+	}
 
-		List<ActionLogHistory> allLogs = new ArrayList<>(histories);
-		for (ActionLog actionLog : actionLogs) {
-			ActionLogHistory history = createHistory(actionLog);
-			allLogs.add(history);
+	/**
+	 * 审批历史(倒序), 当前日志与已归档日志各一次查询后按ID归并.
+	 * 
+	 * @param firstResult 起始位置
+	 * @param maxResults 最大条数, 小于0时不限制
+	 */
+	protected List<ActionLogHistory> allLogs(StateMachineInstance instance, int firstResult, int maxResults) {
+		// 不按ACTION_TIMESTAMP裁剪分区: 长期运行的实例可能有早于保留期的日志
+		Object[] archivedArgs = { instance.getTemplate().getDataType(), instance.getBusinessId() };
+		List<ActionLogHistory> archived;
+		List<Object[]> live;
+		if (maxResults < 0) {
+			archived = crudService.hql(ActionLogHistory.class, HQL_ARCHIVED_LOGS, archivedArgs);
+			live = crudService.hql(Object[].class, HQL_LIVE_LOGS, instance.getId());
+		} else {
+			archived = crudService.hql(ActionLogHistory.class, 0, firstResult + maxResults, HQL_ARCHIVED_LOGS, archivedArgs);
+			live = crudService.hql(Object[].class, 0, firstResult + maxResults, HQL_LIVE_LOGS, instance.getId());
 		}
 
-		Collections.sort(allLogs, new Comparator<ActionLogHistory>() {
-			@Override
-			public int compare(ActionLogHistory o1, ActionLogHistory o2) {
-				return (int) (o2.getId() - o1.getId());
+		List<ActionLogHistory> results = new ArrayList<>();
+		int skipped = 0;
+		int i = 0, j = 0;
+		while ((i < archived.size() || j < live.size()) && (maxResults < 0 || results.size() < maxResults)) {
+			ActionLogHistory next;
+			if (j >= live.size()) {
+				next = archived.get(i++);
+			} else if (i >= archived.size()) {
+				next = toHistory(live.get(j++));
+			} else {
+				int compare = Long.compare(archived.get(i).getId(), (Long) live.get(j)[0]);
+				if (compare == 0) { // 异步归档进行中时可能已归档
+					j++;
+					continue;
+				}
+				next = compare > 0 ? archived.get(i++) : toHistory(live.get(j++));
 			}
-		});
+			if (skipped < firstResult) {
+				skipped++;
+			} else {
+				results.add(next);
+			}
+		}
+		return results;
+	}
+
+	private ActionLogHistory toHistory(Object[] row) {
+		ActionLogHistory logHistory = new ActionLogHistory();
+		logHistory.setId((Long) row[0]);
+		logHistory.setAddition((String) row[1]);
+		logHistory.setActor((String) row[2]);
+		logHistory.setInstance((Long) row[3]);
+		logHistory.setFromState((Long) row[4]);
+		logHistory.setToState((Long) row[5]);
+		logHistory.setTransition((Long) row[6]);
+		logHistory.setActionTimestamp((Date) row[7]);
+		logHistory.setAction((String) row[8]);
+		logHistory.setDataType((String) row[9]);
+		logHistory.setBusinessId((String) row[10]);
+		logHistory.setMachine((String) row[11]);
+		logHistory.setVersion((Integer) row[12]);
+		logHistory.setTransitionCode((String) row[13]);
+		logHistory.setTransitionName((String) row[14]);
+		logHistory.setFromStateCode((String) row[15]);
+		logHistory.setFromStateName((String) row[16]);
+		logHistory.setToStateCode((String) row[17]);
+		logHistory.setToStateName((String) row[18]);
+		return logHistory;
+	}
+
+	/**
+	 * 实例参与人集合, 首次使用时按 (实例, 用户) 主键加载并缓存在实例上.
+	 */
+	protected Set<String> participants(StateMachineInstance instance) {
+		if (instance.getParticipants() == null) {
+			instance.setParticipants(new HashSet<>(crudService.hql(String.class,
+					"select id.user from Participation where id.instance = ?", instance.getId())));
+			legacyParticipants(instance);
+		}
+		return instance.getParticipants();
+	}
+
+	/**
+	 * 参与表启用前创建的实例没有参与记录, 以参与人摘要及创建人代替, 并在首次登记参与时补录.
+	 */
+	private void legacyParticipants(StateMachineInstance instance) {
+		instance.setUnsavedParticipants(null);
+		if (instance.getParticipants().isEmpty() && instance.getActorHistory() != null) {
+			Set<String> legacy = instance.actors();
+			if (instance.getCreator() != null) {
+				legacy.add(instance.getCreator());
+			}
+			instance.getParticipants().addAll(legacy);
+			instance.setUnsavedParticipants(legacy);
+		}
+	}
+
+	/**
+	 * 登记参与人.
+	 * 
+	 * @return 是否首次参与
+	 */
+	protected boolean participate(StateMachineInstance instance, String user) {
+		Set<String> participants = participants(instance);
+		Date now = DateFormatter.now();
+		if (instance.getUnsavedParticipants() != null) {
+			for (String legacy : instance.getUnsavedParticipants()) {
+				crudService.save(new Participation(instance.getId(), legacy, now));
+			}
+			instance.setUnsavedParticipants(null);
+		}
+		if (!participants.add(user)) {
+			return false;
+		}
+		crudService.save(new Participation(instance.getId(), user, now));
+		return true;
+	}
+
+	/**
+	 * 用户参与过的进行中实例.
+	 */
+	@Transactional(propagation = SUPPORTS)
+	public List<StateMachineInstance> participated(String user) {
+		return crudService.hql(StateMachineInstance.class,
+				"select i from StateMachineInstance i, Participation p where p.id.instance = i.id and p.id.user = ? order by i.id desc", user);
+	}
+
+	/**
+	 * 实例所属状态机的编译定义.
+	 */
+	protected CompiledStateMachine graph(StateMachineInstance instance) {
+		return compiler.compile(instance.getTemplate().getMachine());
+	}
+
+	/**
+	 * 在当前Session中加载编译定义对应的越迁实体.
+	 */
+	protected TransitionDefinition resolve(CompiledStateMachine.Transition transition) {
+		return crudService.get(TransitionDefinition.class, transition.getId());
+	}
 
-		return allLogs;
+	protected List<StateDefinition> states(StateMachineInstance instance) {
+		List<StateDefinition> results = new ArrayList<>();
+		for (CompiledStateMachine.State state : graph(instance).states()) {
+			results.add(crudService.get(StateDefinition.class, state.getId()));
+		}
+		return results;
 	}
 
 	protected List<TransitionDefinition> transitions(StateMachineInstance instance) {
-		List<TransitionDefinition> transitions = instance.getState().getTransitions();
+		CompiledStateMachine graph = graph(instance);
 		List<TransitionDefinition> results = new ArrayList<>();
-		List<String> roles = currentUserProvider.roles();
-		List<Long> actors = new ArrayList<>();
-		for (String role : roles) {
-			actors.addAll(crudService.hql(Long.class,
-					"select id.actor from ActorRoleMapper where id.role = ? and id.template =?", role,
-					instance.getTemplate().getId()));
-		}
-
-		String[] actorHitories = instance.getActorHistory().split(",");
-		
-		if (currentUserProvider.userId().equals(instance.getCreator())) { // 流程创建人
-			for (TransitionDefinition transition: transitions) {
-				if ((transition.getFromState().isStarter() || transition.getToState().isStarter())) {
-					results.add(transition);
-				}
-			}
-		} else if (!ArrayUtils.contains(actorHitories, currentUserProvider.userId())) { // 历史参与，禁止再次参与
-			for (TransitionDefinition transition: transitions) {
-				List<ActorDefinition> tas = transition.getActors();
-				for (ActorDefinition actor : tas) {
-					if (actors.contains(actor.getId())) {
-						results.add(transition);
-					}
-				}
+		String user = currentUserProvider.userId();
+		Set<String> participants = participants(instance);
+		BitSet mask = actorRoleCache.index(instance.getTemplate().getId(), graph).actors(currentUserProvider.roles());
+		for (CompiledStateMachine.Transition transition : graph.outgoing(instance.getState().getId())) {
+			if (deny(graph, transition, user, instance.getCreator(), participants, mask) == null) {
+				results.add(resolve(transition));
 			}
 		}
 		return results;
 	}
 
 	protected Set<String> roles(StateMachineInstance instance) {
-		List<TransitionDefinition> transitions = instance.getState().getTransitions();
-		Set<String> roles = new HashSet<>();
-		for (TransitionDefinition transition : transitions) {
-			for (ActorDefinition actor : transition.getActors()) {
-				roles.addAll(crudService.hql(String.class,
-						"select id.role from ActorRoleMapper where actor.id = ? and template.id = ?", actor.getId(),
-						instance.getTemplate().getId()));
-			}
+		CompiledStateMachine graph = graph(instance);
+		List<CompiledStateMachine.Transition> transitions = graph.outgoing(instance.getState().getId());
+		BitSet mask = new BitSet(graph.actorCount());
+		for (CompiledStateMachine.Transition transition : transitions) {
+			mask.or(graph.actors(transition));
 		}
-		return roles;
+		return actorRoleCache.index(instance.getTemplate().getId(), graph).roles(mask);
 	}
 
 	private StateMachineInstance newInstance(StateMachineTemplate template, String businessId, String user,
@@ -398,6 +985,7 @@ public class StateMachineFactory {
 		instance.setInitial(true);
 		instance.setState(template.getMachine().getStartState());
 		instance.setStateCode(template.getMachine().getStartState().getCode());
+		instance.setStateTimestamp(DateFormatter.now());
 
 		instance.setActorHistory(user);
 		instance.setStateHistory(instance.getStateCode());
@@ -406,13 +994,23 @@ public class StateMachineFactory {
 		listener.beforeCreate(template, businessId);
 
 		crudService.saveOrUpdate(instance);
+		instance.setParticipants(new HashSet<String>());
+		participate(instance, user);
+		if (worklist != null) {
+			worklist.update(instance, graph(instance));
+		}
+		if (timerIndex != null) {
+			timerIndex.schedule(instance, graph(instance), null);
+		}
+		if (metrics != null) {
+			metrics.created(template.getId(), instance.getState());
+		}
 		crudService.flush();
 		if (context != null) {
 			crudService.callback(new HibernateCallback<Void>() {
 				@Override
 				public Void doInHibernate(Session session) throws HibernateException {
-					Gson gson = new Gson();
-					Blob blob = session.getLobHelper().createBlob(gson.toJson(context).getBytes());
+					Blob blob = session.getLobHelper().createBlob(ContextCodecs.getCodec().encode(context));
 					instance.setContext(blob);
 					session.update(instance);
 					session.flush();
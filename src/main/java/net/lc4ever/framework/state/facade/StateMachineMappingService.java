@@ -26,12 +26,24 @@ package net.lc4ever.framework.state.facade;
 import static org.springframework.transaction.annotation.Propagation.REQUIRED;
 import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
 
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate5.HibernateCallback;
 import org.springframework.transaction.annotation.Transactional;
 
 import net.lc4ever.framework.service.GenericCrudService;
@@ -46,14 +58,37 @@ import net.lc4ever.framework.state.mapper.TemplateCallbackMapper;
  */
 public class StateMachineMappingService {
 
+	private static final String HQL_DELETE_ROLES = "delete ActorRoleMapper where id.template = :template and (";
+
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
 	private GenericCrudService crudService;
 
+	private ActorRoleCache actorRoleCache;
+
+	private TemplateDescriptorCache descriptorCache;
+
+	private Worklist worklist;
+
 	public void setCrudService(GenericCrudService crudService) {
 		this.crudService = crudService;
 	}
 
+	public void setActorRoleCache(ActorRoleCache actorRoleCache) {
+		this.actorRoleCache = actorRoleCache;
+	}
+
+	public void setDescriptorCache(TemplateDescriptorCache descriptorCache) {
+		this.descriptorCache = descriptorCache;
+	}
+
+	/**
+	 * 配置后角色映射或模板定义变更时重建模板下的待办索引.
+	 */
+	public void setWorklist(Worklist worklist) {
+		this.worklist = worklist;
+	}
+
 	// MachineDefinition
 	public List<StateMachineDefinition> definitions() {
 		return crudService.list(StateMachineDefinition.class);
@@ -89,7 +124,8 @@ public class StateMachineMappingService {
 
 	@Transactional(propagation = REQUIRED)
 	public StateMachineTemplate alterTemplate(String templateId, String machineId, boolean cascade) {
-		StateMachineTemplate template = crudService.get(StateMachineTemplate.class, templateId);
+		// 请求缓存中的模板只读, 查询当前Session的受管实例后再修改
+		StateMachineTemplate template = crudService.uniqueResultHql(StateMachineTemplate.class, "from StateMachineTemplate where id = ?", templateId);
 		if (template.getMachine().getId().equals(machineId)) {
 			return template;
 		}
@@ -101,6 +137,9 @@ public class StateMachineMappingService {
 		}
 		template.setMachine(crudService.get(StateMachineDefinition.class, machineId));
 		crudService.update(template);
+		actorRoleCache.evict(templateId);
+		descriptorCache.evict(templateId);
+		rebuildWorklist(templateId);
 		return template;
 	}
 
@@ -118,78 +157,152 @@ public class StateMachineMappingService {
 				templateId, actorCode);
 	}
 
+	private Long requireActorId(String templateId, String actorCode) {
+		Long actorId = actorId(templateId, actorCode);
+		if (actorId == null) {
+			throw new IllegalArgumentException("流程模板[" + templateId + "]中不存在参与者: " + actorCode);
+		}
+		return actorId;
+	}
+
 	@Transactional(propagation = REQUIRED)
 	public void addRoles(String templateId, String actorCode, String... roles) {
-		addRoles(templateId, actorId(templateId, actorCode), roles);
+		addRoles(templateId, requireActorId(templateId, actorCode), roles);
 	}
 
+	/**
+	 * 添加角色, 已存在的映射忽略.
+	 */
 	@Transactional(propagation = REQUIRED)
 	public void addRoles(String templateId, Long actorId, String... roles) {
-		ActorDefinition actor = crudService.get(ActorDefinition.class, actorId);
-		StateMachineTemplate template = crudService.get(StateMachineTemplate.class, templateId);
-		for (String role : roles) {
-			ActorRoleMapper mapper = new ActorRoleMapper();
-			ActorRoleMapper.ID id = new ActorRoleMapper.ID();
-			//			id.setActor(actorId);
-			id.setRole(role);
-			//			id.setTemplate(templateId);
-			mapper.setId(id);
-			mapper.setActor(actor);
-			mapper.setTemplate(template);
-			crudService.save(mapper);
-		}
+		Set<String> adds = new LinkedHashSet<>(Arrays.asList(roles));
+		adds.removeAll(currentRoles(templateId, actorId));
+		apply(templateId, Collections.singletonMap(actorId, adds), Collections.<Long, Set<String>>emptyMap());
 	}
 
 	@Transactional(propagation = REQUIRED)
 	public void removeRoles(String templateId, String actorCode, String... roles) {
-		removeRoles(templateId, actorId(templateId, actorCode), roles);
+		removeRoles(templateId, requireActorId(templateId, actorCode), roles);
 	}
 
 	@Transactional(propagation = REQUIRED)
 	public void removeRoles(String templateId, Long actorId, String... roles) {
-		for (String role : roles) {
-			crudService.update("delete ActorRoleMapper where id.template = ? and id.actor = ? and id.role = ?",
-					templateId, actorId, role);
-		}
-		// TODO clear cache of ActorRoleMapper(evict class cache) or iterate delete(evict object cache)?
+		Set<String> removes = new LinkedHashSet<>(Arrays.asList(roles));
+		apply(templateId, Collections.<Long, Set<String>>emptyMap(), Collections.singletonMap(actorId, removes));
 	}
 
 	@Transactional(propagation = REQUIRED)
 	public void setRoles(String templateId, String actorCode, String... roles) {
-		setRoles(templateId, actorId(templateId, actorCode), roles);
+		setRoles(templateId, requireActorId(templateId, actorCode), roles);
 	}
 
+	/**
+	 * 设置角色, 不在roles中的已有映射将被删除.
+	 */
 	@Transactional(propagation = REQUIRED)
 	public void setRoles(String templateId, Long actorId, String... roles) {
-		for (String role : roles) {
-			ActorRoleMapper.ID id = new ActorRoleMapper.ID();
-			id.setTemplate(templateId);
-			id.setActor(actorId);
-			id.setRole(role);
-			ActorRoleMapper mapper = crudService.get(ActorRoleMapper.class, id);
-			if (mapper == null) {
-				mapper = new ActorRoleMapper();
-				mapper.setActor(crudService.get(ActorDefinition.class, actorId));
-				mapper.setTemplate(crudService.get(StateMachineTemplate.class, templateId));
-				mapper.setId(id);
-				crudService.save(mapper);
+		setRoles(templateId, Collections.singletonMap(actorId, Arrays.asList(roles)));
+	}
+
+	/**
+	 * 批量设置模板下各参与者的角色: 一次读取现有映射并计算差异, 新增映射批量INSERT, 多余映射以一条DELETE删除.
+	 *
+	 * @param actorRoles 参与者ID -> 角色, 未包含的参与者保持不变
+	 * @return 新增及删除的映射数
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int setRoles(String templateId, Map<Long, ? extends Collection<String>> actorRoles) {
+		Map<Long, Set<String>> current = currentRoles(templateId);
+		Map<Long, Set<String>> adds = new LinkedHashMap<>();
+		Map<Long, Set<String>> removes = new LinkedHashMap<>();
+		for (Entry<Long, ? extends Collection<String>> entry : actorRoles.entrySet()) {
+			Set<String> target = new LinkedHashSet<>(entry.getValue());
+			Set<String> existing = current.containsKey(entry.getKey()) ? current.get(entry.getKey()) : Collections.<String>emptySet();
+			Set<String> add = new LinkedHashSet<>(target);
+			add.removeAll(existing);
+			Set<String> remove = new LinkedHashSet<>(existing);
+			remove.removeAll(target);
+			if (!add.isEmpty()) {
+				adds.put(entry.getKey(), add);
+			}
+			if (!remove.isEmpty()) {
+				removes.put(entry.getKey(), remove);
 			}
 		}
+		return apply(templateId, adds, removes);
+	}
+
+	/**
+	 * 批量写入映射差异, 有变更时清除模板的角色缓存并重建待办索引.
+	 */
+	protected int apply(final String templateId, final Map<Long, Set<String>> adds, final Map<Long, Set<String>> removes) {
+		if (adds.isEmpty() && removes.isEmpty()) {
+			return 0;
+		}
+		int changed = crudService.callback(new HibernateCallback<Integer>() {
+			@Override
+			public Integer doInHibernate(Session session) throws HibernateException {
+				int count = 0;
+				// 各参与者的角色以IN列表组合为一条DELETE
+				StringBuilder hql = new StringBuilder(HQL_DELETE_ROLES);
+				List<Entry<Long, Set<String>>> deletes = new ArrayList<>();
+				for (Entry<Long, Set<String>> entry : removes.entrySet()) {
+					if (!entry.getValue().isEmpty()) {
+						hql.append(deletes.isEmpty() ? "" : " or ").append("(id.actor = :actor").append(deletes.size()).append(" and id.role in (:roles")
+								.append(deletes.size()).append("))");
+						deletes.add(entry);
+					}
+				}
+				if (!deletes.isEmpty()) {
+					Query query = session.createQuery(hql.append(')').toString()).setParameter("template", templateId);
+					for (int i = 0; i < deletes.size(); i++) {
+						query.setParameter("actor" + i, deletes.get(i).getKey()).setParameterList("roles" + i, deletes.get(i).getValue());
+					}
+					count += query.executeUpdate();
+				}
+				StateMachineTemplate template = session.load(StateMachineTemplate.class, templateId);
+				for (Entry<Long, Set<String>> entry : adds.entrySet()) {
+					ActorDefinition actor = session.load(ActorDefinition.class, entry.getKey());
+					for (String role : entry.getValue()) {
+						ActorRoleMapper mapper = new ActorRoleMapper();
+						mapper.setId(new ActorRoleMapper.ID(templateId, entry.getKey(), role));
+						mapper.setActor(actor);
+						mapper.setTemplate(template);
+						session.save(mapper);
+						count++;
+					}
+				}
+				// 按hibernate.jdbc.batch_size批量INSERT
+				session.flush();
+				return count;
+			}
+		});
+		actorRoleCache.evict(templateId);
+		rebuildWorklist(templateId);
+		return changed;
 	}
 
 	@Transactional(propagation = REQUIRED)
 	public void clearRoles(String templateId, String actorCode) {
-		clearRoles(templateId, actorId(templateId, actorCode));
+		clearRoles(templateId, requireActorId(templateId, actorCode));
 	}
 
 	@Transactional(propagation = REQUIRED)
 	public void clearRoles(String templateId, Long actorId) {
 		crudService.update("delete ActorRoleMapper where id.template = ? and id.actor = ?", templateId, actorId);
-		// TODO clear cache of ActorRoleMapper(evict class cache) or iterate delete(evict object cache)?
+		actorRoleCache.evict(templateId);
+		rebuildWorklist(templateId);
+	}
+
+	private void rebuildWorklist(String templateId) {
+		if (worklist != null) {
+			int instances = worklist.rebuild(templateId);
+			logger.debug("Rebuilt worklist of template: {}, instances: {}", templateId, instances);
+		}
 	}
 
 	public List<String> currentRoles(String templateId, String actorCode) {
-		return currentRoles(templateId, actorId(templateId, actorCode));
+		return currentRoles(templateId, requireActorId(templateId, actorCode));
 	}
 
 	public List<String> currentRoles(String templateId, Long actorId) {
@@ -197,6 +310,22 @@ public class StateMachineMappingService {
 				"select id.role from ActorRoleMapper where id.template = ? and id.actor = ?", templateId, actorId);
 	}
 
+	/**
+	 * 模板下全部映射, 参与者ID -> 角色.
+	 */
+	public Map<Long, Set<String>> currentRoles(String templateId) {
+		Map<Long, Set<String>> result = new HashMap<>();
+		for (Object[] row : crudService.hql(Object[].class, "select id.actor, id.role from ActorRoleMapper where id.template = ?", templateId)) {
+			Set<String> roles = result.get(row[0]);
+			if (roles == null) {
+				roles = new LinkedHashSet<>();
+				result.put((Long) row[0], roles);
+			}
+			roles.add((String) row[1]);
+		}
+		return result;
+	}
+
 	// InterceptorMapper
 	public void setCallbackSql(String templateId, String state, String callbackSql) {
 		TemplateCallbackMapper mapper = crudService.uniqueResultHql(TemplateCallbackMapper.class,
@@ -210,6 +339,7 @@ public class StateMachineMappingService {
 		}
 		mapper.setCallback(callbackSql);
 		crudService.saveOrUpdate(mapper);
+		descriptorCache.evict(templateId);
 	}
 
 	public Map<String, String> getCallbackSql(String templateId) {
@@ -0,0 +1,399 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRED;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.lc4ever.framework.dao.GenericDaoStatistics;
+import net.lc4ever.framework.format.DateFormatter;
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMetricRollup;
+
+/**
+ * 按(模板, 状态)增量维护的流程统计: 进入/离开次数, 当前停留实例数及停留时长直方图.
+ * <p>
+ * 统计在事务提交后更新, 回滚的越迁不计入. 运行期数据保存在内存中, 由Quartz定时调用 {@link #flush()} 将周期增量写入 {@link StateMetricRollup},
+ * 分析查询汇总表即可, 无需扫描历史表. 汇总表的各项(含停留实例数)均为本节点在周期内的增量, 多节点部署时可直接求和.
+ * <p>
+ * 内存中的 {@link StateMetric#getInFlight() 停留实例数} 为首次flush时按实例表 {@link #calibrate() 校准} 的绝对值加本节点增量,
+ * 仅反映本节点视角; 集群的当前停留实例数以 {@link #calibrate()} 的查询为准, 校准不计入汇总表的增量.
+ *
+ * @author q-wang
+ */
+public class StateMachineMetrics {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	/** 停留时长直方图各区间上限(毫秒): 1分钟, 10分钟, 1小时, 4小时, 1天, 3天, 7天, 30天, 最后一个区间无上限. */
+	public static final long[] BUCKETS = { 60000L, 600000L, 3600000L, 14400000L, 86400000L, 259200000L, 604800000L, 2592000000L };
+
+	public static class StateMetric {
+
+		private final String template;
+
+		private final Long state;
+
+		private final String stateCode;
+
+		private final AtomicLong entered = new AtomicLong();
+
+		private final AtomicLong exited = new AtomicLong();
+
+		private final AtomicLong inFlight = new AtomicLong();
+
+		/** 停留实例数的累计净变化, 不受校准影响, 用于计算写入汇总表的增量 */
+		private final AtomicLong inFlightChange = new AtomicLong();
+
+		private final GenericDaoStatistics.Cost dwell = new GenericDaoStatistics.Cost();
+
+		private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS.length + 1);
+
+		/** 上次flush时的累计值, 仅flush线程访问 */
+		private long[] flushed = new long[5 + BUCKETS.length + 1];
+
+		StateMetric(String template, Long state, String stateCode) {
+			this.template = template;
+			this.state = state;
+			this.stateCode = stateCode;
+		}
+
+		void dwell(long millis) {
+			dwell.cost(millis);
+			int bucket = 0;
+			while (bucket < BUCKETS.length && millis > BUCKETS[bucket]) {
+				bucket++;
+			}
+			histogram.incrementAndGet(bucket);
+		}
+
+		long[] snapshot() {
+			long[] values = new long[flushed.length];
+			values[0] = entered.get();
+			values[1] = exited.get();
+			values[2] = inFlightChange.get();
+			values[3] = dwell.getCount();
+			values[4] = dwell.getCost();
+			for (int i = 0; i <= BUCKETS.length; i++) {
+				values[5 + i] = histogram.get(i);
+			}
+			return values;
+		}
+
+		public String getTemplate() {
+			return template;
+		}
+
+		public Long getState() {
+			return state;
+		}
+
+		public String getStateCode() {
+			return stateCode;
+		}
+
+		public long getEntered() {
+			return entered.get();
+		}
+
+		public long getExited() {
+			return exited.get();
+		}
+
+		public long getInFlight() {
+			return inFlight.get();
+		}
+
+		/**
+		 * 停留时长累计, cost单位为毫秒.
+		 */
+		public GenericDaoStatistics.Cost getDwell() {
+			return dwell;
+		}
+
+		/**
+		 * 各区间计数, 区间上限见 {@link StateMachineMetrics#BUCKETS}.
+		 */
+		public long[] getHistogram() {
+			long[] values = new long[histogram.length()];
+			for (int i = 0; i < values.length; i++) {
+				values[i] = histogram.get(i);
+			}
+			return values;
+		}
+
+		@Override
+		public String toString() {
+			return "StateMetric [template=" + template + ", state=" + stateCode + ", entered=" + entered + ", exited=" + exited + ", inFlight=" + inFlight + ", dwell=" + dwell
+					+ "]";
+		}
+	}
+
+	protected GenericCrudService crudService;
+
+	private final long start = System.currentTimeMillis();
+
+	private final ConcurrentMap<String, StateMetric> metrics = new ConcurrentHashMap<>();
+
+	private volatile boolean calibrated;
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	private Date lastFlush = DateFormatter.now();
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	/**
+	 * 登记到DAO统计, 与DAO耗时统计通过同一入口读取.
+	 */
+	public void setDaoStatistics(GenericDaoStatistics daoStatistics) {
+		daoStatistics.register("stateMachine", this);
+	}
+
+	public long getStart() {
+		return start;
+	}
+
+	public Collection<StateMetric> getMetrics() {
+		return Collections.unmodifiableCollection(metrics.values());
+	}
+
+	public List<StateMetric> getMetrics(String templateId) {
+		List<StateMetric> result = new ArrayList<>();
+		for (StateMetric metric : metrics.values()) {
+			if (metric.template.equals(templateId)) {
+				result.add(metric);
+			}
+		}
+		return result;
+	}
+
+	protected StateMetric metric(String templateId, Long stateId, String stateCode) {
+		String key = templateId + '/' + stateId;
+		StateMetric metric = metrics.get(key);
+		if (metric == null) {
+			metric = new StateMetric(templateId, stateId, stateCode);
+			StateMetric exists = metrics.putIfAbsent(key, metric);
+			if (exists != null) {
+				metric = exists;
+			}
+		}
+		return metric;
+	}
+
+	/**
+	 * 新建实例进入开始状态.
+	 */
+	public void created(final String templateId, final StateDefinition startState) {
+		final Long stateId = startState.getId();
+		final String stateCode = startState.getCode();
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				StateMetric metric = metric(templateId, stateId, stateCode);
+				metric.entered.incrementAndGet();
+				metric.inFlight.incrementAndGet();
+				metric.inFlightChange.incrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * 越迁完成, 重置至开始状态时仅记录离开, 进入由新建实例记录.
+	 *
+	 * @param enteredAt 进入源状态的时间, 未知时为null
+	 * @param now 越迁时间
+	 */
+	public void transition(final String templateId, TransitionDefinition transition, Date enteredAt, Date now) {
+		final StateDefinition from = transition.getFromState();
+		final StateDefinition to = transition.getToState();
+		final Long fromId = from.getId();
+		final String fromCode = from.getCode();
+		final Long toId = to.isStarter() ? null : to.getId();
+		final String toCode = to.getCode();
+		final boolean ended = to.isFinalizer() || to.isTerminator();
+		final long dwell = enteredAt == null ? -1 : Math.max(0, now.getTime() - enteredAt.getTime());
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				StateMetric source = metric(templateId, fromId, fromCode);
+				source.exited.incrementAndGet();
+				source.inFlight.decrementAndGet();
+				source.inFlightChange.decrementAndGet();
+				if (dwell >= 0) {
+					source.dwell(dwell);
+				}
+				if (toId != null) {
+					StateMetric target = metric(templateId, toId, toCode);
+					target.entered.incrementAndGet();
+					if (!ended) {
+						target.inFlight.incrementAndGet();
+						target.inFlightChange.incrementAndGet();
+					}
+				}
+			}
+		});
+	}
+
+	private static void afterCommit(final Runnable update) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					update.run();
+				}
+			});
+		} else {
+			update.run();
+		}
+	}
+
+	/**
+	 * 按实例表校准本节点的停留实例数, 仅查询未结束实例的分组计数, 不影响写入汇总表的增量.
+	 */
+	@Transactional(propagation = REQUIRED, readOnly = true)
+	public void calibrate() {
+		List<Object[]> rows = crudService.hql(Object[].class,
+				"select template.id, state.id, stateCode, count(*) from StateMachineInstance where ended = false group by template.id, state.id, stateCode");
+		for (StateMetric metric : metrics.values()) {
+			metric.inFlight.set(0);
+		}
+		for (Object[] row : rows) {
+			metric((String) row[0], (Long) row[1], (String) row[2]).inFlight.set(((Number) row[3]).longValue());
+		}
+		calibrated = true;
+	}
+
+	/**
+	 * 将上次flush以来的增量写入汇总表, 事务提交后才推进已写入位置, 失败的周期并入下一次flush.
+	 * <p>
+	 * flush互斥持有至事务结束, 后到者在前一次提交或回滚后才读取已写入位置, 不会重复写入同一增量.
+	 *
+	 * @return 写入行数
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int flush() {
+		flushLock.lock();
+		boolean deferred = false;
+		try {
+			int written = write();
+			deferred = unlockAfterCompletion();
+			return written;
+		} finally {
+			if (!deferred) {
+				flushLock.unlock();
+			}
+		}
+	}
+
+	ReentrantLock flushLock() {
+		return flushLock;
+	}
+
+	private boolean unlockAfterCompletion() {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			return false;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCompletion(int status) {
+				flushLock.unlock();
+			}
+		});
+		return true;
+	}
+
+	private int write() {
+		if (!calibrated) {
+			calibrate();
+		}
+		final Date now = DateFormatter.now();
+		final List<StateMetric> written = new ArrayList<>();
+		final List<long[]> snapshots = new ArrayList<>();
+		for (StateMetric metric : metrics.values()) {
+			long[] values = metric.snapshot();
+			long[] flushed = metric.flushed;
+			if (values[0] == flushed[0] && values[1] == flushed[1] && values[2] == flushed[2]) {
+				continue;
+			}
+			StateMetricRollup rollup = new StateMetricRollup();
+			rollup.setTemplate(metric.template);
+			rollup.setState(metric.state);
+			rollup.setStateCode(metric.stateCode);
+			rollup.setPeriodStart(lastFlush);
+			rollup.setPeriodEnd(now);
+			rollup.setEntered(values[0] - flushed[0]);
+			rollup.setExited(values[1] - flushed[1]);
+			rollup.setInFlight(values[2] - flushed[2]);
+			rollup.setDwellCount(values[3] - flushed[3]);
+			rollup.setDwellTotal(values[4] - flushed[4]);
+			StringBuilder histogram = new StringBuilder();
+			for (int i = 5; i < values.length; i++) {
+				if (i > 5) {
+					histogram.append(',');
+				}
+				histogram.append(values[i] - flushed[i]);
+			}
+			rollup.setHistogram(histogram.toString());
+			crudService.save(rollup);
+			written.add(metric);
+			snapshots.add(values);
+		}
+		afterCommit(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < written.size(); i++) {
+					written.get(i).flushed = snapshots.get(i);
+				}
+				lastFlush = now;
+			}
+		});
+		if (!written.isEmpty()) {
+			logger.debug("Flushed {} state metrics.", written.size());
+		}
+		return written.size();
+	}
+}
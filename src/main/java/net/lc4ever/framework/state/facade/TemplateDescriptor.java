@@ -0,0 +1,71 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.Collections;
+import java.util.Map;
+
+import net.lc4ever.framework.state.interceptor.StateMachineListener;
+
+/**
+ * 模板运行期描述: 模板ID, 已解析的监听器及各状态的回调SQL, 运行期不变.
+ *
+ * @author q-wang
+ */
+public final class TemplateDescriptor {
+
+	private final String templateId;
+
+	private final StateMachineListener listener;
+
+	private final Map<String, String> callbacks;
+
+	TemplateDescriptor(String templateId, StateMachineListener listener, Map<String, String> callbacks) {
+		this.templateId = templateId;
+		this.listener = listener;
+		this.callbacks = Collections.unmodifiableMap(callbacks);
+	}
+
+	public String getTemplateId() {
+		return templateId;
+	}
+
+	/**
+	 * @return 模板指定的监听器, 未指定时返回null
+	 */
+	public StateMachineListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * @return 进入状态时的回调SQL, 未配置时返回null
+	 */
+	public String callback(String stateCode) {
+		return callbacks.get(stateCode);
+	}
+
+	public Map<String, String> getCallbacks() {
+		return callbacks;
+	}
+}
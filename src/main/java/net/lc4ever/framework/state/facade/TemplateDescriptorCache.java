@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.lc4ever.framework.context.ContextHolder;
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.interceptor.StateMachineListener;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * 按模板缓存 {@link TemplateDescriptor} 及 (machine, dataType, action) 到模板ID的查找结果.
+ * <p>
+ * 由 {@link StateMachineMappingService} 在模板或回调SQL变更时调用 {@link #evict(String)}.
+ *
+ * @author q-wang
+ */
+public class TemplateDescriptorCache {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private final ConcurrentMap<String, TemplateDescriptor> descriptors = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<List<String>, String> templates = new ConcurrentHashMap<>();
+
+	private GenericCrudService crudService;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	/**
+	 * @return 模板ID, 不存在时返回null(不缓存)
+	 */
+	public String templateId(String machineCode, String dataType, String action) {
+		List<String> key = Arrays.asList(machineCode, dataType, action);
+		String templateId = templates.get(key);
+		if (templateId == null) {
+			templateId = crudService.uniqueResultHql(String.class,
+					"select id from StateMachineTemplate where machine.code = ? and dataType = ? and action = ?",
+					machineCode, dataType, action);
+			if (templateId != null) {
+				templates.put(key, templateId);
+			}
+		}
+		return templateId;
+	}
+
+	public TemplateDescriptor descriptor(String templateId) {
+		TemplateDescriptor descriptor = descriptors.get(templateId);
+		if (descriptor == null) {
+			descriptor = load(templateId);
+			descriptors.put(templateId, descriptor);
+		}
+		return descriptor;
+	}
+
+	protected TemplateDescriptor load(String templateId) {
+		logger.debug("Loading runtime descriptor of template: {}", templateId);
+		StateMachineTemplate template = crudService.get(StateMachineTemplate.class, templateId);
+		if (template == null) {
+			throw new IllegalArgumentException("模板不存在: " + templateId);
+		}
+		StateMachineListener listener = template.getListener() == null ? null
+				: ContextHolder.getBean(template.getListener(), StateMachineListener.class);
+		Map<String, String> callbacks = new HashMap<>();
+		for (Object[] row : crudService.hql(Object[].class,
+				"select id.state, callback from TemplateCallbackMapper where id.template = ?", templateId)) {
+			callbacks.put((String) row[0], (String) row[1]);
+		}
+		return new TemplateDescriptor(templateId, listener, callbacks);
+	}
+
+	/**
+	 * 清除模板缓存, 处于事务中时在事务结束后再次清除.
+	 */
+	public void evict(final String templateId) {
+		remove(templateId);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCompletion(int status) {
+					remove(templateId);
+				}
+			});
+		}
+	}
+
+	private void remove(String templateId) {
+		descriptors.remove(templateId);
+		for (Iterator<Entry<List<String>, String>> iterator = templates.entrySet().iterator(); iterator.hasNext();) {
+			if (iterator.next().getValue().equals(templateId)) {
+				iterator.remove();
+			}
+		}
+	}
+
+	public void evict() {
+		descriptors.clear();
+		templates.clear();
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRED;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.lc4ever.framework.format.DateFormatter;
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.instance.StateTimer;
+
+/**
+ * 维护 {@link StateTimer} 到期索引并按租约认领到期记录.
+ * <p>
+ * 仅当离开或进入的状态存在超时越迁时才访问索引表, 无超时定义的流程不产生额外语句. 认领按DUE_TIME索引范围扫描, 与待触发记录总数无关.
+ *
+ * @author q-wang
+ */
+public class TimerIndex {
+
+	protected GenericCrudService crudService;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	/**
+	 * 实例进入当前状态时调用, 删除离开状态的定时并登记当前状态的超时越迁.
+	 *
+	 * @param previousStateId 离开的状态ID, 新建实例时为null
+	 */
+	@Transactional(propagation = REQUIRED)
+	public void schedule(StateMachineInstance instance, CompiledStateMachine graph, Long previousStateId) {
+		if (previousStateId != null && hasTimeout(graph.outgoing(previousStateId))) {
+			crudService.update("delete StateTimer where instance = ?", instance.getId());
+		}
+		if (instance.isEnded()) {
+			return;
+		}
+		long now = DateFormatter.now().getTime();
+		for (CompiledStateMachine.Transition transition : graph.outgoing(instance.getState().getId())) {
+			if (transition.getTimeout() != null && !transition.getToState().isStarter()) {
+				crudService.save(new StateTimer(instance.getId(), transition.getId(), new Date(now + transition.getTimeout() * 1000)));
+			}
+		}
+	}
+
+	private static boolean hasTimeout(List<CompiledStateMachine.Transition> transitions) {
+		for (CompiledStateMachine.Transition transition : transitions) {
+			if (transition.getTimeout() != null) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * 认领到期且未被其它节点持有租约的定时.
+	 *
+	 * @param owner 认领节点标识
+	 * @param batchSize 单次最多认领数
+	 * @param leaseMillis 租约时长, 期间其它节点不会重复认领
+	 * @return 认领成功的定时ID
+	 */
+	@Transactional(propagation = REQUIRED)
+	public List<Long> claim(final String owner, final int batchSize, final long leaseMillis) {
+		final Date now = DateFormatter.now();
+		final List<Long> due = crudService.hql(Long.class, 0, batchSize,
+				"select id from StateTimer where dueTime <= ? and (leaseUntil is null or leaseUntil < ?) order by dueTime", now, now);
+		if (due.isEmpty()) {
+			return Collections.emptyList();
+		}
+		return crudService.callback(new HibernateCallback<List<Long>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<Long> doInHibernate(Session session) throws HibernateException {
+				session.createQuery("update StateTimer set leaseOwner = :owner, leaseUntil = :until where id in (:ids) and (leaseUntil is null or leaseUntil < :now)")
+						.setParameter("owner", owner).setParameter("until", new Date(now.getTime() + leaseMillis)).setParameterList("ids", due)
+						.setParameter("now", now).executeUpdate();
+				return session.createQuery("select id from StateTimer where id in (:ids) and leaseOwner = :owner order by dueTime")
+						.setParameterList("ids", due).setParameter("owner", owner).list();
+			}
+		});
+	}
+}
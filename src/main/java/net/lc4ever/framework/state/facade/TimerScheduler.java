@@ -0,0 +1,111 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Required;
+
+/**
+ * 超时越迁调度, 由Quartz定时调用 {@link #fireDue()}: 批量认领到期定时, 逐个在独立事务中通过 {@link StateMachineFactory#timeout(Long, String)} 执行越迁.
+ * <p>
+ * 多节点部署时依靠租约避免重复触发; 执行失败或节点宕机的定时于租约过期后重新认领.
+ *
+ * @author q-wang
+ */
+public class TimerScheduler {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	protected StateMachineFactory factory;
+
+	protected TimerIndex timerIndex;
+
+	private String owner = ManagementFactory.getRuntimeMXBean().getName();
+
+	private String actor = "SYSTEM";
+
+	private int batchSize = 100;
+
+	private long leaseMillis = 300000;
+
+	@Required
+	public void setFactory(StateMachineFactory factory) {
+		this.factory = factory;
+	}
+
+	@Required
+	public void setTimerIndex(TimerIndex timerIndex) {
+		this.timerIndex = timerIndex;
+	}
+
+	/**
+	 * 节点标识, 默认为JVM名称(pid@host).
+	 */
+	public void setOwner(String owner) {
+		this.owner = owner;
+	}
+
+	/**
+	 * 超时越迁记录的操作人.
+	 */
+	public void setActor(String actor) {
+		this.actor = actor;
+	}
+
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	public void setLeaseMillis(long leaseMillis) {
+		this.leaseMillis = leaseMillis;
+	}
+
+	/**
+	 * @return 本次执行的越迁数
+	 */
+	public int fireDue() {
+		int fired = 0;
+		List<Long> timers;
+		do {
+			timers = timerIndex.claim(owner, batchSize, leaseMillis);
+			for (Long timer : timers) {
+				try {
+					if (factory.timeout(timer, actor)) {
+						fired++;
+					}
+				} catch (RuntimeException e) {
+					logger.warn("Timer: {} failed, will retry after the lease expires.", timer, e);
+				}
+			}
+		} while (timers.size() == batchSize);
+		if (fired > 0) {
+			logger.debug("Fired {} timeout transitions.", fired);
+		}
+		return fired;
+	}
+}
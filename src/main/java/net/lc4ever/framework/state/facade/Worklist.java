@@ -0,0 +1,197 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.springframework.transaction.annotation.Propagation.REQUIRED;
+import static org.springframework.transaction.annotation.Propagation.SUPPORTS;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Required;
+import org.springframework.orm.hibernate5.HibernateCallback;
+import org.springframework.transaction.annotation.Transactional;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.instance.WorkItem;
+
+/**
+ * 待办查询: 维护 {@link WorkItem} 索引, 按用户及其角色分页查询可操作的实例, 无需逐个实例计算可用越迁.
+ * <p>
+ * 判定规则与 {@link StateMachineFacade#transitions()} 一致: 流程创建人仅可操作起始状态相关越迁, 其它越迁要求持有对应角色且未参与过该实例.
+ * 通过 {@link StateMachineMappingService} 变更角色映射或模板定义时自动 {@link #rebuild(String) 重建} 模板下的索引.
+ *
+ * @author q-wang
+ */
+public class Worklist {
+
+	private static final String PENDING = " from StateMachineInstance i where exists (select w.id from WorkItem w where w.id.instance = i.id and "
+			+ "((w.id.type = 'U' and w.id.assignee = :user)";
+
+	private static final String PENDING_ROLES = " or (w.id.type = 'R' and w.id.assignee in (:roles) and i.creator <> :user "
+			+ "and not exists (select p.id from Participation p where p.id.instance = i.id and p.id.user = :user))";
+
+	/** 重建时单条DELETE的实例数上限 */
+	private static final int REBUILD_BATCH = 500;
+
+	protected GenericCrudService crudService;
+
+	protected ActorRoleCache actorRoleCache;
+
+	protected StateMachineCompiler compiler;
+
+	@Required
+	public void setCrudService(GenericCrudService crudService) {
+		this.crudService = crudService;
+	}
+
+	@Required
+	public void setActorRoleCache(ActorRoleCache actorRoleCache) {
+		this.actorRoleCache = actorRoleCache;
+	}
+
+	@Required
+	public void setCompiler(StateMachineCompiler compiler) {
+		this.compiler = compiler;
+	}
+
+	/**
+	 * 按实例当前状态重建索引, 已结束的实例仅删除.
+	 */
+	@Transactional(propagation = REQUIRED)
+	public void update(StateMachineInstance instance, CompiledStateMachine graph) {
+		update(Collections.singletonList(instance), graph);
+	}
+
+	/**
+	 * 批量重建同一模板下多个实例的索引: 一条语句删除旧索引后登记新索引,
+	 * 避免逐个实例的DELETE触发flush, 使登记的INSERT得以按JDBC批量提交.
+	 */
+	@Transactional(propagation = REQUIRED)
+	public void update(final Collection<StateMachineInstance> instances, CompiledStateMachine graph) {
+		if (instances.isEmpty()) {
+			return;
+		}
+		final List<Long> ids = new ArrayList<>(instances.size());
+		for (StateMachineInstance instance : instances) {
+			ids.add(instance.getId());
+		}
+		crudService.callback(new HibernateCallback<Integer>() {
+			@Override
+			public Integer doInHibernate(Session session) throws HibernateException {
+				return session.createQuery("delete WorkItem where id.instance in (:ids)").setParameterList("ids", ids).executeUpdate();
+			}
+		});
+		for (StateMachineInstance instance : instances) {
+			if (!instance.isEnded()) {
+				index(instance, graph);
+			}
+		}
+	}
+
+	private void index(StateMachineInstance instance, CompiledStateMachine graph) {
+		String templateId = instance.getTemplate().getId();
+		BitSet mask = new BitSet(graph.actorCount());
+		boolean creator = false;
+		for (CompiledStateMachine.Transition transition : graph.outgoing(instance.getState().getId())) {
+			if (transition.isStarterRelated()) {
+				creator = true;
+			} else {
+				mask.or(graph.actors(transition));
+			}
+		}
+		if (creator) {
+			crudService.save(new WorkItem(instance.getId(), WorkItem.USER, instance.getCreator(), templateId, instance.getStateCode()));
+		}
+		for (String role : actorRoleCache.index(templateId, graph).roles(mask)) {
+			crudService.save(new WorkItem(instance.getId(), WorkItem.ROLE, role, templateId, instance.getStateCode()));
+		}
+	}
+
+	/**
+	 * 重建模板下全部进行中实例的索引.
+	 *
+	 * @return 处理的实例数
+	 */
+	@Transactional(propagation = REQUIRED)
+	public int rebuild(String templateId) {
+		List<StateMachineInstance> instances = crudService.hql(StateMachineInstance.class,
+				"from StateMachineInstance where template.id = ? and ended = ?", templateId, false);
+		if (instances.isEmpty()) {
+			return 0;
+		}
+		CompiledStateMachine graph = compiler.compile(instances.get(0).getTemplate().getMachine());
+		for (int from = 0; from < instances.size(); from += REBUILD_BATCH) {
+			update(instances.subList(from, Math.min(from + REBUILD_BATCH, instances.size())), graph);
+		}
+		return instances.size();
+	}
+
+	/**
+	 * 用户当前可操作的实例, 按实例ID倒序.
+	 */
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public List<StateMachineInstance> pending(final String user, final Collection<String> roles, final int firstResult, final int maxResults) {
+		return crudService.callback(new HibernateCallback<List<StateMachineInstance>>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public List<StateMachineInstance> doInHibernate(Session session) throws HibernateException {
+				Query query = session.createQuery("select i" + hql(roles) + " order by i.id desc");
+				bind(query, user, roles);
+				return query.setFirstResult(firstResult).setMaxResults(maxResults).list();
+			}
+		});
+	}
+
+	@Transactional(propagation = SUPPORTS, readOnly = true)
+	public long countPending(final String user, final Collection<String> roles) {
+		return crudService.callback(new HibernateCallback<Long>() {
+			@Override
+			public Long doInHibernate(Session session) throws HibernateException {
+				Query query = session.createQuery("select count(i)" + hql(roles));
+				bind(query, user, roles);
+				return (Long) query.uniqueResult();
+			}
+		});
+	}
+
+	private static String hql(Collection<String> roles) {
+		return roles == null || roles.isEmpty() ? PENDING + "))" : PENDING + PENDING_ROLES + "))";
+	}
+
+	private static void bind(Query query, String user, Collection<String> roles) {
+		query.setParameter("user", user);
+		if (roles != null && !roles.isEmpty()) {
+			query.setParameterList("roles", roles);
+		}
+	}
+}
@@ -38,6 +38,9 @@ import net.lc4ever.framework.domain.AuditableObject;
 @MappedSuperclass
 public abstract class AbstractStateMachineInstance extends AuditableObject<Long> {
 
+	/** actorHistory/stateHistory 列长度 */
+	public static final int HISTORY_LENGTH = 512;
+
 	protected Long id;
 
 	@Override
@@ -58,8 +61,10 @@ public abstract class AbstractStateMachineInstance extends AuditableObject<Long>
 
 	private String previousActor;
 
+	/** 参与人摘要(逗号分隔, 超长时丢弃最早的记录), 完整记录见 {@link Participation} */
 	private String actorHistory;
 
+	/** 状态摘要(逗号分隔, 超长时丢弃最早的记录), 完整记录见 {@link ActionLog} */
 	private String stateHistory;
 
 	@Column(name = "BUSINESS_ID", length = 64, nullable = false, updatable = false)
@@ -116,7 +121,7 @@ public abstract class AbstractStateMachineInstance extends AuditableObject<Long>
 		this.previousActor = previousActor;
 	}
 
-	@Column(name = "ACTOR_HISTORY", length = 512)
+	@Column(name = "ACTOR_HISTORY", length = HISTORY_LENGTH)
 	public String getActorHistory() {
 		return actorHistory;
 	}
@@ -125,7 +130,7 @@ public abstract class AbstractStateMachineInstance extends AuditableObject<Long>
 		this.actorHistory = actorHistory;
 	}
 
-	@Column(name = "STATE_HISTORY", length = 512)
+	@Column(name = "STATE_HISTORY", length = HISTORY_LENGTH)
 	public String getStateHistory() {
 		return stateHistory;
 	}
@@ -137,5 +142,20 @@ public abstract class AbstractStateMachineInstance extends AuditableObject<Long>
 	public Set<String> actors() {
 		return new HashSet<>(Arrays.asList(actorHistory.split(",")));
 	}
+
+	/**
+	 * 追加摘要记录, 超过 {@link #HISTORY_LENGTH} 时丢弃最早的记录.
+	 */
+	public static String appendHistory(String history, String value) {
+		String result = history == null || history.isEmpty() ? value : history + "," + value;
+		while (result.length() > HISTORY_LENGTH) {
+			int index = result.indexOf(',');
+			if (index < 0) {
+				return result.substring(result.length() - HISTORY_LENGTH);
+			}
+			result = result.substring(index + 1);
+		}
+		return result;
+	}
 	
 }
@@ -26,13 +26,14 @@ package net.lc4ever.framework.state.instance;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.Table;
 
 /**
  * @author q-wang
  */
 @Entity
-@Table(name = "STATE_MACHINE_LOG_ACTION_HIS")
+@Table(name = "STATE_MACHINE_LOG_ACTION_HIS", indexes = @Index(name = "IDX_STATE_MACHINE_LOG_HIS_TS", columnList = "ACTION_TIMESTAMP"))
 public class ActionLogHistory extends AbstractActionLog {
 	
 	@Override
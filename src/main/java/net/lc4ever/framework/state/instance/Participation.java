@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.instance;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import net.lc4ever.framework.domain.BaseEntity;
+
+/**
+ * 流程参与记录, 每个实例每个参与人(含创建人)一条, 主键(实例, 用户), 另按用户建索引.
+ * <p>
+ * 归档时保留, 可查询用户参与过的全部实例.
+ *
+ * @author q-wang
+ */
+@Entity
+@Table(name = "STATE_MACHINE_PARTICIPATION", indexes = @Index(name = "IDX_STATE_MACHINE_PART_USER", columnList = "USER_ID"))
+public class Participation implements BaseEntity<Participation.ID> {
+
+	@Embeddable
+	public static class ID implements Serializable {
+
+		private Long instance;
+
+		private String user;
+
+		public ID() {
+		}
+
+		public ID(Long instance, String user) {
+			this.instance = instance;
+			this.user = user;
+		}
+
+		@Column(name = "INSTANCE", precision = 19, nullable = false)
+		public Long getInstance() {
+			return instance;
+		}
+
+		public void setInstance(Long instance) {
+			this.instance = instance;
+		}
+
+		@Column(name = "USER_ID", length = 64, nullable = false)
+		public String getUser() {
+			return user;
+		}
+
+		public void setUser(String user) {
+			this.user = user;
+		}
+
+		@Override
+		public String toString() {
+			return "ID [instance=" + instance + ", user=" + user + "]";
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((instance == null) ? 0 : instance.hashCode());
+			result = prime * result + ((user == null) ? 0 : user.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ID other = (ID) obj;
+			if (instance == null) {
+				if (other.instance != null)
+					return false;
+			} else if (!instance.equals(other.instance))
+				return false;
+			if (user == null) {
+				if (other.user != null)
+					return false;
+			} else if (!user.equals(other.user))
+				return false;
+			return true;
+		}
+	}
+
+	private ID id;
+
+	private Date actionTimestamp;
+
+	public Participation() {
+	}
+
+	public Participation(Long instance, String user, Date actionTimestamp) {
+		this.id = new ID(instance, user);
+		this.actionTimestamp = actionTimestamp;
+	}
+
+	@EmbeddedId
+	@Override
+	public ID getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(ID id) {
+		this.id = id;
+	}
+
+	/** 首次参与时间 */
+	@Column(name = "ACTION_TIMESTAMP", nullable = false, updatable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getActionTimestamp() {
+		return actionTimestamp;
+	}
+
+	public void setActionTimestamp(Date actionTimestamp) {
+		this.actionTimestamp = actionTimestamp;
+	}
+}
@@ -23,11 +23,13 @@
  */
 package net.lc4ever.framework.state.instance;
 
-import java.io.InputStreamReader;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.sql.Blob;
-import java.sql.SQLException;
+import java.util.Date;
 import java.util.List;
+import java.util.Set;
 
 import javax.persistence.Column;
 import javax.persistence.Entity;
@@ -41,15 +43,19 @@ import javax.persistence.ManyToOne;
 import javax.persistence.OneToMany;
 import javax.persistence.SequenceGenerator;
 import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
 import javax.persistence.Transient;
 import javax.persistence.UniqueConstraint;
+import javax.persistence.Version;
+
+import org.apache.commons.lang3.ClassUtils;
+import org.hibernate.annotations.BatchSize;
 
 import net.lc4ever.framework.state.definition.StateDefinition;
 import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+import net.lc4ever.framework.state.spi.ContextCodecs;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonIOException;
-import com.google.gson.JsonSyntaxException;
 import com.google.gson.reflect.TypeToken;
 
 /**
@@ -69,6 +75,21 @@ public class StateMachineInstance extends AbstractStateMachineInstance {
 		return id;
 	}
 
+	private Long version;
+
+	/**
+	 * 乐观锁版本, 并发越迁时后提交者抛出 {@link org.hibernate.StaleObjectStateException}.
+	 */
+	@Version
+	@Column(name = "VERSION_", precision = 19)
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 	private StateMachineTemplate template;
 
 	@ManyToOne(optional = false)
@@ -93,9 +114,25 @@ public class StateMachineInstance extends AbstractStateMachineInstance {
 		this.state = state;
 	}
 
+	private Date stateTimestamp;
+
+	/**
+	 * 进入当前状态的时间, 用于统计状态停留时长; 早于该字段的存量数据为null.
+	 */
+	@Column(name = "STATE_TIMESTAMP", nullable = true)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getStateTimestamp() {
+		return stateTimestamp;
+	}
+
+	public void setStateTimestamp(Date stateTimestamp) {
+		this.stateTimestamp = stateTimestamp;
+	}
+
 	private List<ActionLog> actionLogs;
 
 	@OneToMany(mappedBy = "instance")
+	@BatchSize(size = 20)
 	public List<ActionLog> getActionLogs() {
 		return actionLogs;
 	}
@@ -115,8 +152,45 @@ public class StateMachineInstance extends AbstractStateMachineInstance {
 		this.histories = histories;
 	}
 
+	private Set<String> participants;
+
+	/**
+	 * 已解码的参与人集合, 由 {@link net.lc4ever.framework.state.facade.StateMachineFactory} 首次使用时从 {@link Participation} 加载.
+	 */
+	@Transient
+	public Set<String> getParticipants() {
+		return participants;
+	}
+
+	public void setParticipants(Set<String> participants) {
+		this.participants = participants;
+	}
+
+	private Set<String> unsavedParticipants;
+
+	/**
+	 * 参与表启用前创建的实例中, 从 {@link #getActorHistory() 参与人摘要} 解析出但尚未写入 {@link Participation} 的参与人,
+	 * 首次登记参与时补录.
+	 */
+	@Transient
+	public Set<String> getUnsavedParticipants() {
+		return unsavedParticipants;
+	}
+
+	public void setUnsavedParticipants(Set<String> unsavedParticipants) {
+		this.unsavedParticipants = unsavedParticipants;
+	}
+
 	private Blob context;
 
+	/** 已读取的上下文内容, 避免同一请求内重复读取LOB */
+	private transient byte[] data;
+
+	/** 已解码的不可变类型上下文 */
+	private transient Type decodedType;
+
+	private transient Object decoded;
+
 	@Column(name = "CONTEXT", nullable = true)
 	@Lob
 	public Blob getContext() {
@@ -125,35 +199,48 @@ public class StateMachineInstance extends AbstractStateMachineInstance {
 
 	public void setContext(Blob context) {
 		this.context = context;
+		this.data = null;
+		this.decodedType = null;
+		this.decoded = null;
 	}
 	
+	/**
+	 * 解码上下文, LOB只读取一次. 可变类型每次调用解码出新对象, 修改不影响其它调用方; 字符串, 包装类型及枚举等不可变类型缓存解码结果.
+	 */
 	@Transient
 	public <T> T getContext(Class<T> clazz) {
-		return fromJson(clazz);
+		return decode(clazz);
 	}
 	
 	@Transient
 	public <T> T getContext(TypeToken<T> typeAddapter) {
-		if (context==null) {
-			return null;
-		}
-		return fromJson(typeAddapter.getType());
+		return decode(typeAddapter.getType());
 	}
 	
-	private <T> T fromJson(Type type) {
+	@SuppressWarnings("unchecked")
+	private <T> T decode(Type type) {
 		if (context==null) {
 			return null;
 		}
-		Gson gson = new Gson();
-		try {
-			return gson.fromJson(new InputStreamReader(context.getBinaryStream()), type);
-		} catch (JsonSyntaxException e) {
-			e.printStackTrace();
-		} catch (JsonIOException e) {
-			e.printStackTrace();
-		} catch (SQLException e) {
-			e.printStackTrace();
+		if (type.equals(decodedType)) {
+			return (T) decoded;
+		}
+		if (data == null) {
+			data = ContextCodecs.read(context);
+		}
+		T value = ContextCodecs.getCodec().decode(data, type);
+		if (immutable(type)) {
+			decoded = value;
+			decodedType = type;
+		}
+		return value;
+	}
+
+	private static boolean immutable(Type type) {
+		if (!(type instanceof Class)) {
+			return false;
 		}
-		throw new IllegalStateException(); // TODO 友好提示?
+		Class<?> clazz = (Class<?>) type;
+		return ClassUtils.isPrimitiveOrWrapper(clazz) || clazz.isEnum() || clazz == String.class || clazz == BigDecimal.class || clazz == BigInteger.class;
 	}
 }
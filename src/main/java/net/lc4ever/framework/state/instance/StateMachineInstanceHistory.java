@@ -30,6 +30,7 @@ import java.util.List;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import javax.persistence.Temporal;
@@ -39,7 +40,7 @@ import javax.persistence.TemporalType;
  * @author q-wang
  */
 @Entity
-@Table(name = "STATE_MACHINE_INSTANCE_HIS")
+@Table(name = "STATE_MACHINE_INSTANCE_HIS", indexes = @Index(name = "IDX_STATE_MACHINE_INST_HIS_TS", columnList = "ENDED_TIMESTAMP"))
 public class StateMachineInstanceHistory extends AbstractStateMachineInstance {
 
 	@Id
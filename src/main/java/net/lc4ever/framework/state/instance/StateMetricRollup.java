@@ -0,0 +1,202 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.instance;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import net.lc4ever.framework.domain.BaseEntity;
+
+/**
+ * 按(模板, 状态)汇总的流程统计, 由 {@link net.lc4ever.framework.state.facade.StateMachineMetrics#flush()} 定期写入, 每行为一个统计周期内的增量.
+ * <p>
+ * 停留时长直方图以逗号分隔存储各区间计数, 区间上限见 {@link net.lc4ever.framework.state.facade.StateMachineMetrics#BUCKETS}.
+ *
+ * @author q-wang
+ */
+@Entity
+@Table(name = "STATE_MACHINE_STATE_METRIC", indexes = @Index(name = "IDX_STATE_MACHINE_METRIC_TP", columnList = "TEMPLATE,PERIOD_END"))
+@SequenceGenerator(name = "state.machine.metric", sequenceName = "SEQ_STATE_MACHINE_METRIC")
+public class StateMetricRollup implements BaseEntity<Long> {
+
+	private Long id;
+
+	private String template;
+
+	private Long state;
+
+	private String stateCode;
+
+	private Date periodStart;
+
+	private Date periodEnd;
+
+	private long entered;
+
+	private long exited;
+
+	private long inFlight;
+
+	private long dwellCount;
+
+	private long dwellTotal;
+
+	private String histogram;
+
+	@Override
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "state.machine.metric")
+	@Column(name = "ID", precision = 19)
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	@Column(name = "TEMPLATE", length = 64, nullable = false)
+	public String getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	@Column(name = "STATE_", precision = 19, nullable = false)
+	public Long getState() {
+		return state;
+	}
+
+	public void setState(Long state) {
+		this.state = state;
+	}
+
+	@Column(name = "STATE_CODE", length = 64, nullable = false)
+	public String getStateCode() {
+		return stateCode;
+	}
+
+	public void setStateCode(String stateCode) {
+		this.stateCode = stateCode;
+	}
+
+	@Column(name = "PERIOD_START", nullable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getPeriodStart() {
+		return periodStart;
+	}
+
+	public void setPeriodStart(Date periodStart) {
+		this.periodStart = periodStart;
+	}
+
+	@Column(name = "PERIOD_END", nullable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getPeriodEnd() {
+		return periodEnd;
+	}
+
+	public void setPeriodEnd(Date periodEnd) {
+		this.periodEnd = periodEnd;
+	}
+
+	/**
+	 * 周期内进入该状态的次数.
+	 */
+	@Column(name = "ENTERED", precision = 19, nullable = false)
+	public long getEntered() {
+		return entered;
+	}
+
+	public void setEntered(long entered) {
+		this.entered = entered;
+	}
+
+	/**
+	 * 周期内离开该状态的越迁次数.
+	 */
+	@Column(name = "EXITED", precision = 19, nullable = false)
+	public long getExited() {
+		return exited;
+	}
+
+	public void setExited(long exited) {
+		this.exited = exited;
+	}
+
+	/**
+	 * 周期内停留在该状态的实例数的净变化, 各节点可直接求和.
+	 */
+	@Column(name = "IN_FLIGHT", precision = 19, nullable = false)
+	public long getInFlight() {
+		return inFlight;
+	}
+
+	public void setInFlight(long inFlight) {
+		this.inFlight = inFlight;
+	}
+
+	@Column(name = "DWELL_COUNT", precision = 19, nullable = false)
+	public long getDwellCount() {
+		return dwellCount;
+	}
+
+	public void setDwellCount(long dwellCount) {
+		this.dwellCount = dwellCount;
+	}
+
+	/**
+	 * 停留时长合计(毫秒).
+	 */
+	@Column(name = "DWELL_TOTAL", precision = 19, nullable = false)
+	public long getDwellTotal() {
+		return dwellTotal;
+	}
+
+	public void setDwellTotal(long dwellTotal) {
+		this.dwellTotal = dwellTotal;
+	}
+
+	@Column(name = "HISTOGRAM", length = 256, nullable = false)
+	public String getHistogram() {
+		return histogram;
+	}
+
+	public void setHistogram(String histogram) {
+		this.histogram = histogram;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.instance;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.SequenceGenerator;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+import javax.persistence.UniqueConstraint;
+
+import net.lc4ever.framework.domain.BaseEntity;
+
+/**
+ * 超时越迁的到期索引, 实例进入状态时按该状态出口越迁的 {@link net.lc4ever.framework.state.definition.TransitionDefinition#getTimeout() 超时} 登记,
+ * 离开状态时删除.
+ * <p>
+ * 调度节点通过租约(leaseOwner, leaseUntil)认领到期记录, 租约过期的记录可被其它节点重新认领.
+ *
+ * @author q-wang
+ */
+@Entity
+@Table(name = "STATE_MACHINE_TIMER", uniqueConstraints = @UniqueConstraint(name = "UK_STATE_MACHINE_TIMER_IT", columnNames = { "INSTANCE", "TRANSITION" }),
+		indexes = @Index(name = "IDX_STATE_MACHINE_TIMER_DUE", columnList = "DUE_TIME"))
+@SequenceGenerator(name = "state.machine.timer", sequenceName = "SEQ_STATE_MACHINE_TIMER")
+public class StateTimer implements BaseEntity<Long> {
+
+	private Long id;
+
+	private Long instance;
+
+	private Long transition;
+
+	private Date dueTime;
+
+	private String leaseOwner;
+
+	private Date leaseUntil;
+
+	public StateTimer() {
+	}
+
+	public StateTimer(Long instance, Long transition, Date dueTime) {
+		this.instance = instance;
+		this.transition = transition;
+		this.dueTime = dueTime;
+	}
+
+	@Override
+	@Id
+	@GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "state.machine.timer")
+	@Column(name = "ID", precision = 19)
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(Long id) {
+		this.id = id;
+	}
+
+	@Column(name = "INSTANCE", precision = 19, nullable = false)
+	public Long getInstance() {
+		return instance;
+	}
+
+	public void setInstance(Long instance) {
+		this.instance = instance;
+	}
+
+	@Column(name = "TRANSITION", precision = 19, nullable = false)
+	public Long getTransition() {
+		return transition;
+	}
+
+	public void setTransition(Long transition) {
+		this.transition = transition;
+	}
+
+	@Column(name = "DUE_TIME", nullable = false)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getDueTime() {
+		return dueTime;
+	}
+
+	public void setDueTime(Date dueTime) {
+		this.dueTime = dueTime;
+	}
+
+	@Column(name = "LEASE_OWNER", length = 64, nullable = true)
+	public String getLeaseOwner() {
+		return leaseOwner;
+	}
+
+	public void setLeaseOwner(String leaseOwner) {
+		this.leaseOwner = leaseOwner;
+	}
+
+	@Column(name = "LEASE_UNTIL", nullable = true)
+	@Temporal(TemporalType.TIMESTAMP)
+	public Date getLeaseUntil() {
+		return leaseUntil;
+	}
+
+	public void setLeaseUntil(Date leaseUntil) {
+		this.leaseUntil = leaseUntil;
+	}
+}
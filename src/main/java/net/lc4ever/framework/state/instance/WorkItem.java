@@ -0,0 +1,185 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.instance;
+
+import java.io.Serializable;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+import javax.persistence.EmbeddedId;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import net.lc4ever.framework.domain.BaseEntity;
+
+/**
+ * 待办索引: 进行中实例在当前状态下可操作的角色及用户, 每次越迁后重建该实例的记录.
+ * <p>
+ * 类型 {@link #ROLE} 表示持有该角色的用户可操作(已参与者及创建人除外), {@link #USER} 表示仅该用户可操作(流程创建人).
+ * 主键(实例, 类型, 操作人), 另按(操作人, 类型)建索引供待办查询.
+ *
+ * @author q-wang
+ */
+@Entity
+@Table(name = "STATE_MACHINE_WORK_ITEM", indexes = @Index(name = "IDX_STATE_MACHINE_WORK_ASSIGN", columnList = "ASSIGNEE,TYPE_"))
+public class WorkItem implements BaseEntity<WorkItem.ID> {
+
+	public static final String ROLE = "R";
+
+	public static final String USER = "U";
+
+	@Embeddable
+	public static class ID implements Serializable {
+
+		private Long instance;
+
+		private String type;
+
+		private String assignee;
+
+		public ID() {
+		}
+
+		public ID(Long instance, String type, String assignee) {
+			this.instance = instance;
+			this.type = type;
+			this.assignee = assignee;
+		}
+
+		@Column(name = "INSTANCE", precision = 19, nullable = false)
+		public Long getInstance() {
+			return instance;
+		}
+
+		public void setInstance(Long instance) {
+			this.instance = instance;
+		}
+
+		@Column(name = "TYPE_", length = 1, nullable = false)
+		public String getType() {
+			return type;
+		}
+
+		public void setType(String type) {
+			this.type = type;
+		}
+
+		@Column(name = "ASSIGNEE", length = 64, nullable = false)
+		public String getAssignee() {
+			return assignee;
+		}
+
+		public void setAssignee(String assignee) {
+			this.assignee = assignee;
+		}
+
+		@Override
+		public String toString() {
+			return "ID [instance=" + instance + ", type=" + type + ", assignee=" + assignee + "]";
+		}
+
+		@Override
+		public int hashCode() {
+			final int prime = 31;
+			int result = 1;
+			result = prime * result + ((instance == null) ? 0 : instance.hashCode());
+			result = prime * result + ((type == null) ? 0 : type.hashCode());
+			result = prime * result + ((assignee == null) ? 0 : assignee.hashCode());
+			return result;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (obj == null)
+				return false;
+			if (getClass() != obj.getClass())
+				return false;
+			ID other = (ID) obj;
+			if (instance == null) {
+				if (other.instance != null)
+					return false;
+			} else if (!instance.equals(other.instance))
+				return false;
+			if (type == null) {
+				if (other.type != null)
+					return false;
+			} else if (!type.equals(other.type))
+				return false;
+			if (assignee == null) {
+				if (other.assignee != null)
+					return false;
+			} else if (!assignee.equals(other.assignee))
+				return false;
+			return true;
+		}
+	}
+
+	private ID id;
+
+	private String template;
+
+	private String stateCode;
+
+	public WorkItem() {
+	}
+
+	public WorkItem(Long instance, String type, String assignee, String template, String stateCode) {
+		this.id = new ID(instance, type, assignee);
+		this.template = template;
+		this.stateCode = stateCode;
+	}
+
+	@EmbeddedId
+	@Override
+	public ID getId() {
+		return id;
+	}
+
+	@Override
+	public void setId(ID id) {
+		this.id = id;
+	}
+
+	@Column(name = "TEMPLATE", length = 64, nullable = false)
+	public String getTemplate() {
+		return template;
+	}
+
+	public void setTemplate(String template) {
+		this.template = template;
+	}
+
+	/** 实例当前状态 */
+	@Column(name = "STATE_CODE", length = 64, nullable = false)
+	public String getStateCode() {
+		return stateCode;
+	}
+
+	public void setStateCode(String stateCode) {
+		this.stateCode = stateCode;
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.interceptor;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * 监听器事件异步派发: 事件在事务提交后移交有界线程池执行, 事务回滚则丢弃.
+ * <p>
+ * 同一实例的事件按提交顺序串行执行, 不同实例并行; 执行失败按 {@link #setBackoffMillis(long) 退避时间} 倍增重试,
+ * 超过 {@link #setMaxAttempts(int) 最大尝试次数} 后记录错误并继续后续事件. 线程池队列已满或已关闭时丢弃该实例的待执行事件并记录错误,
+ * 不占用提交事务的线程.
+ *
+ * @author q-wang
+ */
+public class AsyncListenerDispatcher implements InitializingBean, DisposableBean {
+
+	protected final Logger logger = LoggerFactory.getLogger(getClass());
+
+	private int poolSize = 4;
+
+	private int capacity = 10000;
+
+	private int maxAttempts = 3;
+
+	private long backoffMillis = 500;
+
+	private ThreadPoolExecutor executor;
+
+	/** 实例ID -> 待执行事件, 存在即表示该实例已有任务在执行 */
+	private final Map<Long, Queue<Runnable>> pending = new HashMap<>();
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public void setCapacity(int capacity) {
+		this.capacity = capacity;
+	}
+
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	public void setBackoffMillis(long backoffMillis) {
+		this.backoffMillis = backoffMillis;
+	}
+
+	@Override
+	public void afterPropertiesSet() throws Exception {
+		final AtomicInteger sequence = new AtomicInteger();
+		executor = new ThreadPoolExecutor(poolSize, poolSize, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(capacity), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "state-machine-listener-" + sequence.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+				discard(((Drain) r).instanceId);
+			}
+		});
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		executor.shutdown();
+		if (!executor.awaitTermination(backoffMillis * maxAttempts * 2, TimeUnit.MILLISECONDS)) {
+			logger.warn("{} listener events not executed before shutdown.", executor.getQueue().size());
+		}
+	}
+
+	/**
+	 * 派发事件, 处于事务中时在事务提交后派发.
+	 */
+	public void dispatch(final Long instanceId, final Runnable event) {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					submit(instanceId, event);
+				}
+			});
+		} else {
+			submit(instanceId, event);
+		}
+	}
+
+	protected void submit(final Long instanceId, Runnable event) {
+		synchronized (pending) {
+			Queue<Runnable> queue = pending.get(instanceId);
+			if (queue != null) {
+				queue.add(event);
+				return;
+			}
+			queue = new ArrayDeque<>();
+			queue.add(event);
+			pending.put(instanceId, queue);
+		}
+		executor.execute(new Drain(instanceId));
+	}
+
+	/**
+	 * 串行执行实例的待执行事件, 异常退出时将剩余事件重新提交.
+	 */
+	protected void drain(Long instanceId) {
+		boolean drained = false;
+		try {
+			while (true) {
+				Runnable event;
+				synchronized (pending) {
+					Queue<Runnable> queue = pending.get(instanceId);
+					event = queue.poll();
+					if (event == null) {
+						pending.remove(instanceId);
+						drained = true;
+						return;
+					}
+				}
+				execute(instanceId, event);
+			}
+		} finally {
+			if (!drained) {
+				executor.execute(new Drain(instanceId));
+			}
+		}
+	}
+
+	/**
+	 * 线程池拒绝时丢弃实例的待执行事件, 使后续事件可重新派发.
+	 */
+	protected void discard(Long instanceId) {
+		Queue<Runnable> queue;
+		synchronized (pending) {
+			queue = pending.remove(instanceId);
+		}
+		logger.error("Listener executor rejected, {} events discarded for instance: {}", queue == null ? 0 : queue.size(), instanceId);
+	}
+
+	protected void execute(Long instanceId, Runnable event) {
+		long backoff = backoffMillis;
+		for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+			try {
+				event.run();
+				return;
+			} catch (RuntimeException e) {
+				logger.warn("Listener event attempt {} failed for instance: {}", attempt, instanceId, e);
+			}
+			if (attempt < maxAttempts) {
+				try {
+					Thread.sleep(backoff);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+				backoff <<= 1;
+			}
+		}
+		logger.error("Giving up listener event for instance: {}", instanceId);
+	}
+
+	private class Drain implements Runnable {
+
+		private final Long instanceId;
+
+		Drain(Long instanceId) {
+			this.instanceId = instanceId;
+		}
+
+		@Override
+		public void run() {
+			drain(instanceId);
+		}
+	}
+
+}
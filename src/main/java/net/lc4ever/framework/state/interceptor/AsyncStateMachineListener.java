@@ -0,0 +1,135 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.interceptor;
+
+import java.util.List;
+
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * 异步监听器包装: beforeCreate/beforeTransition仍同步执行以便否决越迁, 其余回调经 {@link AsyncListenerDispatcher} 在事务提交后按实例顺序执行.
+ * <p>
+ * 异步回调时实例已脱离会话, 仅可访问已加载的属性.
+ *
+ * @author q-wang
+ */
+public class AsyncStateMachineListener implements BatchStateMachineListener {
+
+	private final StateMachineListener delegate;
+
+	private final AsyncListenerDispatcher dispatcher;
+
+	public AsyncStateMachineListener(StateMachineListener delegate, AsyncListenerDispatcher dispatcher) {
+		this.delegate = delegate;
+		this.dispatcher = dispatcher;
+	}
+
+	public StateMachineListener getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public void beforeCreate(StateMachineTemplate template, String businessId) {
+		delegate.beforeCreate(template, businessId);
+	}
+
+	@Override
+	public void afterCreate(final StateMachineInstance instance) {
+		dispatcher.dispatch(instance.getId(), new Runnable() {
+			@Override
+			public void run() {
+				delegate.afterCreate(instance);
+			}
+		});
+	}
+
+	@Override
+	public void beforeTransition(TransitionDefinition transition, StateMachineInstance instance) {
+		delegate.beforeTransition(transition, instance);
+	}
+
+	@Override
+	public void afterTransition(final TransitionDefinition transition, final StateMachineInstance instance) {
+		dispatcher.dispatch(instance.getId(), new Runnable() {
+			@Override
+			public void run() {
+				delegate.afterTransition(transition, instance);
+			}
+		});
+	}
+
+	@Override
+	public void beforeTransitions(TransitionDefinition transition, List<StateMachineInstance> instances) {
+		if (delegate instanceof BatchStateMachineListener) {
+			((BatchStateMachineListener) delegate).beforeTransitions(transition, instances);
+		} else {
+			for (StateMachineInstance instance : instances) {
+				delegate.beforeTransition(transition, instance);
+			}
+		}
+	}
+
+	/**
+	 * 拆分为逐个实例的afterTransition, 保证与该实例其它事件的顺序.
+	 */
+	@Override
+	public void afterTransitions(TransitionDefinition transition, List<StateMachineInstance> instances) {
+		for (StateMachineInstance instance : instances) {
+			afterTransition(transition, instance);
+		}
+	}
+
+	@Override
+	public void onFinal(final TransitionDefinition transition, final StateMachineInstance instance) {
+		dispatcher.dispatch(instance.getId(), new Runnable() {
+			@Override
+			public void run() {
+				delegate.onFinal(transition, instance);
+			}
+		});
+	}
+
+	@Override
+	public void onTerminate(final TransitionDefinition transition, final StateMachineInstance instance) {
+		dispatcher.dispatch(instance.getId(), new Runnable() {
+			@Override
+			public void run() {
+				delegate.onTerminate(transition, instance);
+			}
+		});
+	}
+
+	@Override
+	public void onReset(final TransitionDefinition transition, final StateMachineInstance instance) {
+		dispatcher.dispatch(instance.getId(), new Runnable() {
+			@Override
+			public void run() {
+				delegate.onReset(transition, instance);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,45 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.interceptor;
+
+import java.util.List;
+
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+
+/**
+ * 支持批量越迁的监听器, 由 {@link net.lc4ever.framework.state.facade.StateMachineFactory#nextAll} 按越迁分组调用, 代替逐个实例的 before/afterTransition.
+ *
+ * @author q-wang
+ */
+public interface BatchStateMachineListener extends StateMachineListener {
+
+	/**
+	 * 抛出异常时该组实例全部记为失败.
+	 */
+	public void beforeTransitions(TransitionDefinition transition, List<StateMachineInstance> instances);
+
+	public void afterTransitions(TransitionDefinition transition, List<StateMachineInstance> instances);
+
+}
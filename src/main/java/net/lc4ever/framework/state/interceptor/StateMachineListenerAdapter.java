@@ -23,11 +23,21 @@
  */
 package net.lc4ever.framework.state.interceptor;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.hibernate.HibernateException;
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate5.HibernateCallback;
 
 import net.lc4ever.framework.service.GenericCrudService;
 import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.facade.TemplateDescriptorCache;
 import net.lc4ever.framework.state.instance.StateMachineInstance;
 import net.lc4ever.framework.state.mapper.StateMachineTemplate;
 import net.lc4ever.framework.state.spi.CurrentUserProvider;
@@ -35,7 +45,7 @@ import net.lc4ever.framework.state.spi.CurrentUserProvider;
 /**
  * @author q-wang
  */
-public class StateMachineListenerAdapter implements StateMachineListener {
+public class StateMachineListenerAdapter implements BatchStateMachineListener {
 
 	protected final Logger logger = LoggerFactory.getLogger(getClass());
 
@@ -51,6 +61,12 @@ public class StateMachineListenerAdapter implements StateMachineListener {
 		this.crudService = crudService;
 	}
 
+	protected TemplateDescriptorCache descriptorCache;
+
+	public void setDescriptorCache(TemplateDescriptorCache descriptorCache) {
+		this.descriptorCache = descriptorCache;
+	}
+
 	@Override
 	public void beforeCreate(StateMachineTemplate template, String businessId) {
 		logger.info("User: [{}] create machine using template: [{}] with businessId: [{}].",
@@ -71,14 +87,59 @@ public class StateMachineListenerAdapter implements StateMachineListener {
 		String to = transition.getToState().getCode();
 		logger.info("instance with template: [{}], businessId: [{}], state: [{}->{}]", instance.getTemplate().getId(), instance.getBusinessId(), transition.getFromState().getCode(),
 				to);
-		String templateId = instance.getTemplate().getId();
-		String callback = crudService.uniqueResultHql(String.class,
-				"select callback from TemplateCallbackMapper where id.template = ? and id.state = ?", templateId, to);
+		String callback = callback(instance.getTemplate().getId(), to);
 		if (callback != null) {
 			crudService.sqlUpdate(callback, instance.getBusinessId());
 		}
 	}
 
+	@Override
+	public void beforeTransitions(TransitionDefinition transition, List<StateMachineInstance> instances) {
+		for (StateMachineInstance instance : instances) {
+			beforeTransition(transition, instance);
+		}
+	}
+
+	/**
+	 * 同组实例的回调SQL以JDBC批量执行.
+	 */
+	@Override
+	public void afterTransitions(TransitionDefinition transition, final List<StateMachineInstance> instances) {
+		String to = transition.getToState().getCode();
+		String templateId = instances.get(0).getTemplate().getId();
+		logger.info("{} instances with template: [{}], state: [{}->{}]", instances.size(), templateId, transition.getFromState().getCode(), to);
+		final String callback = callback(templateId, to);
+		if (callback == null) {
+			return;
+		}
+		crudService.callback(new HibernateCallback<Void>() {
+			@Override
+			public Void doInHibernate(Session session) throws HibernateException {
+				session.doWork(new Work() {
+					@Override
+					public void execute(Connection connection) throws SQLException {
+						try (PreparedStatement statement = connection.prepareStatement(callback)) {
+							for (StateMachineInstance instance : instances) {
+								statement.setString(1, instance.getBusinessId());
+								statement.addBatch();
+							}
+							statement.executeBatch();
+						}
+					}
+				});
+				return null;
+			}
+		});
+	}
+
+	protected String callback(String templateId, String state) {
+		if (descriptorCache == null) {
+			return crudService.uniqueResultHql(String.class,
+					"select callback from TemplateCallbackMapper where id.template = ? and id.state = ?", templateId, state);
+		}
+		return descriptorCache.descriptor(templateId).callback(state);
+	}
+
 	@Override
 	public void onFinal(TransitionDefinition transition, StateMachineInstance instance) {
 	}
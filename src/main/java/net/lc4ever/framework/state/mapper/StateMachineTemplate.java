@@ -33,10 +33,12 @@ import javax.persistence.ManyToOne;
 import javax.persistence.Table;
 import javax.persistence.UniqueConstraint;
 
+import org.hibernate.annotations.BatchSize;
 import org.hibernate.annotations.Cache;
 import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import net.lc4ever.framework.domain.AuditableObject;
+import net.lc4ever.framework.domain.RequestCacheable;
 import net.lc4ever.framework.state.definition.StateMachineDefinition;
 
 /**
@@ -47,6 +49,8 @@ import net.lc4ever.framework.state.definition.StateMachineDefinition;
 		@UniqueConstraint(name = "UK_STATE_MACHINE_TEMPLATE_MTA", columnNames = { "MACHINE", "DATA_TYPE",
 				"ACTION_" }) })
 @Cacheable
+@RequestCacheable
+@BatchSize(size = 20)
 @Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE)
 public class StateMachineTemplate extends AuditableObject<String> {
 
@@ -0,0 +1,90 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 压缩编解码: 编码结果超过阈值时GZIP压缩, 解码时按GZIP头识别, 未压缩的数据原样交给被包装的编解码.
+ *
+ * @author q-wang
+ */
+public class CompressedContextCodec implements ContextCodec {
+
+	private final ContextCodec delegate;
+
+	private int threshold = 1024;
+
+	public CompressedContextCodec(ContextCodec delegate) {
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @param threshold 压缩阈值(字节), 默认1024
+	 */
+	public void setThreshold(int threshold) {
+		this.threshold = threshold;
+	}
+
+	@Override
+	public byte[] encode(Object context) {
+		byte[] data = delegate.encode(context);
+		if (data.length < threshold) {
+			return data;
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(data);
+		} catch (IOException e) {
+			throw new IllegalStateException("流程上下文压缩失败", e);
+		}
+		return out.toByteArray();
+	}
+
+	@Override
+	public <T> T decode(byte[] data, Type type) {
+		if (!isCompressed(data)) {
+			return delegate.decode(data, type);
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+			byte[] buffer = new byte[4096];
+			for (int read = gzip.read(buffer); read >= 0; read = gzip.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException("流程上下文解压失败", e);
+		}
+		return delegate.decode(out.toByteArray(), type);
+	}
+
+	private static boolean isCompressed(byte[] data) {
+		return data.length > 2 && data[0] == (byte) GZIPInputStream.GZIP_MAGIC && data[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.lang.reflect.Type;
+import java.sql.Blob;
+import java.sql.SQLException;
+
+/**
+ * 全局 {@link ContextCodec}, 供实体类访问(实体不受Spring管理), 默认为 {@link GsonContextCodec}.
+ *
+ * @author q-wang
+ */
+public final class ContextCodecs {
+
+	private static volatile ContextCodec codec = new GsonContextCodec();
+
+	private ContextCodecs() {
+	}
+
+	public static ContextCodec getCodec() {
+		return codec;
+	}
+
+	public static void setCodec(ContextCodec codec) {
+		ContextCodecs.codec = codec;
+	}
+
+	/**
+	 * 读取LOB并解码.
+	 */
+	public static <T> T decode(Blob blob, Type type) {
+		return codec.decode(read(blob), type);
+	}
+
+	/**
+	 * 读取LOB的全部内容.
+	 */
+	public static byte[] read(Blob blob) {
+		try {
+			return blob.getBytes(1, (int) blob.length());
+		} catch (SQLException e) {
+			throw new IllegalStateException("流程上下文读取失败", e);
+		}
+	}
+}
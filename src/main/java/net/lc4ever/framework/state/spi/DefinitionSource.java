@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * 模板, 编译定义及角色映射来源.
+ *
+ * @author q-wang
+ */
+public interface DefinitionSource {
+
+	/** 不存在时返回null */
+	StateMachineTemplate template(String templateId);
+
+	CompiledStateMachine graph(StateMachineTemplate template);
+
+	/** 按ID获取状态实体, 不存在时返回null */
+	StateDefinition state(Long stateId);
+
+	/** 按ID获取越迁实体, 不存在时返回null */
+	TransitionDefinition transition(Long transitionId);
+
+	/**
+	 * @return 持有任一角色即可担任的参与者下标集合, 见 {@link CompiledStateMachine#permits(CompiledStateMachine.Transition, BitSet)}
+	 */
+	BitSet actors(String templateId, CompiledStateMachine graph, Collection<String> roles);
+}
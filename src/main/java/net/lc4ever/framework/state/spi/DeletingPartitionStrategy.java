@@ -0,0 +1,51 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * 不支持原生分区时的实现: 按月范围整体DELETE, 依赖分区列索引.
+ *
+ * @author q-wang
+ */
+public class DeletingPartitionStrategy implements HistoryPartitionStrategy {
+
+	@Override
+	public void create(Connection connection, String table, String column, Date from, Date to) {
+	}
+
+	@Override
+	public void drop(Connection connection, String table, String column, Date from, Date to) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + table + " WHERE " + column + " >= ? AND " + column + " < ?")) {
+			statement.setTimestamp(1, new Timestamp(from.getTime()));
+			statement.setTimestamp(2, new Timestamp(to.getTime()));
+			statement.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+
+/**
+ * 基于共享 {@link Gson} 实例的JSON编解码, 兼容已存储的上下文数据.
+ * <p>
+ * 默认使用平台字符集, 与历史版本写入的数据一致. 如需改为UTF-8等固定字符集, 须先将已存储的上下文按原字符集转码,
+ * 否则非ASCII内容将无法正确读取.
+ *
+ * @author q-wang
+ */
+public class GsonContextCodec implements ContextCodec {
+
+	private final Gson gson;
+
+	private final Charset charset;
+
+	public GsonContextCodec() {
+		this(new Gson());
+	}
+
+	public GsonContextCodec(Gson gson) {
+		this(gson, Charset.defaultCharset());
+	}
+
+	public GsonContextCodec(Gson gson, Charset charset) {
+		this.gson = gson;
+		this.charset = charset;
+	}
+
+	@Override
+	public byte[] encode(Object context) {
+		return gson.toJson(context).getBytes(charset);
+	}
+
+	@Override
+	public <T> T decode(byte[] data, Type type) {
+		try {
+			return gson.fromJson(new InputStreamReader(new ByteArrayInputStream(data), charset), type);
+		} catch (JsonParseException e) {
+			throw new IllegalStateException("流程上下文解析失败, 目标类型: " + type, e);
+		}
+	}
+}
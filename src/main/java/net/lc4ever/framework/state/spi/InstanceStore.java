@@ -0,0 +1,63 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+
+/**
+ * 流程实例存储, 供 {@link net.lc4ever.framework.state.facade.StateMachineEngine} 使用.
+ * <p>
+ * 实现须随实例保存完整的 {@link StateMachineInstance#getParticipants() 参与人集合}, 并发修改按实例版本号比较并交换.
+ *
+ * @author q-wang
+ */
+public interface InstanceStore {
+
+	/** 不存在时返回null */
+	StateMachineInstance get(Long id);
+
+	/** 不存在时返回null */
+	StateMachineInstance find(String templateId, String businessId);
+
+	/**
+	 * 新增实例并分配ID, 同一模板下业务主键重复时抛出 {@link IllegalStateException}.
+	 */
+	void insert(StateMachineInstance instance);
+
+	/**
+	 * 保存越迁后的实例.
+	 *
+	 * @param event 本次越迁的日志, {@link #recordsEvents() 记录事件}的实现追加该日志并为其分配ID, 其它实现忽略
+	 * @return 实例在读取后已被其它线程修改时返回false, 调用方应重新读取后重试
+	 */
+	boolean update(StateMachineInstance instance, ActionLog event);
+
+	/**
+	 * @return 是否由 {@link #update(StateMachineInstance, ActionLog)} 记录越迁日志, 为true时调用方不应再追加到日志存储
+	 */
+	boolean recordsEvents();
+
+	void remove(Long id);
+}
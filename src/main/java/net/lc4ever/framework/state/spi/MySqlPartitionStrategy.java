@@ -0,0 +1,87 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import net.lc4ever.framework.format.DateFormatter;
+
+/**
+ * MySQL范围分区, 分区名为p+年月, 历史表需按分区列建为(主键需包含分区列):
+ *
+ * <pre>
+ * PARTITION BY RANGE COLUMNS (ACTION_TIMESTAMP) (PARTITION pmax VALUES LESS THAN (MAXVALUE))
+ * </pre>
+ *
+ * 新分区由pmax拆分得到.
+ *
+ * @author q-wang
+ */
+public class MySqlPartitionStrategy implements HistoryPartitionStrategy {
+
+	private static final String MAX_PARTITION = "pmax";
+
+	@Override
+	public void create(Connection connection, String table, String column, Date from, Date to) throws SQLException {
+		String partition = partition(from);
+		if (exists(connection, table, partition)) {
+			return;
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE " + table + " REORGANIZE PARTITION " + MAX_PARTITION + " INTO (PARTITION " + partition + " VALUES LESS THAN ('"
+					+ DateFormatter.yyyy_MM_dd(to) + "'), PARTITION " + MAX_PARTITION + " VALUES LESS THAN (MAXVALUE))");
+		}
+	}
+
+	@Override
+	public void drop(Connection connection, String table, String column, Date from, Date to) throws SQLException {
+		String partition = partition(from);
+		if (!exists(connection, table, partition)) {
+			return;
+		}
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE " + table + " DROP PARTITION " + partition);
+		}
+	}
+
+	protected String partition(Date month) {
+		return "p" + DateFormatter.format("yyyyMM", month);
+	}
+
+	protected boolean exists(Connection connection, String table, String partition) throws SQLException {
+		try (PreparedStatement statement = connection.prepareStatement(
+				"SELECT COUNT(*) FROM INFORMATION_SCHEMA.PARTITIONS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME = ?")) {
+			statement.setString(1, table);
+			statement.setString(2, partition);
+			try (ResultSet rs = statement.executeQuery()) {
+				return rs.next() && rs.getLong(1) > 0;
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Date;
+
+import net.lc4ever.framework.format.DateFormatter;
+
+/**
+ * Oracle间隔分区, 历史表需按分区列建为:
+ *
+ * <pre>
+ * PARTITION BY RANGE (ACTION_TIMESTAMP) INTERVAL (NUMTOYMINTERVAL(1, 'MONTH')) (PARTITION P0 VALUES LESS THAN (TIMESTAMP '2000-01-01 00:00:00'))
+ * </pre>
+ *
+ * 分区由数据库自动创建, 删除时同步维护全局索引.
+ *
+ * @author q-wang
+ */
+public class OraclePartitionStrategy implements HistoryPartitionStrategy {
+
+	/** ORA-02149: Specified partition does not exist */
+	private static final int PARTITION_NOT_EXISTS = 2149;
+
+	@Override
+	public void create(Connection connection, String table, String column, Date from, Date to) {
+	}
+
+	@Override
+	public void drop(Connection connection, String table, String column, Date from, Date to) throws SQLException {
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("ALTER TABLE " + table + " DROP PARTITION FOR (TIMESTAMP '" + DateFormatter.format(DateFormatter.PATTERN_yyyy_MM_dd_HH_mm_ss, from)
+					+ "') UPDATE GLOBAL INDEXES");
+		} catch (SQLException e) {
+			if (e.getErrorCode() != PARTITION_NOT_EXISTS) {
+				throw e;
+			}
+		}
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.cglib.beans;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+
+import org.junit.Test;
+
+import net.lc4ever.framework.cglib.ToStringBuilderTestBean;
+
+/**
+ * @author q-wang
+ */
+public class DirtyCheckerTest {
+
+	private static final Class<?>[] TYPES = { int.class, String.class, Date.class, BigDecimal.class, int[].class, Object.class, Object.class };
+
+	private static final int[] MODES = { DirtyChecker.VALUE, DirtyChecker.VALUE, DirtyChecker.VALUE, DirtyChecker.VALUE, DirtyChecker.VALUE,
+			DirtyChecker.IDENTITY, DirtyChecker.SKIP };
+
+	private final DirtyChecker<ToStringBuilderTestBean> checker = DirtyChecker.create(ToStringBuilderTestBean.class, TYPES, MODES);
+
+	private static Object[] state() {
+		return new Object[] { 1, "string", new Date(1000L), new BigDecimal("1.0"), new int[] { 1, 2 }, "entity", "collection" };
+	}
+
+	@Test
+	public void unchanged() {
+		assertArrayEquals(new int[0], checker.findDirty(state(), state()));
+	}
+
+	@Test
+	public void primitiveAndEquals() {
+		Object[] current = state();
+		current[0] = 2;
+		current[1] = "changed";
+		assertArrayEquals(new int[] { 0, 1 }, checker.findDirty(current, state()));
+	}
+
+	@Test
+	public void comparableIgnoresRepresentation() {
+		Object[] current = state();
+		current[2] = new Timestamp(1000L);
+		current[3] = new BigDecimal("1.00");
+		assertArrayEquals(new int[0], checker.findDirty(current, state()));
+		current[3] = new BigDecimal("1.01");
+		assertArrayEquals(new int[] { 3 }, checker.findDirty(current, state()));
+	}
+
+	@Test
+	public void arraysComparedByElement() {
+		Object[] current = state();
+		current[4] = new int[] { 1, 2 };
+		assertArrayEquals(new int[0], checker.findDirty(current, state()));
+		current[4] = new int[] { 2, 1 };
+		assertArrayEquals(new int[] { 4 }, checker.findDirty(current, state()));
+	}
+
+	@Test
+	public void identityAndSkip() {
+		Object[] current = state();
+		Object[] previous = state();
+		current[5] = new String("entity");
+		current[6] = "changed";
+		assertArrayEquals(new int[] { 5 }, checker.findDirty(current, previous));
+	}
+
+	@Test
+	public void nulls() {
+		Object[] current = state();
+		Object[] previous = state();
+		current[1] = null;
+		current[2] = null;
+		previous[2] = null;
+		current[3] = null;
+		assertArrayEquals(new int[] { 1, 3 }, checker.findDirty(current, previous));
+	}
+
+	@Test
+	public void cachedByTypesAndModes() {
+		assertSame(checker.getClass(), DirtyChecker.create(ToStringBuilderTestBean.class, TYPES, MODES).getClass());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void lengthMismatch() {
+		DirtyChecker.create(ToStringBuilderTestBean.class, TYPES, new int[] { DirtyChecker.VALUE });
+	}
+}
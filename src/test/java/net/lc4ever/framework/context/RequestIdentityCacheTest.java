@@ -0,0 +1,100 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.context;
+
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.lc4ever.framework.dao.GenericDao;
+import net.lc4ever.framework.service.impl.GenericCrudServiceImpl;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class RequestIdentityCacheTest {
+
+	private GenericDao genericDao;
+
+	private GenericCrudServiceImpl crudService;
+
+	private StateMachineTemplate template;
+
+	@Before
+	public void setUp() {
+		genericDao = mock(GenericDao.class);
+		crudService = new GenericCrudServiceImpl();
+		crudService.setGenericDao(genericDao);
+		template = new StateMachineTemplate();
+		template.setId("T1");
+		doReturn(template).when(genericDao).get(StateMachineTemplate.class, "T1");
+	}
+
+	@After
+	public void tearDown() {
+		ContextHolder.clearThreadAttributes();
+	}
+
+	@Test
+	public void loadedOncePerRequest() {
+		ContextHolder.initThreadContext();
+		// 两次SUPPORTS调用各自使用独立的Session, 第二次返回第一次加载的(已游离的)实例
+		assertSame(template, crudService.get(StateMachineTemplate.class, "T1"));
+		assertSame(template, crudService.get(StateMachineTemplate.class, "T1"));
+		verify(genericDao, times(1)).get(StateMachineTemplate.class, "T1");
+	}
+
+	@Test
+	public void updateEvicts() {
+		ContextHolder.initThreadContext();
+		crudService.get(StateMachineTemplate.class, "T1");
+		crudService.update(template);
+		crudService.get(StateMachineTemplate.class, "T1");
+		verify(genericDao, times(2)).get(StateMachineTemplate.class, "T1");
+	}
+
+	@Test
+	public void notCachedWithoutContext() {
+		crudService.get(StateMachineTemplate.class, "T1");
+		crudService.get(StateMachineTemplate.class, "T1");
+		verify(genericDao, times(2)).get(StateMachineTemplate.class, "T1");
+	}
+
+	@Test
+	public void clearedWithContext() {
+		ContextHolder.initThreadContext();
+		crudService.get(StateMachineTemplate.class, "T1");
+		ContextHolder.clearThreadAttributes();
+		ContextHolder.initThreadContext();
+		crudService.get(StateMachineTemplate.class, "T1");
+		verify(genericDao, times(2)).get(StateMachineTemplate.class, "T1");
+	}
+}
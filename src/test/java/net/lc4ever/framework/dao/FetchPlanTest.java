@@ -0,0 +1,70 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @author q-wang
+ */
+public class FetchPlanTest {
+
+	@Test
+	public void exclusiveKinds() {
+		FetchPlan profile = FetchPlan.profile("definition-full");
+		assertEquals("definition-full", profile.getProfile());
+		assertNull(profile.getGraph());
+		assertNull(profile.getPaths());
+
+		FetchPlan graph = FetchPlan.graph("StateMachineDefinition.states");
+		assertEquals("StateMachineDefinition.states", graph.getGraph());
+		assertNull(graph.getProfile());
+		assertNull(graph.getPaths());
+	}
+
+	@Test
+	public void pathsAreCopied() {
+		String[] paths = { "transitions", "transitions.actors" };
+		FetchPlan plan = FetchPlan.paths(paths);
+		paths[0] = "states";
+		assertArrayEquals(new String[] { "transitions", "transitions.actors" }, plan.getPaths());
+		plan.getPaths()[1] = "actors";
+		assertArrayEquals(new String[] { "transitions", "transitions.actors" }, plan.getPaths());
+		assertEquals("FetchPlan[paths=[transitions, transitions.actors]]", plan.toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void emptyPaths() {
+		FetchPlan.paths();
+	}
+
+	@Test(expected = NullPointerException.class)
+	public void nullProfile() {
+		FetchPlan.profile(null);
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import org.hibernate.type.BasicType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.junit.Test;
+
+/**
+ * @author q-wang
+ */
+public class DirtyCheckingInterceptorTest {
+
+	public static class Owner {
+	}
+
+	public static class Sample {
+
+		private String name;
+
+		private Owner owner;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public Owner getOwner() {
+			return owner;
+		}
+
+		public void setOwner(Owner owner) {
+			this.owner = owner;
+		}
+	}
+
+	private static final String[] PROPERTIES = { "name", "owner" };
+
+	private final DirtyCheckingInterceptor interceptor = new DirtyCheckingInterceptor();
+
+	private static Type[] types() {
+		BasicType name = mock(BasicType.class);
+		doReturn(String.class).when(name).getReturnedClass();
+		EntityType owner = mock(EntityType.class);
+		when(owner.isEntityType()).thenReturn(true);
+		return new Type[] { name, owner };
+	}
+
+	private int[] findDirty(Object[] current, Object[] previous) {
+		return interceptor.findDirty(new Sample(), 1L, current, previous, PROPERTIES, types());
+	}
+
+	@Test
+	public void sameAssociation() {
+		Owner owner = new Owner();
+		assertArrayEquals(new int[0], findDirty(new Object[] { "a", owner }, new Object[] { "a", owner }));
+		assertArrayEquals(new int[] { 0 }, findDirty(new Object[] { "b", owner }, new Object[] { "a", owner }));
+	}
+
+	@Test
+	public void otherAssociationDeferredToHibernate() {
+		// 代理与实体或merge后的实例引用不同, 标识可能相同, 由Hibernate比较
+		assertNull(findDirty(new Object[] { "a", new Owner() }, new Object[] { "a", new Owner() }));
+	}
+
+	@Test
+	public void withoutSnapshot() {
+		assertNull(findDirty(new Object[] { "a", null }, null));
+	}
+}
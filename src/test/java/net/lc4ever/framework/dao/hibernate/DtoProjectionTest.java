@@ -0,0 +1,207 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Metamodel;
+import org.hibernate.SessionFactory;
+import org.junit.Test;
+
+/**
+ * @author q-wang
+ */
+public class DtoProjectionTest {
+
+	public static class Sample {
+	}
+
+	public static class SampleDto {
+
+		private Long id;
+
+		private String name;
+
+		private int count;
+
+		private String remark;
+
+		private Integer owner;
+
+		public Long getId() {
+			return id;
+		}
+
+		public void setId(Long id) {
+			this.id = id;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public String getRemark() {
+			return remark;
+		}
+
+		public void setRemark(String remark) {
+			this.remark = remark;
+		}
+
+		public Integer getOwner() {
+			return owner;
+		}
+
+		public void setOwner(Integer owner) {
+			this.owner = owner;
+		}
+	}
+
+	public static class NameDto {
+
+		private String name;
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+	}
+
+	public static class UnrelatedDto {
+
+		private String remark;
+
+		public String getRemark() {
+			return remark;
+		}
+
+		public void setRemark(String remark) {
+			this.remark = remark;
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private static Attribute attribute(String name, Class<?> javaType, PersistentAttributeType type) {
+		Attribute attribute = mock(Attribute.class);
+		when(attribute.getName()).thenReturn(name);
+		when(attribute.isCollection()).thenReturn(type == PersistentAttributeType.ONE_TO_MANY);
+		when(attribute.getPersistentAttributeType()).thenReturn(type);
+		doReturn(javaType).when(attribute).getJavaType();
+		return attribute;
+	}
+
+	private static SessionFactory sessionFactory() {
+		EntityType<?> entityType = mock(EntityType.class);
+		when(entityType.getName()).thenReturn("Sample");
+		doReturn(new HashSet<>(Arrays.asList(attribute("id", Long.class, PersistentAttributeType.BASIC),
+				attribute("name", String.class, PersistentAttributeType.BASIC), attribute("count", Integer.class, PersistentAttributeType.BASIC),
+				attribute("owner", Sample.class, PersistentAttributeType.MANY_TO_ONE), attribute("items", List.class, PersistentAttributeType.ONE_TO_MANY))))
+						.when(entityType).getAttributes();
+		Metamodel metamodel = mock(Metamodel.class);
+		doReturn(entityType).when(metamodel).entity(Sample.class);
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		doReturn(metamodel).when(sessionFactory).getMetamodel();
+		return sessionFactory;
+	}
+
+	@Test
+	public void matchesBasicAttributesByNameAndType() {
+		DtoProjection<SampleDto> projection = DtoProjection.create(sessionFactory(), Sample.class, SampleDto.class);
+		assertEquals(new HashSet<>(Arrays.asList("id", "name", "count")), new HashSet<>(Arrays.asList(projection.getProperties())));
+
+		StringBuilder select = new StringBuilder("select ");
+		String[] properties = projection.getProperties();
+		for (int i = 0; i < properties.length; i++) {
+			select.append(i > 0 ? ", " : "").append("e.").append(properties[i]);
+		}
+		assertEquals(select.append(" from Sample e").toString(), projection.getSelect());
+	}
+
+	@Test
+	public void transformsRows() {
+		DtoProjection<SampleDto> projection = DtoProjection.create(sessionFactory(), Sample.class, SampleDto.class);
+		String[] properties = projection.getProperties();
+		Object[] row = new Object[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			row[i] = "id".equals(properties[i]) ? (Object) 7L : "name".equals(properties[i]) ? "seven" : (Object) 3;
+		}
+		List<SampleDto> dtos = projection.transform(Collections.singletonList(row));
+		assertEquals(1, dtos.size());
+		assertEquals(Long.valueOf(7L), dtos.get(0).getId());
+		assertEquals("seven", dtos.get(0).getName());
+		assertEquals(3, dtos.get(0).getCount());
+	}
+
+	@Test
+	public void nullPrimitiveColumnsDefaultToZero() {
+		DtoProjection<SampleDto> projection = DtoProjection.create(sessionFactory(), Sample.class, SampleDto.class);
+		Object[] row = new Object[projection.getProperties().length];
+		List<SampleDto> dtos = projection.transform(Collections.singletonList(row));
+		assertNull(dtos.get(0).getId());
+		assertNull(dtos.get(0).getName());
+		assertEquals(0, dtos.get(0).getCount());
+	}
+
+	@Test
+	public void singleColumnRowsAreScalars() {
+		DtoProjection<NameDto> projection = DtoProjection.create(sessionFactory(), Sample.class, NameDto.class);
+		assertEquals("select e.name from Sample e", projection.getSelect());
+		List<NameDto> dtos = projection.transform(Arrays.asList("a", "b"));
+		assertEquals("a", dtos.get(0).getName());
+		assertEquals("b", dtos.get(1).getName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void noCommonProperties() {
+		DtoProjection.create(sessionFactory(), Sample.class, UnrelatedDto.class);
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.dao.hibernate;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.BeanFactory;
+
+import net.lc4ever.framework.domain.PathTreeObject;
+
+/**
+ * @author q-wang
+ */
+public class TreePathInterceptorTest {
+
+	public static class Node extends PathTreeObject<Long, Node> {
+
+		private static final long serialVersionUID = 1L;
+
+		private Long id;
+
+		private Node parent;
+
+		public Node(Long id, Node parent) {
+			this.id = id;
+			this.parent = parent;
+		}
+
+		@Override
+		public Long getId() {
+			return id;
+		}
+
+		@Override
+		public void setId(Long id) {
+			this.id = id;
+		}
+
+		@Override
+		public Node parent() {
+			return parent;
+		}
+
+		public void setParent(Node parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public Collection<Node> children() {
+			return Collections.emptyList();
+		}
+	}
+
+	private static final String[] PROPERTIES = { "name", "treePath", "treeLevel" };
+
+	private final TreePathInterceptor interceptor = new TreePathInterceptor();
+
+	@Before
+	public void setUp() {
+		BeanFactory beanFactory = mock(BeanFactory.class);
+		SessionFactory sessionFactory = mock(SessionFactory.class);
+		Session session = mock(Session.class, RETURNS_DEEP_STUBS);
+		when(beanFactory.getBean(SessionFactory.class)).thenReturn(sessionFactory);
+		when(sessionFactory.getCurrentSession()).thenReturn(session);
+		interceptor.setBeanFactory(beanFactory);
+	}
+
+	@After
+	public void tearDown() {
+		interceptor.afterTransactionCompletion(null);
+	}
+
+	private static Node node(Long id, Node parent) {
+		Node node = new Node(id, parent);
+		node.setTreePath(parent == null ? "/" + id + "/" : parent.getTreePath() + id + "/");
+		node.setTreeLevel(parent == null ? 0 : parent.getTreeLevel() + 1);
+		return node;
+	}
+
+	@Test
+	public void like() {
+		assertEquals("/1/5/%", TreePathInterceptor.like("/1/5/"));
+		assertEquals("/a!_b/!%/c!!d/%", TreePathInterceptor.like("/a_b/%/c!d/"));
+	}
+
+	@Test
+	public void onSave() {
+		Node root = new Node(1L, null);
+		Object[] state = { "root", null, 0 };
+		assertTrue(interceptor.onSave(root, 1L, state, PROPERTIES, null));
+		assertArrayEquals(new Object[] { "root", "/1/", 0 }, state);
+
+		Node child = new Node(5L, root);
+		state = new Object[] { "child", null, 0 };
+		assertTrue(interceptor.onSave(child, 5L, state, PROPERTIES, null));
+		assertArrayEquals(new Object[] { "child", "/1/5/", 1 }, state);
+		assertEquals("/1/5/", child.getTreePath());
+		assertEquals(1, child.getTreeLevel());
+
+		assertFalse(interceptor.onSave("not a tree", 1L, new Object[0], new String[0], null));
+	}
+
+	@Test
+	public void unchangedParent() {
+		Node root = node(1L, null);
+		Node child = node(5L, root);
+		Object[] previous = { "child", "/1/5/", 1 };
+		assertFalse(interceptor.onFlushDirty(child, 5L, previous.clone(), previous, PROPERTIES, null));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void moveIntoOwnSubtree() {
+		Node root = node(1L, null);
+		Node child = node(5L, root);
+		Node grandChild = node(9L, child);
+		child.setParent(grandChild);
+		Object[] previous = { "child", "/1/5/", 1 };
+		interceptor.onFlushDirty(child, 5L, previous.clone(), previous, PROPERTIES, null);
+	}
+
+	@Test
+	public void moveRewritesLoadedDescendants() {
+		Node root = node(1L, null);
+		Node other = node(2L, null);
+		Node child = node(5L, root);
+		Node grandChild = node(9L, child);
+		Node sibling = node(6L, root);
+
+		child.setParent(other);
+		Object[] previous = { "child", "/1/5/", 1 };
+		Object[] current = previous.clone();
+		assertTrue(interceptor.onFlushDirty(child, 5L, current, previous, PROPERTIES, null));
+		assertArrayEquals(new Object[] { "child", "/2/5/", 1 }, current);
+
+		interceptor.postFlush(Arrays.asList(root, other, child, grandChild, sibling).iterator());
+		assertEquals("/2/5/9/", grandChild.getTreePath());
+		assertEquals(2, grandChild.getTreeLevel());
+		assertEquals("/1/6/", sibling.getTreePath());
+		assertEquals("/2/5/", child.getTreePath());
+	}
+
+	@Test
+	public void moveChangesDepth() {
+		Node root = node(1L, null);
+		Node child = node(5L, root);
+		Node grandChild = node(9L, child);
+		Node leaf = node(12L, grandChild);
+
+		grandChild.setParent(root);
+		Object[] previous = { "grandChild", "/1/5/9/", 2 };
+		assertTrue(interceptor.onFlushDirty(grandChild, 9L, previous.clone(), previous, PROPERTIES, null));
+		interceptor.postFlush(Arrays.asList(leaf).iterator());
+		assertEquals("/1/9/12/", leaf.getTreePath());
+		assertEquals(2, leaf.getTreeLevel());
+	}
+}
@@ -115,6 +115,9 @@ public abstract class AbstractStateMachineTest extends AbstractTransactionalJUni
 			jdbcTemplate.update("delete state_machine_log_action_his");
 			jdbcTemplate.update("delete state_machine_instance");
 			jdbcTemplate.update("delete state_machine_instance_his");
+			jdbcTemplate.update("delete state_machine_participation");
+			jdbcTemplate.update("delete state_machine_work_item");
+			jdbcTemplate.update("delete state_machine_timer");
 			// mapping
 			jdbcTemplate.update("delete state_machine_mapper_template");
 			jdbcTemplate.update("delete state_machine_mapper_iptr");
@@ -0,0 +1,114 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class ActorRoleIndexTest {
+
+	private StateMachineTemplate template;
+
+	private CompiledStateMachine graph;
+
+	private ActorRoleIndex index;
+
+	@Before
+	public void setUp() {
+		template = DefinitionFixture.template(2);
+		graph = CompiledStateMachine.compile(template.getMachine());
+		List<Object[]> rows = new ArrayList<>(DefinitionFixture.roleActors(template));
+		rows.add(new Object[] { "ROLE_SHARED", DefinitionFixture.actorId(template, "APPROVER1") });
+		rows.add(new Object[] { "ROLE_SHARED", DefinitionFixture.actorId(template, "APPROVER2") });
+		rows.add(new Object[] { "ROLE_OTHER", 9999L }); // 其它定义的参与者
+		index = new ActorRoleIndex(DefinitionFixture.TEMPLATE, graph, rows);
+	}
+
+	private int actor(String code) {
+		return graph.actorIndex(DefinitionFixture.actorId(template, code));
+	}
+
+	@Test
+	public void actorsOfRoles() {
+		BitSet actors = index.actors(Arrays.asList("ROLE_APPROVER1"));
+		assertEquals(1, actors.cardinality());
+		assertTrue(actors.get(actor("APPROVER1")));
+
+		actors = index.actors(Arrays.asList("ROLE_SHARED", "ROLE_UNKNOWN"));
+		assertEquals(2, actors.cardinality());
+		assertTrue(actors.get(actor("APPROVER1")));
+		assertTrue(actors.get(actor("APPROVER2")));
+
+		assertTrue(index.actors(null).isEmpty());
+		assertTrue(index.actors(Arrays.asList("ROLE_OTHER")).isEmpty());
+	}
+
+	@Test
+	public void rolesOfActors() {
+		BitSet actors = new BitSet();
+		actors.set(actor("APPROVER1"));
+		actors.set(actor("CREATOR"));
+		assertEquals(new HashSet<>(Arrays.asList("ROLE_APPROVER1", "ROLE_SHARED", "ROLE_CREATOR")), index.roles(actors));
+		assertEquals(new HashSet<>(Arrays.asList("ROLE_APPROVER2", "ROLE_SHARED")), index.roles(actor("APPROVER2")));
+		assertEquals(Collections.emptySet(), index.roles(graph.actorCount() + 1));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void actorRolesAreReadOnly() {
+		index.roles(actor("APPROVER1")).add("ROLE_ADDED");
+	}
+
+	@Test
+	public void permitsThroughGraph() {
+		Long w1 = null;
+		for (CompiledStateMachine.State state : graph.states()) {
+			if ("W1".equals(state.getCode())) {
+				w1 = state.getId();
+			}
+		}
+		CompiledStateMachine.Transition approve1 = graph.transition(w1, "APPROVE1");
+		CompiledStateMachine.Transition reject = graph.transition(w1, "REJECT");
+		assertTrue(graph.permits(approve1, index.actors(Arrays.asList("ROLE_SHARED"))));
+		assertFalse(graph.permits(reject, index.actors(Arrays.asList("ROLE_SHARED"))));
+		assertTrue(reject.isStarterRelated());
+		assertTrue(graph.permits(reject, index.actors(Arrays.asList("ROLE_CREATOR"))));
+	}
+}
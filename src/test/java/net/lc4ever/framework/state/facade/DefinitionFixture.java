@@ -0,0 +1,120 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import net.lc4ever.framework.state.definition.ActorDefinition;
+import net.lc4ever.framework.state.definition.StartStateDefinition;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * 不持久化的多级审批定义, ID按顺序手工分配:
+ * EDIT -COMMIT-> W1 -APPROVE1-> W2 ... -APPROVEn-> DONE, 另有 W1 -REJECT-> EDIT.
+ * 参与者CREATOR负责COMMIT及REJECT, APPROVERi负责APPROVEi, 角色映射为 "ROLE_" + 参与者代码.
+ *
+ * @author q-wang
+ */
+final class DefinitionFixture {
+
+	static final String TEMPLATE = "FIXTURE";
+
+	private DefinitionFixture() {
+	}
+
+	static StateMachineTemplate template(int steps) {
+		long id = 0;
+		StateMachineDefinition definition = new StateMachineDefinition();
+		definition.setId(TEMPLATE);
+
+		StartStateDefinition start = definition.createStartState();
+		start.setId(++id);
+		start.setCode("EDIT");
+		ActorDefinition creator = definition.createActor();
+		creator.setId(++id);
+		creator.setCode("CREATOR");
+		creator.setAvailableTransitions(new HashSet<TransitionDefinition>());
+
+		StateDefinition previous = start;
+		for (int i = 0; i <= steps; i++) {
+			StateDefinition state = i == steps ? definition.createFinalState() : definition.createState();
+			state.setId(++id);
+			state.setCode(i == steps ? "DONE" : "W" + (i + 1));
+
+			TransitionDefinition transition = previous.createOutgoing(state);
+			transition.setId(++id);
+			transition.setCode(i == 0 ? "COMMIT" : "APPROVE" + i);
+
+			ActorDefinition actor = creator;
+			if (i > 0) {
+				actor = definition.createActor();
+				actor.setId(++id);
+				actor.setCode("APPROVER" + i);
+				actor.setAvailableTransitions(new HashSet<TransitionDefinition>());
+			}
+			actor.getAvailableTransitions().add(transition);
+			transition.setActors(new ArrayList<>(Arrays.asList(actor)));
+
+			if (i == 1) {
+				TransitionDefinition reject = previous.createOutgoing(start);
+				reject.setId(++id);
+				reject.setCode("REJECT");
+				reject.setActors(new ArrayList<>(Arrays.asList(creator)));
+				creator.getAvailableTransitions().add(reject);
+			}
+			previous = state;
+		}
+
+		StateMachineTemplate template = new StateMachineTemplate();
+		template.setId(TEMPLATE);
+		template.setMachine(definition);
+		return template;
+	}
+
+	/**
+	 * @return 每个参与者一行 [ "ROLE_" + 参与者代码, 参与者ID ]
+	 */
+	static List<Object[]> roleActors(StateMachineTemplate template) {
+		List<Object[]> rows = new ArrayList<>();
+		for (ActorDefinition actor : template.getMachine().getActors()) {
+			rows.add(new Object[] { "ROLE_" + actor.getCode(), actor.getId() });
+		}
+		return rows;
+	}
+
+	static Long actorId(StateMachineTemplate template, String code) {
+		for (ActorDefinition actor : template.getMachine().getActors()) {
+			if (actor.getCode().equals(code)) {
+				return actor.getId();
+			}
+		}
+		throw new IllegalArgumentException(code);
+	}
+}
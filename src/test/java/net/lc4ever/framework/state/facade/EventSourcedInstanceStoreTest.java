@@ -0,0 +1,187 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class EventSourcedInstanceStoreTest {
+
+	private static final String T = DefinitionFixture.TEMPLATE;
+
+	private InMemoryDefinitionSource definitions;
+
+	private EventSourcedInstanceStore store;
+
+	private StateMachineEngine engine;
+
+	@Before
+	public void setUp() {
+		StateMachineTemplate template = DefinitionFixture.template(3);
+		definitions = new InMemoryDefinitionSource();
+		definitions.register(template, DefinitionFixture.roleActors(template));
+		store = new EventSourcedInstanceStore();
+		store.setDefinitions(definitions);
+		store.setSnapshotInterval(2);
+		engine = new StateMachineEngine();
+		engine.setInstances(store);
+		engine.setLogs(store);
+		engine.setDefinitions(definitions);
+	}
+
+	private void approve(String businessId, int steps) {
+		engine.next(T, businessId, "COMMIT", "alice", null, null);
+		for (int i = 1; i <= steps; i++) {
+			engine.next(T, businessId, "APPROVE" + i, "approver" + i, Arrays.asList("ROLE_APPROVER" + i), null);
+		}
+	}
+
+	@Test
+	public void replayAcrossSnapshots() {
+		assertTrue(store.recordsEvents());
+		engine.create(T, "B1", "alice");
+		approve("B1", 3);
+
+		StateMachineInstance instance = store.find(T, "B1");
+		assertEquals("DONE", instance.getStateCode());
+		assertTrue(instance.isEnded());
+		assertEquals(Long.valueOf(4), instance.getVersion());
+		assertEquals("EDIT,W1,W2,W3,DONE", instance.getStateHistory());
+
+		List<ActionLog> events = store.logs(instance.getId());
+		assertEquals(4, events.size());
+		for (int i = 0; i < events.size(); i++) {
+			assertNotNull(events.get(i).getId());
+		}
+		assertEquals("alice", events.get(0).getActor());
+		assertEquals("approver3", events.get(3).getActor());
+	}
+
+	@Test
+	public void replayBetweenSnapshots() {
+		engine.create(T, "B1", "alice");
+		approve("B1", 2);
+		StateMachineInstance instance = store.find(T, "B1");
+		assertEquals("W3", instance.getStateCode());
+		assertEquals(Long.valueOf(3), instance.getVersion());
+		assertTrue(instance.getParticipants().containsAll(Arrays.asList("alice", "approver1", "approver2")));
+	}
+
+	@Test
+	public void appendIsATransition() {
+		StateMachineInstance instance = engine.create(T, "B1", "alice");
+		CompiledStateMachine graph = definitions.graph(instance.getTemplate());
+		CompiledStateMachine.Transition commit = graph.transition(instance.getState().getId(), "COMMIT");
+
+		ActionLog event = new ActionLog();
+		event.setInstance(instance.getId());
+		event.setActor("alice");
+		event.setTransition(commit.getId());
+		event.setFromState(commit.getFromState().getId());
+		event.setToState(commit.getToState().getId());
+		store.append(event);
+
+		assertNotNull(event.getId());
+		assertEquals("W1", store.get(instance.getId()).getStateCode());
+		assertEquals(1, store.logs(instance.getId()).size());
+	}
+
+	@Test
+	public void eventsAreCopies() {
+		StateMachineInstance instance = engine.create(T, "B1", "alice");
+		CompiledStateMachine graph = definitions.graph(instance.getTemplate());
+		CompiledStateMachine.Transition commit = graph.transition(instance.getState().getId(), "COMMIT");
+
+		ActionLog event = new ActionLog();
+		event.setInstance(instance.getId());
+		event.setActor("alice");
+		event.setAddition("提交");
+		event.setTransition(commit.getId());
+		event.setFromState(commit.getFromState().getId());
+		event.setToState(commit.getToState().getId());
+		event.setActionTimestamp(new Date(0));
+		store.append(event);
+		event.setActor("mallory");
+		event.getActionTimestamp().setTime(1);
+
+		ActionLog read = store.logs(instance.getId()).get(0);
+		read.setAddition("篡改");
+		read.setToState(commit.getFromState().getId());
+
+		ActionLog recorded = store.logs(instance.getId()).get(0);
+		assertEquals("alice", recorded.getActor());
+		assertEquals("提交", recorded.getAddition());
+		assertEquals(0, recorded.getActionTimestamp().getTime());
+		assertEquals(event.getId(), recorded.getId());
+		assertEquals("W1", store.get(instance.getId()).getStateCode());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void appendToMissingInstance() {
+		ActionLog event = new ActionLog();
+		event.setInstance(-1L);
+		store.append(event);
+	}
+
+	@Test
+	public void staleUpdateRejected() {
+		engine.create(T, "B1", "alice");
+		StateMachineInstance first = store.find(T, "B1");
+		StateMachineInstance second = store.find(T, "B1");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+
+		ActionLog event = new ActionLog();
+		assertFalse(store.update(second, event));
+		assertNull(event.getId());
+		assertFalse(store.update(first, new ActionLog()));
+		assertEquals(1, store.logs(first.getId()).size());
+	}
+
+	@Test
+	public void removeFreesBusinessId() {
+		StateMachineInstance instance = engine.create(T, "B1", "alice");
+		store.remove(instance.getId());
+		assertNull(store.find(T, "B1"));
+		assertTrue(store.logs(instance.getId()).isEmpty());
+		assertNotNull(engine.create(T, "B1", "alice").getId());
+	}
+}
@@ -0,0 +1,125 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @author q-wang
+ */
+public class InstanceLockStripesTest {
+
+	private final InstanceLockStripes stripes = new InstanceLockStripes(16);
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static void complete() {
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void refusesWithoutTransaction() {
+		stripes.lock(1L);
+	}
+
+	@Test
+	public void heldUntilCompletion() {
+		TransactionSynchronizationManager.initSynchronization();
+		assertFalse(stripes.lock(1L));
+		assertFalse(stripes.lock(1L));
+		assertEquals(2, stripes.stripe(1L).getHoldCount());
+		complete();
+		assertFalse(stripes.stripe(1L).isLocked());
+	}
+
+	@Test
+	public void lockAllOncePerStripe() {
+		TransactionSynchronizationManager.initSynchronization();
+		assertFalse(stripes.lockAll(Arrays.asList(1L, 17L, 2L, 1L)));
+		assertEquals(1, stripes.stripe(1L).getHoldCount());
+		assertEquals(1, stripes.stripe(2L).getHoldCount());
+		complete();
+		assertFalse(stripes.stripe(1L).isLocked());
+		assertFalse(stripes.stripe(2L).isLocked());
+	}
+
+	@Test
+	public void sizeRoundedToPowerOfTwo() {
+		stripes.setSize(10);
+		assertSame(stripes.stripe(1L), stripes.stripe(17L));
+		assertNotSame(stripes.stripe(1L), stripes.stripe(2L));
+	}
+
+	@Test
+	public void waitsForOtherTransaction() throws Exception {
+		final CountDownLatch locked = new CountDownLatch(1);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<?> holder = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					TransactionSynchronizationManager.initSynchronization();
+					stripes.lock(1L);
+					locked.countDown();
+					while (!stripes.stripe(1L).hasQueuedThreads()) { // 等待主线程进入排队
+						Thread.yield();
+					}
+					complete();
+				}
+			});
+			assertTrue(locked.await(5, TimeUnit.SECONDS));
+			TransactionSynchronizationManager.initSynchronization();
+			assertTrue(stripes.lock(1L));
+			holder.get(5, TimeUnit.SECONDS);
+			complete();
+			assertFalse(stripes.stripe(1L).isLocked());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.ActionLog;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class StateMachineEngineTest {
+
+	private static final String T = DefinitionFixture.TEMPLATE;
+
+	private InMemoryInstanceStore instances;
+
+	private InMemoryActionLogStore logs;
+
+	private StateMachineEngine engine;
+
+	@Before
+	public void setUp() {
+		StateMachineTemplate template = DefinitionFixture.template(2);
+		InMemoryDefinitionSource definitions = new InMemoryDefinitionSource();
+		definitions.register(template, DefinitionFixture.roleActors(template));
+		instances = new InMemoryInstanceStore();
+		logs = new InMemoryActionLogStore();
+		engine = new StateMachineEngine();
+		engine.setInstances(instances);
+		engine.setLogs(logs);
+		engine.setDefinitions(definitions);
+	}
+
+	private static List<String> roles(String... roles) {
+		return Arrays.asList(roles);
+	}
+
+	private static List<String> codes(List<TransitionDefinition> transitions) {
+		List<String> codes = new ArrayList<>();
+		for (TransitionDefinition transition : transitions) {
+			codes.add(transition.getCode());
+		}
+		return codes;
+	}
+
+	@Test
+	public void approveToEnd() {
+		StateMachineInstance created = engine.create(T, "B1", "alice");
+		assertNotNull(created.getId());
+		assertEquals("EDIT", created.getStateCode());
+
+		engine.next(T, "B1", "COMMIT", "alice", null, "提交");
+		engine.next(T, "B1", "APPROVE1", "bob", roles("ROLE_APPROVER1"), null);
+		StateMachineInstance instance = engine.next(T, "B1", "APPROVE2", "carol", roles("ROLE_APPROVER2"), null);
+
+		assertEquals("DONE", instance.getStateCode());
+		assertTrue(instance.isEnded());
+		assertFalse(instance.isInitial());
+		assertEquals("EDIT,W1,W2,DONE", instance.getStateHistory());
+		assertEquals("alice,bob,carol", instance.getActorHistory());
+		assertEquals(Long.valueOf(3), instances.find(T, "B1").getVersion());
+
+		List<ActionLog> trail = engine.logs(instance);
+		assertEquals(3, trail.size());
+		assertEquals("alice", trail.get(0).getActor());
+		assertEquals("提交", trail.get(0).getAddition());
+		assertEquals("carol", trail.get(2).getActor());
+		assertEquals(3, logs.count());
+	}
+
+	@Test
+	public void transitionsByUser() {
+		engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+		StateMachineInstance instance = instances.find(T, "B1");
+
+		assertEquals(roles("REJECT"), codes(engine.transitions(instance, "alice", roles("ROLE_APPROVER1"))));
+		assertEquals(roles("APPROVE1"), codes(engine.transitions(instance, "bob", roles("ROLE_APPROVER1", "ROLE_APPROVER2"))));
+		assertEquals(Collections.emptyList(), engine.transitions(instance, "dave", null));
+	}
+
+	@Test
+	public void rejectToStart() {
+		StateMachineInstance created = engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+		StateMachineInstance instance = engine.next(T, "B1", "REJECT", "alice", null, null);
+		// 与工厂一致: 移除原实例并新建
+		assertNull(instances.get(created.getId()));
+		assertNotEquals(created.getId(), instance.getId());
+		assertEquals(instance.getId(), instances.find(T, "B1").getId());
+		assertEquals("EDIT", instance.getStateCode());
+		assertEquals("EDIT", instance.getStateHistory());
+		assertEquals("alice", instance.getCreator());
+		assertTrue(instance.isInitial());
+		assertFalse(instance.isEnded());
+		assertEquals(2, engine.logs(created).size());
+		assertEquals(roles("COMMIT"), codes(engine.transitions(instance, "alice", null)));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void creatorCannotApprove() {
+		engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+		engine.next(T, "B1", "APPROVE1", "alice", roles("ROLE_APPROVER1"), null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void participantCannotActTwice() {
+		engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+		engine.next(T, "B1", "APPROVE1", "bob", roles("ROLE_APPROVER1", "ROLE_APPROVER2"), null);
+		engine.next(T, "B1", "APPROVE2", "bob", roles("ROLE_APPROVER1", "ROLE_APPROVER2"), null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void roleRequired() {
+		engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+		engine.next(T, "B1", "APPROVE1", "bob", roles("ROLE_APPROVER2"), null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void unknownTransition() {
+		engine.create(T, "B1", "alice");
+		engine.next(T, "B1", "APPROVE1", "bob", roles("ROLE_APPROVER1"), null);
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void missingInstance() {
+		engine.next(T, "B1", "COMMIT", "alice", null, null);
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void duplicateBusinessId() {
+		engine.create(T, "B1", "alice");
+		engine.create(T, "B1", "bob");
+	}
+
+	@Test
+	public void staleUpdateRejected() {
+		engine.create(T, "B1", "alice");
+		StateMachineInstance first = instances.find(T, "B1");
+		StateMachineInstance second = instances.find(T, "B1");
+		assertTrue(instances.update(first, new ActionLog()));
+		assertFalse(instances.update(second, new ActionLog()));
+		assertEquals(Long.valueOf(1), instances.find(T, "B1").getVersion());
+	}
+
+	@Test
+	public void readsAreCopies() {
+		engine.create(T, "B1", "alice");
+		instances.find(T, "B1").getParticipants().add("bob");
+		instances.find(T, "B1").setStateCode("W9");
+		StateMachineInstance instance = instances.find(T, "B1");
+		assertEquals("EDIT", instance.getStateCode());
+		assertEquals(Collections.singleton("alice"), instance.getParticipants());
+	}
+}
@@ -23,21 +23,108 @@
  */
 package net.lc4ever.framework.state.facade;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
 import org.junit.Test;
 
 import net.lc4ever.framework.state.AbstractStateMachineTest;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
 
 /**
  * @author q-wang
  */
 public class StateMachineFactoryTest extends AbstractStateMachineTest {
-	
+
+	private static final String TEMPLATE = "LOAN_PRODUCTS-ADD-1";
+
 	public StateMachineFactoryTest() {
-		super(false);
+		super(true);
+	}
+
+	@Before
+	public void prepare() {
+		StateMachineDefinition definition = create1StepDefinition();
+		createTemplate(TEMPLATE, definition, "LOAN_PRODUCTS", "ADD");
+		mappingService.setRoles(TEMPLATE, "CREATOR", "ROLE_CREATOR");
+		mappingService.setRoles(TEMPLATE, "APPROVER1", "ROLE_APPROVER1");
+
+		as("alice", "ROLE_CREATOR");
+		for (String businessId : Arrays.asList("B1", "B2", "B3")) {
+			machineFactory.create(TEMPLATE, businessId);
+		}
+		machineFactory.retrieve(TEMPLATE, "B3").next("COMMIT", "提交");
+	}
+
+	private void as(String user, String... roles) {
+		userProvider.setConstraint("JUNIT");
+		userProvider.setUserId(user);
+		userProvider.setRoles(Arrays.asList(roles));
+	}
+
+	private String state(String businessId) {
+		return machineFactory.retrieve(TEMPLATE, businessId).currentState().getCode();
+	}
+
+	@Test
+	public void nextAllEmpty() {
+		BatchTransitionResult result = machineFactory.nextAll(TEMPLATE, Collections.<String> emptyList(), "COMMIT", "提交");
+		assertTrue(result.isAllSucceeded());
+		assertEquals(0, result.getSucceeded().size());
 	}
 
 	@Test
-	public void initialized() throws Exception {
-		
+	public void nextAllRecordsFailuresPerInstance() {
+		BatchTransitionResult result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B1", "B2", "B2", "B3", "B9"), "COMMIT", "批量提交");
+
+		// 重复的业务主键只执行一次
+		assertEquals(Arrays.asList("B1", "B2"), result.getSucceeded());
+		Map<String, String> failures = new LinkedHashMap<>();
+		failures.put("B3", "当前状态[WAIT1]不支持越迁: COMMIT");
+		failures.put("B9", "流程实例不存在");
+		assertEquals(failures, result.getFailures());
+		assertEquals("WAIT1", state("B1"));
+		assertEquals("WAIT1", state("B2"));
+	}
+
+	@Test
+	public void nextAllChecksPermissions() {
+		machineFactory.nextAll(TEMPLATE, Arrays.asList("B1", "B2"), "COMMIT", "批量提交");
+
+		as("alice", "ROLE_APPROVER1");
+		BatchTransitionResult result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B1"), "APPROVE1", "同意");
+		assertEquals("不允许同一人在审批中参与二次操作", result.getFailures().get("B1"));
+
+		as("bob", "ROLE_CREATOR");
+		result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B1"), "APPROVE1", "同意");
+		assertEquals("无权限执行越迁: APPROVE1", result.getFailures().get("B1"));
+
+		as("bob", "ROLE_APPROVER1");
+		result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B1"), "REJECT1", "打回");
+		assertTrue(result.getFailures().isEmpty());
+		assertEquals("REJECTED", state("B1"));
+
+		as("alice", "ROLE_CREATOR");
+		result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B2"), "CANCEL", "撤回");
+		assertEquals("批量操作不支持退回起始状态", result.getFailures().get("B2"));
+		assertEquals("WAIT1", state("B2"));
+	}
+
+	@Test
+	public void nextAllArchivesEnded() {
+		as("bob", "ROLE_APPROVER1");
+		BatchTransitionResult result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B3"), "APPROVE1", "同意");
+		assertEquals(Arrays.asList("B3"), result.getSucceeded());
+		assertNull(machineFactory.retrieve(TEMPLATE, "B3"));
+
+		result = machineFactory.nextAll(TEMPLATE, Arrays.asList("B3"), "APPROVE1", "同意");
+		assertEquals("流程实例不存在", result.getFailures().get("B3"));
 	}
 }
@@ -23,6 +23,18 @@
  */
 package net.lc4ever.framework.state.facade;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
 import org.junit.Test;
 
 import net.lc4ever.framework.state.AbstractStateMachineTest;
@@ -31,10 +43,85 @@ import net.lc4ever.framework.state.AbstractStateMachineTest;
  * @author q-wang
  */
 public class StateMachineMappingServiceTest extends AbstractStateMachineTest {
-	
+
+	private static final String TEMPLATE = "LOAN_PRODUCTS-ADD-1";
+
+	private Long creator;
+
+	private Long approver;
+
+	public StateMachineMappingServiceTest() {
+		super(true);
+	}
+
+	@Before
+	public void prepare() {
+		createTemplate(TEMPLATE, create1StepDefinition(), "LOAN_PRODUCTS", "ADD");
+		creator = mappingService.actorId(TEMPLATE, "CREATOR");
+		approver = mappingService.actorId(TEMPLATE, "APPROVER1");
+	}
+
+	private static Set<String> set(String... values) {
+		return new HashSet<>(Arrays.asList(values));
+	}
+
 	@Test
 	public void initialized() throws Exception {
-		
+		assertEquals(Collections.emptyMap(), mappingService.currentRoles(TEMPLATE));
+	}
+
+	@Test
+	public void addRolesIgnoresExisting() {
+		mappingService.addRoles(TEMPLATE, "APPROVER1", "R1", "R2");
+		mappingService.addRoles(TEMPLATE, "APPROVER1", "R2", "R3");
+		assertEquals(set("R1", "R2", "R3"), new HashSet<>(mappingService.currentRoles(TEMPLATE, approver)));
+	}
+
+	@Test
+	public void setRolesAppliesDiff() {
+		mappingService.addRoles(TEMPLATE, creator, "R1", "R3");
+		mappingService.addRoles(TEMPLATE, approver, "R1", "R2");
+
+		Map<Long, List<String>> target = new HashMap<>();
+		target.put(creator, Arrays.asList("R1"));
+		target.put(approver, Arrays.asList("R2", "R4"));
+		// 新增approver/R4, 同一条DELETE删除creator/R3及approver/R1, 另一参与者的同名角色不受影响
+		assertEquals(3, mappingService.setRoles(TEMPLATE, target));
+
+		Map<Long, Set<String>> current = mappingService.currentRoles(TEMPLATE);
+		assertEquals(set("R1"), current.get(creator));
+		assertEquals(set("R2", "R4"), current.get(approver));
+	}
+
+	@Test
+	public void setRolesKeepsOmittedActors() {
+		mappingService.addRoles(TEMPLATE, creator, "R1");
+		mappingService.addRoles(TEMPLATE, approver, "R2");
+
+		assertEquals(1, mappingService.setRoles(TEMPLATE, Collections.singletonMap(approver, Collections.<String> emptyList())));
+
+		Map<Long, Set<String>> current = mappingService.currentRoles(TEMPLATE);
+		assertEquals(set("R1"), current.get(creator));
+		assertNull(current.get(approver));
+	}
+
+	@Test
+	public void setRolesUnchanged() {
+		mappingService.setRoles(TEMPLATE, "APPROVER1", "R1", "R2");
+		assertEquals(0, mappingService.setRoles(TEMPLATE, Collections.singletonMap(approver, Arrays.asList("R2", "R1"))));
 	}
 
+	@Test
+	public void removeAndClearRoles() {
+		mappingService.setRoles(TEMPLATE, "APPROVER1", "R1", "R2", "R3");
+		mappingService.removeRoles(TEMPLATE, "APPROVER1", "R1", "R9");
+		assertEquals(set("R2", "R3"), new HashSet<>(mappingService.currentRoles(TEMPLATE, approver)));
+		mappingService.clearRoles(TEMPLATE, "APPROVER1");
+		assertEquals(Collections.emptyList(), mappingService.currentRoles(TEMPLATE, approver));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void unknownActorCode() {
+		mappingService.setRoles(TEMPLATE, "UNKNOWN", "R1");
+	}
 }
@@ -0,0 +1,235 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.StateMachineDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMetricRollup;
+
+/**
+ * @author q-wang
+ */
+public class StateMachineMetricsTest {
+
+	private static final String T = DefinitionFixture.TEMPLATE;
+
+	private static final long MINUTE = 60000L;
+
+	private StateMachineDefinition machine;
+
+	private GenericCrudService crudService;
+
+	private StateMachineMetrics metrics;
+
+	@Before
+	public void setUp() {
+		machine = DefinitionFixture.template(1).getMachine();
+		crudService = mock(GenericCrudService.class);
+		metrics = new StateMachineMetrics();
+		metrics.setCrudService(crudService);
+	}
+
+	@After
+	public void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static void complete(int status) {
+		List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+		if (status == TransactionSynchronization.STATUS_COMMITTED) {
+			for (TransactionSynchronization synchronization : synchronizations) {
+				synchronization.afterCommit();
+			}
+		}
+		for (TransactionSynchronization synchronization : synchronizations) {
+			synchronization.afterCompletion(status);
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+	}
+
+	private TransitionDefinition transition(String code) {
+		for (TransitionDefinition transition : machine.getTransitions()) {
+			if (transition.getCode().equals(code)) {
+				return transition;
+			}
+		}
+		throw new IllegalArgumentException(code);
+	}
+
+	private StateMachineMetrics.StateMetric metric(StateDefinition state) {
+		for (StateMachineMetrics.StateMetric metric : metrics.getMetrics(T)) {
+			if (metric.getState().equals(state.getId())) {
+				return metric;
+			}
+		}
+		throw new IllegalArgumentException(state.getCode());
+	}
+
+	private static Date ago(long millis, Date now) {
+		return new Date(now.getTime() - millis);
+	}
+
+	@Test
+	public void dwellHistogram() {
+		Date now = new Date();
+		metrics.created(T, machine.getStartState());
+		metrics.transition(T, transition("COMMIT"), ago(MINUTE, now), now); // 区间上限含在内
+		metrics.created(T, machine.getStartState());
+		metrics.transition(T, transition("COMMIT"), ago(MINUTE + 1, now), now);
+		metrics.created(T, machine.getStartState());
+		metrics.transition(T, transition("COMMIT"), null, now);
+		metrics.transition(T, transition("APPROVE1"), ago(45L * 24 * 60 * MINUTE, now), now);
+
+		StateMachineMetrics.StateMetric edit = metric(machine.getStartState());
+		assertEquals(3, edit.getEntered());
+		assertEquals(3, edit.getExited());
+		assertEquals(0, edit.getInFlight());
+		assertEquals(2, edit.getDwell().getCount());
+		assertEquals(2 * MINUTE + 1, edit.getDwell().getCost());
+		assertArrayEquals(new long[] { 1, 1, 0, 0, 0, 0, 0, 0, 0 }, edit.getHistogram());
+
+		StateMachineMetrics.StateMetric w1 = metric(transition("APPROVE1").getFromState());
+		assertEquals(2, w1.getInFlight());
+		assertArrayEquals(new long[] { 0, 0, 0, 0, 0, 0, 0, 0, 1 }, w1.getHistogram());
+
+		StateMachineMetrics.StateMetric done = metric(machine.getFinalState());
+		assertEquals(1, done.getEntered());
+		assertEquals(0, done.getInFlight());
+	}
+
+	@Test
+	public void flushWritesDeltasOnly() {
+		StateDefinition start = machine.getStartState();
+		StateDefinition w1 = transition("APPROVE1").getFromState();
+		List<Object[]> calibration = Arrays.asList(new Object[] { T, start.getId(), start.getCode(), 10L },
+				new Object[] { T, w1.getId(), w1.getCode(), 7L });
+		doReturn(calibration).when(crudService).hql(eq(Object[].class), anyString());
+
+		Date now = new Date();
+		metrics.created(T, start);
+		metrics.created(T, start);
+		metrics.transition(T, transition("COMMIT"), ago(MINUTE, now), now);
+		assertEquals(2, metrics.flush());
+		// 校准后的本节点绝对值
+		assertEquals(10, metric(start).getInFlight());
+		assertEquals(7, metric(w1).getInFlight());
+
+		metrics.transition(T, transition("APPROVE1"), ago(MINUTE, now), now);
+		assertEquals(2, metrics.flush());
+		assertEquals(0, metrics.flush());
+
+		ArgumentCaptor<StateMetricRollup> captor = ArgumentCaptor.forClass(StateMetricRollup.class);
+		verify(crudService, times(4)).save(captor.capture());
+		Map<String, long[]> totals = new HashMap<>();
+		for (StateMetricRollup rollup : captor.getAllValues()) {
+			long[] total = totals.get(rollup.getStateCode());
+			if (total == null) {
+				total = new long[3];
+				totals.put(rollup.getStateCode(), total);
+			}
+			total[0] += rollup.getEntered();
+			total[1] += rollup.getExited();
+			total[2] += rollup.getInFlight();
+		}
+		assertArrayEquals(new long[] { 2, 1, 1 }, totals.get("EDIT"));
+		assertArrayEquals(new long[] { 1, 1, 0 }, totals.get("W1"));
+		assertArrayEquals(new long[] { 1, 0, 0 }, totals.get("DONE"));
+		assertEquals(6, metric(w1).getInFlight());
+	}
+
+	@Test
+	public void concurrentFlushWaitsForCommit() throws Exception {
+		doReturn(Arrays.asList()).when(crudService).hql(eq(Object[].class), anyString());
+		metrics.created(T, machine.getStartState());
+		TransactionSynchronizationManager.initSynchronization();
+		assertEquals(1, metrics.flush());
+		assertTrue(metrics.flushLock().isLocked());
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Future<Integer> second = executor.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					return metrics.flush();
+				}
+			});
+			while (!metrics.flushLock().hasQueuedThreads()) { // 等待第二次flush进入排队
+				Thread.yield();
+			}
+			complete(TransactionSynchronization.STATUS_COMMITTED);
+			// 前一次已提交, 同一增量不再写入
+			assertEquals(0, second.get(5, TimeUnit.SECONDS).intValue());
+		} finally {
+			executor.shutdownNow();
+		}
+		assertFalse(metrics.flushLock().isLocked());
+		verify(crudService, times(1)).save(any(StateMetricRollup.class));
+	}
+
+	@Test
+	public void rolledBackFlushIsRewritten() {
+		doReturn(Arrays.asList()).when(crudService).hql(eq(Object[].class), anyString());
+		metrics.created(T, machine.getStartState());
+		TransactionSynchronizationManager.initSynchronization();
+		assertEquals(1, metrics.flush());
+		complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+		assertFalse(metrics.flushLock().isLocked());
+		assertEquals(1, metrics.flush());
+		assertEquals(0, metrics.flush());
+	}
+}
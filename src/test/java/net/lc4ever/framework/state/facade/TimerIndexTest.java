@@ -0,0 +1,203 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.orm.hibernate5.HibernateCallback;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.instance.StateTimer;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class TimerIndexTest {
+
+	private static final long HOUR = 3600L;
+
+	private StateMachineTemplate template;
+
+	private GenericCrudService crudService;
+
+	private Session session;
+
+	private TimerIndex timerIndex;
+
+	@Before
+	public void setUp() {
+		template = DefinitionFixture.template(2);
+		crudService = mock(GenericCrudService.class);
+		session = mock(Session.class);
+		doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return invocation.<HibernateCallback<?>> getArgument(0).doInHibernate(session);
+			}
+		}).when(crudService).callback(any(HibernateCallback.class));
+		timerIndex = new TimerIndex();
+		timerIndex.setCrudService(crudService);
+	}
+
+	private TransitionDefinition transition(String code) {
+		for (TransitionDefinition transition : template.getMachine().getTransitions()) {
+			if (transition.getCode().equals(code)) {
+				return transition;
+			}
+		}
+		throw new IllegalArgumentException(code);
+	}
+
+	private StateMachineInstance instance(StateDefinition state) {
+		StateMachineInstance instance = new StateMachineInstance();
+		instance.setId(100L);
+		instance.setTemplate(template);
+		instance.setState(state);
+		instance.setStateCode(state.getCode());
+		return instance;
+	}
+
+	private CompiledStateMachine graph() {
+		return CompiledStateMachine.compile(template.getMachine());
+	}
+
+	@Test
+	public void scheduleOnEntry() {
+		transition("APPROVE1").setTimeout(HOUR);
+		transition("REJECT").setTimeout(HOUR); // 退回起始状态的越迁不登记
+		StateMachineInstance instance = instance(transition("COMMIT").getToState());
+
+		long before = System.currentTimeMillis();
+		timerIndex.schedule(instance, graph(), transition("COMMIT").getFromState().getId());
+		long after = System.currentTimeMillis();
+
+		verify(crudService, never()).update(anyString(), any());
+		ArgumentCaptor<StateTimer> timer = ArgumentCaptor.forClass(StateTimer.class);
+		verify(crudService).save(timer.capture());
+		assertEquals(Long.valueOf(100L), timer.getValue().getInstance());
+		assertEquals(transition("APPROVE1").getId(), timer.getValue().getTransition());
+		long due = timer.getValue().getDueTime().getTime();
+		assertTrue(due >= before + HOUR * 1000 && due <= after + HOUR * 1000);
+	}
+
+	@Test
+	public void scheduleOnExit() {
+		transition("APPROVE1").setTimeout(HOUR);
+		StateMachineInstance instance = instance(transition("APPROVE1").getToState());
+
+		timerIndex.schedule(instance, graph(), transition("APPROVE1").getFromState().getId());
+
+		verify(crudService).update("delete StateTimer where instance = ?", 100L);
+		verify(crudService, never()).save(any(StateTimer.class));
+	}
+
+	@Test
+	public void scheduleEnded() {
+		transition("APPROVE2").setTimeout(HOUR);
+		StateMachineInstance instance = instance(transition("APPROVE2").getToState());
+		instance.setEnded(true);
+
+		timerIndex.schedule(instance, graph(), transition("APPROVE2").getFromState().getId());
+
+		verify(crudService).update("delete StateTimer where instance = ?", 100L);
+		verify(crudService, never()).save(any(StateTimer.class));
+	}
+
+	@Test
+	public void scheduleWithoutTimeouts() {
+		StateMachineInstance instance = instance(transition("APPROVE1").getToState());
+		timerIndex.schedule(instance, graph(), transition("APPROVE1").getFromState().getId());
+		verifyZeroInteractions(crudService);
+	}
+
+	@Test
+	public void claimNothingDue() {
+		doReturn(Collections.emptyList()).when(crudService).hql(eq(Long.class), anyLong(), anyLong(), anyString(), any(), any());
+		assertEquals(Collections.emptyList(), timerIndex.claim("node-a", 10, 60000));
+		verifyZeroInteractions(session);
+	}
+
+	@Test
+	public void claimKeepsOnlyOwnLeases() {
+		List<Long> due = Arrays.asList(1L, 2L, 3L);
+		doReturn(due).when(crudService).hql(eq(Long.class), eq(0L), eq(10L), startsWith("select id from StateTimer where dueTime <= ?"), any(), any());
+		@SuppressWarnings("unchecked")
+		Query<Object> update = mock(Query.class, RETURNS_SELF);
+		@SuppressWarnings("unchecked")
+		Query<Object> select = mock(Query.class, RETURNS_SELF);
+		doReturn(update).when(session).createQuery(startsWith("update StateTimer"));
+		doReturn(select).when(session).createQuery(startsWith("select id from StateTimer"));
+		doReturn(2).when(update).executeUpdate();
+		doReturn(Arrays.<Object> asList(1L, 3L)).when(select).list(); // 2已被其它节点认领
+
+		long before = System.currentTimeMillis();
+		List<Long> claimed = timerIndex.claim("node-a", 10, 60000);
+		long after = System.currentTimeMillis();
+
+		assertEquals(Arrays.asList(1L, 3L), claimed);
+		ArgumentCaptor<Date> now = ArgumentCaptor.forClass(Date.class);
+		verify(crudService).hql(eq(Long.class), eq(0L), eq(10L), anyString(), now.capture(), now.capture());
+		assertEquals(now.getAllValues().get(0), now.getAllValues().get(1));
+		ArgumentCaptor<Date> until = ArgumentCaptor.forClass(Date.class);
+		verify(update).setParameter("owner", "node-a");
+		verify(update).setParameter(eq("until"), until.capture());
+		verify(update).setParameter("now", now.getValue());
+		verify(update).setParameterList("ids", due);
+		verify(update).executeUpdate();
+		assertEquals(now.getValue().getTime() + 60000, until.getValue().getTime());
+		assertTrue(now.getValue().getTime() >= before && now.getValue().getTime() <= after);
+		verify(select).setParameterList("ids", due);
+		verify(select).setParameter("owner", "node-a");
+	}
+}
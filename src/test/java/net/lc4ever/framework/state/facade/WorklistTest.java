@@ -0,0 +1,226 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.facade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.orm.hibernate5.HibernateCallback;
+
+import net.lc4ever.framework.service.GenericCrudService;
+import net.lc4ever.framework.state.definition.CompiledStateMachine;
+import net.lc4ever.framework.state.definition.StateDefinition;
+import net.lc4ever.framework.state.definition.TransitionDefinition;
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+import net.lc4ever.framework.state.instance.WorkItem;
+import net.lc4ever.framework.state.mapper.StateMachineTemplate;
+
+/**
+ * @author q-wang
+ */
+public class WorklistTest {
+
+	private static final String DELETE = "delete WorkItem where id.instance in (:ids)";
+
+	private StateMachineTemplate template;
+
+	private CompiledStateMachine graph;
+
+	private GenericCrudService crudService;
+
+	private Session session;
+
+	private Query<Object> query;
+
+	private Worklist worklist;
+
+	@Before
+	@SuppressWarnings("unchecked")
+	public void setUp() {
+		template = DefinitionFixture.template(2);
+		graph = CompiledStateMachine.compile(template.getMachine());
+		crudService = mock(GenericCrudService.class);
+		session = mock(Session.class);
+		query = mock(Query.class, RETURNS_SELF);
+		doReturn(query).when(session).createQuery(anyString());
+		doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				return invocation.<HibernateCallback<?>> getArgument(0).doInHibernate(session);
+			}
+		}).when(crudService).callback(any(HibernateCallback.class));
+		ActorRoleCache actorRoleCache = mock(ActorRoleCache.class);
+		doReturn(new ActorRoleIndex(DefinitionFixture.TEMPLATE, graph, DefinitionFixture.roleActors(template))).when(actorRoleCache)
+				.index(DefinitionFixture.TEMPLATE, graph);
+		worklist = new Worklist();
+		worklist.setCrudService(crudService);
+		worklist.setActorRoleCache(actorRoleCache);
+	}
+
+	private StateDefinition state(String code) {
+		for (TransitionDefinition transition : template.getMachine().getTransitions()) {
+			if (transition.getFromState().getCode().equals(code)) {
+				return transition.getFromState();
+			}
+		}
+		throw new IllegalArgumentException(code);
+	}
+
+	private StateMachineInstance instance(long id, String stateCode) {
+		StateMachineInstance instance = new StateMachineInstance();
+		instance.setId(id);
+		instance.setTemplate(template);
+		instance.setState(state(stateCode));
+		instance.setStateCode(stateCode);
+		instance.setCreator("alice");
+		return instance;
+	}
+
+	private List<WorkItem> saved(int count) {
+		ArgumentCaptor<WorkItem> captor = ArgumentCaptor.forClass(WorkItem.class);
+		verify(crudService, times(count)).save(captor.capture());
+		return captor.getAllValues();
+	}
+
+	@Test
+	public void updateAtStartIndexesCreator() {
+		worklist.update(instance(100L, "EDIT"), graph);
+
+		verify(session).createQuery(DELETE);
+		verify(query).setParameterList("ids", Arrays.asList(100L));
+		verify(query).executeUpdate();
+		WorkItem item = saved(1).get(0);
+		assertEquals(new WorkItem.ID(100L, WorkItem.USER, "alice"), item.getId());
+		assertEquals(DefinitionFixture.TEMPLATE, item.getTemplate());
+		assertEquals("EDIT", item.getStateCode());
+	}
+
+	@Test
+	public void updateIndexesCreatorAndRoles() {
+		worklist.update(instance(100L, "W1"), graph); // APPROVE1由APPROVER1操作, REJECT退回起始状态由创建人操作
+
+		Set<WorkItem.ID> ids = new HashSet<>();
+		for (WorkItem item : saved(2)) {
+			ids.add(item.getId());
+		}
+		assertEquals(new HashSet<>(Arrays.asList(new WorkItem.ID(100L, WorkItem.USER, "alice"), new WorkItem.ID(100L, WorkItem.ROLE, "ROLE_APPROVER1"))),
+				ids);
+	}
+
+	@Test
+	public void updateEndedOnlyDeletes() {
+		StateMachineInstance instance = instance(100L, "W2");
+		instance.setEnded(true);
+
+		worklist.update(instance, graph);
+
+		verify(query).executeUpdate();
+		verify(crudService, never()).save(any(WorkItem.class));
+	}
+
+	@Test
+	public void batchUpdateDeletesOnce() {
+		worklist.update(Arrays.asList(instance(100L, "W1"), instance(101L, "W2")), graph);
+
+		verify(session, times(1)).createQuery(DELETE);
+		verify(query).setParameterList("ids", Arrays.asList(100L, 101L));
+		verify(query, times(1)).executeUpdate();
+		assertEquals(3, saved(3).size());
+	}
+
+	@Test
+	public void updateNothing() {
+		worklist.update(Collections.<StateMachineInstance> emptyList(), graph);
+		verify(crudService, never()).callback(any(HibernateCallback.class));
+	}
+
+	@Test
+	public void pendingByUserOnly() {
+		List<Object> rows = Arrays.<Object> asList(instance(101L, "EDIT"));
+		doReturn(rows).when(query).list();
+
+		assertEquals(rows, worklist.pending("alice", null, 10, 20));
+
+		ArgumentCaptor<String> hql = ArgumentCaptor.forClass(String.class);
+		verify(session).createQuery(hql.capture());
+		assertEquals("select i from StateMachineInstance i where exists (select w.id from WorkItem w where w.id.instance = i.id and "
+				+ "((w.id.type = 'U' and w.id.assignee = :user))) order by i.id desc", hql.getValue());
+		verify(query).setParameter("user", "alice");
+		verify(query, never()).setParameterList(anyString(), any(List.class));
+		verify(query).setFirstResult(10);
+		verify(query).setMaxResults(20);
+	}
+
+	@Test
+	public void pendingByUserAndRoles() {
+		List<String> roles = Arrays.asList("ROLE_APPROVER1", "ROLE_APPROVER2");
+		doReturn(Collections.emptyList()).when(query).list();
+
+		worklist.pending("bob", roles, 0, 10);
+
+		ArgumentCaptor<String> hql = ArgumentCaptor.forClass(String.class);
+		verify(session).createQuery(hql.capture());
+		// 角色待办排除创建人本人及已参与过的用户
+		assertTrue(hql.getValue().contains("w.id.type = 'R' and w.id.assignee in (:roles) and i.creator <> :user"));
+		assertTrue(hql.getValue().contains("not exists (select p.id from Participation p where p.id.instance = i.id and p.id.user = :user)"));
+		verify(query).setParameter("user", "bob");
+		verify(query).setParameterList("roles", roles);
+	}
+
+	@Test
+	public void countPending() {
+		List<String> roles = Arrays.asList("ROLE_APPROVER1");
+		doReturn(3L).when(query).uniqueResult();
+
+		assertEquals(3L, worklist.countPending("bob", roles));
+
+		ArgumentCaptor<String> hql = ArgumentCaptor.forClass(String.class);
+		verify(session).createQuery(hql.capture());
+		assertTrue(hql.getValue().startsWith("select count(i) from StateMachineInstance i"));
+		verify(query).setParameter("user", "bob");
+		verify(query).setParameterList("roles", roles);
+	}
+}
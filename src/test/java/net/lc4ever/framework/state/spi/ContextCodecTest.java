@@ -0,0 +1,138 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2008-2017 q-wang, &lt;apeidou@gmail.com&gt;
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.lc4ever.framework.state.spi;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.rowset.serial.SerialBlob;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import net.lc4ever.framework.state.instance.StateMachineInstance;
+
+/**
+ * @author q-wang
+ */
+public class ContextCodecTest {
+
+	private static Map<String, Object> context(int size) {
+		Map<String, Object> context = new HashMap<>();
+		context.put("title", "审批单");
+		StringBuilder remark = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			remark.append("remark-").append(i).append(';');
+		}
+		context.put("remark", remark.toString());
+		return context;
+	}
+
+	@Test
+	public void gsonUsesPlatformCharsetByDefault() {
+		Map<String, Object> context = context(1);
+		byte[] data = new GsonContextCodec().encode(context);
+		assertArrayEquals(new Gson().toJson(context).getBytes(Charset.defaultCharset()), data);
+		assertEquals(context, new GsonContextCodec().decode(data, new TypeToken<Map<String, Object>>() {
+		}.getType()));
+	}
+
+	@Test
+	public void gsonWithConfiguredCharset() {
+		GsonContextCodec codec = new GsonContextCodec(new Gson(), StandardCharsets.UTF_8);
+		byte[] data = codec.encode("审批");
+		assertArrayEquals("\"审批\"".getBytes(StandardCharsets.UTF_8), data);
+		assertEquals("审批", codec.decode(data, String.class));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void gsonRejectsMalformedData() {
+		new GsonContextCodec().decode("{\"a\":".getBytes(StandardCharsets.UTF_8), Map.class);
+	}
+
+	@Test
+	public void compressedAboveThresholdOnly() {
+		GsonContextCodec gson = new GsonContextCodec();
+		CompressedContextCodec codec = new CompressedContextCodec(gson);
+		codec.setThreshold(256);
+
+		Map<String, Object> small = context(1);
+		assertArrayEquals(gson.encode(small), codec.encode(small));
+
+		Map<String, Object> large = context(200);
+		byte[] data = codec.encode(large);
+		assertTrue(data.length < gson.encode(large).length);
+		assertEquals(large, codec.decode(data, new TypeToken<Map<String, Object>>() {
+		}.getType()));
+	}
+
+	@Test
+	public void compressedReadsPlainData() {
+		List<String> context = Arrays.asList("a", "b");
+		byte[] plain = new GsonContextCodec().encode(context);
+		assertEquals(context, new CompressedContextCodec(new GsonContextCodec()).decode(plain, new TypeToken<List<String>>() {
+		}.getType()));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void instanceDecodesMutableContextPerCall() throws Exception {
+		SerialBlob blob = spy(new SerialBlob(ContextCodecs.getCodec().encode(context(1))));
+		StateMachineInstance instance = new StateMachineInstance();
+		instance.setContext(blob);
+
+		Map<String, Object> first = instance.getContext(Map.class);
+		first.put("changed", Boolean.TRUE);
+		Map<String, Object> second = instance.getContext(Map.class);
+		assertNotSame(first, second);
+		assertFalse(second.containsKey("changed"));
+		// LOB只读取一次
+		verify(blob, times(1)).getBytes(anyLong(), anyInt());
+	}
+
+	@Test
+	public void instanceCachesImmutableContext() throws Exception {
+		StateMachineInstance instance = new StateMachineInstance();
+		instance.setContext(new SerialBlob(ContextCodecs.getCodec().encode("审批")));
+		assertSame(instance.getContext(String.class), instance.getContext(String.class));
+	}
+}